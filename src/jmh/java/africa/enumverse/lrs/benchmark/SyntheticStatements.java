@@ -0,0 +1,159 @@
+package africa.enumverse.lrs.benchmark;
+
+import africa.enumverse.lrs.dto.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic source of synthetic learning data. Every value is derived from the seed
+ * and the index of the statement alone, so two runs (or two builds) see exactly the same
+ * data whatever the order it is generated in. Actors and activities are skewed: a few of
+ * them account for most statements, as in real cohorts. Verbs follow a typical course
+ * funnel, from many views down to few passes and failures.
+ */
+public class SyntheticStatements {
+
+    public static final long DEFAULT_SEED = 42;
+
+    private static final String VERB_URI = "http://adlnet.gov/expapi/verbs/";
+    private static final String ACTIVITY_URI = "http://example.com/activities/";
+    private static final String ACTIVITY_TYPE_URI = "http://adlnet.gov/expapi/activities/";
+    private static final String[] ACTIONS = {"viewed", "started", "attempted", "answered", "completed", "passed", "failed"};
+    private static final int[] ACTION_WEIGHTS = {35, 20, 15, 15, 8, 4, 3}; // percent
+    private static final String[] ACTIVITY_TYPES = {"course", "module", "lesson", "assessment", "video"};
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private final long seed;
+    private final String[] actorIds;
+    private final String[] activityIds;
+
+    public SyntheticStatements(long seed, int actors, int activities) {
+        this.seed = seed;
+        this.actorIds = new String[actors];
+        for (int i = 0; i < actors; i++) {
+            actorIds[i] = "learner-" + i;
+        }
+        this.activityIds = new String[activities];
+        for (int i = 0; i < activities; i++) {
+            activityIds[i] = ACTIVITY_URI + "activity-" + i;
+        }
+    }
+
+    /**
+     * The facts of one statement, without the DTO graph around them
+     */
+    public record Sample(String actorId, String activityId, String verb, double score, LocalDateTime timestamp) {
+    }
+
+    public Sample sample(long index) {
+        SplittableRandom random = random(index);
+        return new Sample(
+                actorIds[skewed(random, actorIds.length)],
+                activityIds[skewed(random, activityIds.length)],
+                action(random),
+                Math.round(random.nextDouble() * 100) / 100.0,
+                EPOCH.plusSeconds(index * 7));
+    }
+
+    /**
+     * The samples of statements 0 to count - 1, generated lazily so any count fits in memory
+     */
+    public Stream<Sample> samples(long count) {
+        return LongStream.range(0, count).mapToObj(this::sample);
+    }
+
+    public SimplifiedLearningEvent event(long index) {
+        Sample sample = sample(index);
+        SplittableRandom random = random(~index);
+        return SimplifiedLearningEvent.builder()
+                .learnerId(sample.actorId())
+                .learnerName("Learner " + sample.actorId())
+                .learnerEmail(sample.actorId() + "@example.com")
+                .action(sample.verb())
+                .activityId(sample.activityId())
+                .activityName("Activity " + sample.activityId().substring(ACTIVITY_URI.length()))
+                .activityType(ACTIVITY_TYPES[random.nextInt(ACTIVITY_TYPES.length)])
+                .score((float) (sample.score() * 100))
+                .passed(sample.score() >= 0.5)
+                .completed(true)
+                .duration("PT" + (60 + random.nextInt(3600)) + "S")
+                .platform("benchmark")
+                .courseId("course-" + random.nextInt(50))
+                .courseName("Course")
+                .sessionId("session-" + index)
+                .build();
+    }
+
+    public StatementRequest request(long index) {
+        Sample sample = sample(index);
+        SplittableRandom random = random(~index);
+        String type = ACTIVITY_TYPES[random.nextInt(ACTIVITY_TYPES.length)];
+        return StatementRequest.builder()
+                .actor(ActorDto.builder()
+                        .id(sample.actorId())
+                        .name("Learner " + sample.actorId())
+                        .mbox("mailto:" + sample.actorId() + "@example.com")
+                        .objectType("Agent")
+                        .build())
+                .verb(VerbDto.builder()
+                        .id(VERB_URI + sample.verb())
+                        .display(Map.of("en-US", sample.verb()))
+                        .build())
+                .object(ActivityDto.builder()
+                        .id(sample.activityId())
+                        .objectType("Activity")
+                        .definition(ActivityDefinitionDto.builder()
+                                .name(Map.of("en-US", "Activity"))
+                                .type(ACTIVITY_TYPE_URI + type)
+                                .build())
+                        .build())
+                .result(ResultDto.builder()
+                        .score(ScoreDto.builder()
+                                .scaled((float) sample.score())
+                                .raw((float) (sample.score() * 100))
+                                .min(0f)
+                                .max(100f)
+                                .build())
+                        .success(sample.score() >= 0.5)
+                        .completion(true)
+                        .duration("PT" + (60 + random.nextInt(3600)) + "S")
+                        .build())
+                .context(ContextDto.builder()
+                        .registration("registration-" + index)
+                        .platform("benchmark")
+                        .language("en-US")
+                        .contextActivities(Map.of("parent", List.of(ActivityDto.builder()
+                                .id(ACTIVITY_URI + "course-" + random.nextInt(50))
+                                .objectType("Activity")
+                                .build())))
+                        .extensions(Map.of("http://example.com/extensions/session", "session-" + index))
+                        .build())
+                .build();
+    }
+
+    private static String action(SplittableRandom random) {
+        int roll = random.nextInt(100);
+        for (int i = 0; i < ACTIONS.length - 1; i++) {
+            roll -= ACTION_WEIGHTS[i];
+            if (roll < 0) return ACTIONS[i];
+        }
+        return ACTIONS[ACTIONS.length - 1];
+    }
+
+    private SplittableRandom random(long index) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+    }
+
+    /**
+     * Index in [0, size) with low indexes far more likely than high ones
+     */
+    private static int skewed(SplittableRandom random, int size) {
+        double u = random.nextDouble();
+        return (int) (size * u * u * u);
+    }
+}
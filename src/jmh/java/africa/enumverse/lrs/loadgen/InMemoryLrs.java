@@ -0,0 +1,72 @@
+package africa.enumverse.lrs.loadgen;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.config.MetricsConfig;
+import africa.enumverse.lrs.controller.InterpretationController;
+import africa.enumverse.lrs.controller.StatementController;
+import africa.enumverse.lrs.repository.StatementRepository;
+import africa.enumverse.lrs.repository.arena.ArenaStatementRepository;
+import africa.enumverse.lrs.service.*;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.List;
+
+/**
+ * The ingestion side of the application (the statement and learning-event controllers
+ * with the services behind them) running without MongoDB, on the off-heap statement store.
+ * Statement events are published to no listener, so rollups and rankings are not
+ * maintained; runs against a real instance include that work.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration(exclude = {
+        MongoAutoConfiguration.class,
+        MongoDataAutoConfiguration.class,
+        MongoRepositoriesAutoConfiguration.class
+})
+@EnableConfigurationProperties(LrsProperties.class)
+@Import({
+        StatementController.class,
+        InterpretationController.class,
+        StatementService.class,
+        InterpretationService.class,
+        EventPublisherService.class,
+        StatementDeduplicator.class,
+        StatementIngestionQueue.class,
+        StatementWriteAheadLog.class,
+        ReportCache.class,
+        MetricsConfig.class
+})
+class InMemoryLrs {
+
+    @Bean
+    StatementRepository statementRepository(MongoConverter converter, LrsProperties properties) {
+        return new ArenaStatementRepository(converter,
+                Math.toIntExact(properties.getStore().getSegmentSize().toBytes()));
+    }
+
+    @Bean
+    MongoConverter mongoConverter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.setMapKeyDotReplacement("_DOT_");
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
@@ -0,0 +1,212 @@
+package africa.enumverse.lrs.loadgen;
+
+import africa.enumverse.lrs.benchmark.SyntheticStatements;
+import africa.enumverse.lrs.dto.BatchLearningEventsRequest;
+import africa.enumverse.lrs.dto.SimplifiedLearningEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for the ingestion endpoints. Requests are issued on a fixed
+ * schedule whatever the response times, and every latency is measured from the time the
+ * request was due rather than sent, so a stalled server shows up in the percentiles
+ * instead of silently lowering the offered load.
+ *
+ * <p>Without --target an in-memory instance ({@link InMemoryLrs}) is started on a free
+ * local port, so runs need neither MongoDB nor network access. Options, all optional:
+ * <pre>
+ *   --target=http://localhost:8088    instance to drive instead of the in-memory one
+ *   --endpoint=statements|batch       POST /api/statements or /api/learning-events/batch
+ *   --rate=1000                       requests per second
+ *   --duration=60s --warmup=10s       measured time, preceded by unmeasured warm-up
+ *   --batch-size=50                   learning events per batch request
+ *   --actors=10000 --activities=500   cardinality of the synthetic data
+ *   --max-in-flight=5000              requests beyond it are counted as dropped
+ *   --seed=42
+ *   --output=target/loadgen-result.json
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("endpoint", "statements"),
+            Map.entry("rate", "1000"),
+            Map.entry("duration", "60s"),
+            Map.entry("warmup", "10s"),
+            Map.entry("batch-size", "50"),
+            Map.entry("actors", "10000"),
+            Map.entry("activities", "500"),
+            Map.entry("max-in-flight", "5000"),
+            Map.entry("seed", String.valueOf(SyntheticStatements.DEFAULT_SEED)),
+            Map.entry("output", "target/loadgen-result.json"));
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final Recorder latencies = new Recorder(3);
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Map<Integer, AtomicLong> statuses = new HashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --option=value: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        ConfigurableApplicationContext server = null;
+        String target = options.get("target");
+        if (target == null) {
+            // Arguments, so they take precedence over application.properties
+            server = new SpringApplicationBuilder(InMemoryLrs.class)
+                    .run("--server.port=0",
+                            "--spring.main.banner-mode=off",
+                            "--logging.level.africa.enumverse.lrs=WARN",
+                            "--logging.level.org.springframework.data.mongodb=WARN");
+            target = "http://localhost:" + ((WebServerApplicationContext) server).getWebServer().getPort();
+        }
+        try {
+            new LoadGenerator().run(target, options);
+        } finally {
+            if (server != null) server.close();
+        }
+    }
+
+    private void run(String target, Map<String, String> options) throws Exception {
+        String endpoint = options.get("endpoint");
+        int rate = Integer.parseInt(options.get("rate"));
+        Duration duration = DurationStyle.detectAndParse(options.get("duration"));
+        Duration warmup = DurationStyle.detectAndParse(options.get("warmup"));
+        int batchSize = endpoint.equals("batch") ? Integer.parseInt(options.get("batch-size")) : 1;
+        int maxInFlight = Integer.parseInt(options.get("max-in-flight"));
+        SyntheticStatements synthetic = new SyntheticStatements(Long.parseLong(options.get("seed")),
+                Integer.parseInt(options.get("actors")), Integer.parseInt(options.get("activities")));
+        URI uri = URI.create(target + switch (endpoint) {
+            case "statements" -> "/api/statements";
+            case "batch" -> "/api/learning-events/batch";
+            default -> throw new IllegalArgumentException("Unknown endpoint: " + endpoint);
+        });
+
+        System.out.printf("Offering %d requests/s (%d statements each) to %s for %s after %s of warm-up%n",
+                rate, batchSize, uri, duration, warmup);
+
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        long dropped = 0;
+        long statement = 0;
+
+        for (long request = 0; ; request++) {
+            long due = start + request * interval;
+            if (due >= end) break;
+            while (System.nanoTime() < due) {
+                LockSupport.parkNanos(due - System.nanoTime());
+            }
+
+            byte[] body = body(endpoint, synthetic, statement, batchSize);
+            statement += batchSize;
+            boolean measured = due >= measureFrom;
+            if (!inFlight.tryAcquire()) {
+                if (measured) dropped++;
+                continue;
+            }
+            client.sendAsync(HttpRequest.newBuilder(uri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                            .build(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        inFlight.release();
+                        if (!measured) return;
+                        latencies.recordValue(System.nanoTime() - due);
+                        if (error == null && response.statusCode() / 100 == 2) {
+                            succeeded.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                            int status = error == null ? response.statusCode() : 0;
+                            synchronized (statuses) {
+                                statuses.computeIfAbsent(status, key -> new AtomicLong()).incrementAndGet();
+                            }
+                        }
+                    });
+        }
+        // Let the requests still in flight finish, so they are counted with their real latency
+        inFlight.tryAcquire(maxInFlight, 1, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - measureFrom) / 1e9;
+
+        report(options, uri, rate, batchSize, seconds, dropped);
+    }
+
+    private byte[] body(String endpoint, SyntheticStatements synthetic, long first, int count) throws Exception {
+        if (endpoint.equals("statements")) {
+            return objectMapper.writeValueAsBytes(synthetic.request(first));
+        }
+        List<SimplifiedLearningEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(synthetic.event(first + i));
+        }
+        return objectMapper.writeValueAsBytes(BatchLearningEventsRequest.builder().events(events).build());
+    }
+
+    private void report(Map<String, String> options, URI uri, int rate, int batchSize,
+                        double seconds, long dropped) throws Exception {
+        Histogram histogram = latencies.getIntervalHistogram();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("target", uri.toString());
+        result.put("offeredRequestsPerSecond", rate);
+        result.put("statementsPerRequest", batchSize);
+        result.put("seconds", seconds);
+        result.put("succeeded", succeeded.get());
+        result.put("failed", failed.get());
+        result.put("failuresByStatus", statuses);
+        result.put("dropped", dropped);
+        result.put("requestsPerSecond", succeeded.get() / seconds);
+        result.put("statementsPerSecond", succeeded.get() * batchSize / seconds);
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        percentiles.put("p50", histogram.getValueAtPercentile(50) / 1e6);
+        percentiles.put("p90", histogram.getValueAtPercentile(90) / 1e6);
+        percentiles.put("p99", histogram.getValueAtPercentile(99) / 1e6);
+        percentiles.put("p99.9", histogram.getValueAtPercentile(99.9) / 1e6);
+        percentiles.put("max", histogram.getMaxValue() / 1e6);
+        result.put("latencyMillis", percentiles);
+
+        System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(result));
+        histogram.outputPercentileDistribution(System.out, 1e6);
+
+        File output = new File(options.get("output"));
+        if (output.getParentFile() != null) output.getParentFile().mkdirs();
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(output, result);
+        System.out.println("Result is saved to " + output.getAbsolutePath());
+    }
+}
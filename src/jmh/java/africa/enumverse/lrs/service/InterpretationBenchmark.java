@@ -0,0 +1,52 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.benchmark.SyntheticStatements;
+import africa.enumverse.lrs.dto.SimplifiedLearningEvent;
+import africa.enumverse.lrs.dto.StatementRequest;
+import africa.enumverse.lrs.dto.VerbDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of simplified learning events into xAPI statement requests
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterpretationBenchmark {
+
+    private static final int EVENTS = 1024;
+
+    private final InterpretationService interpretationService = new InterpretationService();
+
+    private SimplifiedLearningEvent[] events;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SyntheticStatements synthetic = new SyntheticStatements(SyntheticStatements.DEFAULT_SEED, 1_000, 200);
+        events = new SimplifiedLearningEvent[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            events[i] = synthetic.event(i);
+        }
+    }
+
+    @Benchmark
+    public StatementRequest interpretLearningEvent() {
+        return interpretationService.interpretLearningEvent(events[next()]);
+    }
+
+    @Benchmark
+    public VerbDto buildVerb() {
+        return interpretationService.buildVerb(events[next()].getAction());
+    }
+
+    private int next() {
+        next = (next + 1) & (EVENTS - 1);
+        return next;
+    }
+}
@@ -0,0 +1,81 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.benchmark.SyntheticStatements;
+import africa.enumverse.lrs.dto.StatementRequest;
+import africa.enumverse.lrs.dto.StatementResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialization of the statement DTOs, with the same date handling as the
+ * application's Spring Boot configured mapper
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    private static final int STATEMENTS = 1024;
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final StatementService statementService = StatementMappingBenchmark.mappingOnly();
+
+    private StatementRequest[] requests;
+    private byte[][] requestJson;
+    private StatementResponse[] responses;
+    private byte[][] responseJson;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        SyntheticStatements synthetic = new SyntheticStatements(SyntheticStatements.DEFAULT_SEED, 1_000, 200);
+        requests = new StatementRequest[STATEMENTS];
+        requestJson = new byte[STATEMENTS][];
+        responses = new StatementResponse[STATEMENTS];
+        responseJson = new byte[STATEMENTS][];
+        for (int i = 0; i < STATEMENTS; i++) {
+            requests[i] = synthetic.request(i);
+            requestJson[i] = objectMapper.writeValueAsBytes(requests[i]);
+            responses[i] = statementService.mapToResponse(statementService.toStatement(requests[i], NOW));
+            responseJson[i] = objectMapper.writeValueAsBytes(responses[i]);
+        }
+    }
+
+    @Benchmark
+    public StatementRequest readRequest() throws Exception {
+        return objectMapper.readValue(requestJson[next()], StatementRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeRequest() throws Exception {
+        return objectMapper.writeValueAsBytes(requests[next()]);
+    }
+
+    @Benchmark
+    public StatementResponse readResponse() throws Exception {
+        return objectMapper.readValue(responseJson[next()], StatementResponse.class);
+    }
+
+    @Benchmark
+    public byte[] writeResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(responses[next()]);
+    }
+
+    private int next() {
+        next = (next + 1) & (STATEMENTS - 1);
+        return next;
+    }
+}
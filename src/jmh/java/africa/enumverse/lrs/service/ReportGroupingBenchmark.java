@@ -0,0 +1,101 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.benchmark.SyntheticStatements;
+import africa.enumverse.lrs.dto.ScoreDistribution;
+import africa.enumverse.lrs.sketch.HyperLogLog;
+import africa.enumverse.lrs.sketch.ScoreHistogram;
+import africa.enumverse.lrs.sketch.SpaceSaving;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory side of the reports: the ReportService steps and the sketches the rollups
+ * apply to the statements or groups streamed from the store, over synthetic datasets of
+ * 10k to 10M statements. Statements are generated while streaming, so the generator's cost
+ * is included alike in every benchmark and the largest datasets fit in any heap; compare a
+ * benchmark with itself across builds rather than with its neighbours.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportGroupingBenchmark {
+
+    private static final int LIMIT = 10;
+
+    private final ReportService reportService = groupingOnly();
+
+    @Param({"10000", "1000000", "10000000"})
+    private long size;
+
+    private SyntheticStatements synthetic;
+    private List<Document> actorGroups;
+
+    /**
+     * A service for the in-memory steps only; they touch none of its collaborators
+     */
+    static ReportService groupingOnly() {
+        return new ReportService(null, null, null, null, null, null, null, null);
+    }
+
+    @Setup
+    public void setUp() {
+        synthetic = new SyntheticStatements(SyntheticStatements.DEFAULT_SEED, 100_000, 5_000);
+
+        // The per-actor averages the top performers aggregation groups server-side
+        Map<String, double[]> scores = new HashMap<>();
+        synthetic.samples(size).forEach(sample -> {
+            double[] sumAndCount = scores.computeIfAbsent(sample.actorId(), actor -> new double[2]);
+            sumAndCount[0] += sample.score();
+            sumAndCount[1]++;
+        });
+        actorGroups = scores.entrySet().stream()
+                .map(actor -> new Document("_id", actor.getKey())
+                        .append("averageScore", actor.getValue()[0] / actor.getValue()[1]))
+                .toList();
+    }
+
+    /**
+     * Verb counts merged one statement at a time, the worst case for the merge of rollup
+     * and edge counts
+     */
+    @Benchmark
+    public List<Document> verbBreakdown() {
+        return reportService.mergeVerbCounts(() -> synthetic.samples(size)
+                .map(sample -> new Document("_id", sample.verb()).append("count", 1L))
+                .iterator());
+    }
+
+    @Benchmark
+    public List<Document> topPerformers() {
+        return reportService.exactTop(actorGroups.stream(), "averageScore", LIMIT);
+    }
+
+    @Benchmark
+    public List<SpaceSaving.Counter<String>> popularActivities() {
+        SpaceSaving<String> activities = new SpaceSaving<>(1_000);
+        synthetic.samples(size).forEach(sample -> activities.offer(sample.activityId(), 1));
+        return activities.top(LIMIT);
+    }
+
+    @Benchmark
+    public long distinctActors() {
+        HyperLogLog actors = new HyperLogLog();
+        synthetic.samples(size).forEach(sample -> actors.add(sample.actorId()));
+        return actors.estimate();
+    }
+
+    @Benchmark
+    public ScoreDistribution scoreDistribution() {
+        ScoreHistogram scores = new ScoreHistogram();
+        synthetic.samples(size).forEach(sample -> scores.add(sample.score()));
+        return reportService.toScoreDistribution(scores, 20);
+    }
+}
@@ -0,0 +1,79 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.benchmark.SyntheticStatements;
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.dto.StatementRequest;
+import africa.enumverse.lrs.dto.StatementResponse;
+import africa.enumverse.lrs.model.Actor;
+import africa.enumverse.lrs.model.Context;
+import africa.enumverse.lrs.model.Statement;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The request to model to response mapping done for every stored and every read statement
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatementMappingBenchmark {
+
+    private static final int STATEMENTS = 1024;
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    private final StatementService statementService = mappingOnly();
+
+    private StatementRequest[] requests;
+    private Statement[] statements;
+    private int next;
+
+    /**
+     * A service for the mappers only; they touch none of its collaborators for statements
+     * without a client-assigned id
+     */
+    static StatementService mappingOnly() {
+        return new StatementService(null, null, null, null, new LrsProperties(), null, new SimpleMeterRegistry());
+    }
+
+    @Setup
+    public void setUp() {
+        SyntheticStatements synthetic = new SyntheticStatements(SyntheticStatements.DEFAULT_SEED, 1_000, 200);
+        requests = new StatementRequest[STATEMENTS];
+        statements = new Statement[STATEMENTS];
+        for (int i = 0; i < STATEMENTS; i++) {
+            requests[i] = synthetic.request(i);
+            statements[i] = statementService.toStatement(requests[i], NOW);
+        }
+    }
+
+    @Benchmark
+    public Statement toStatement() {
+        return statementService.toStatement(requests[next()], NOW);
+    }
+
+    @Benchmark
+    public Actor mapActor() {
+        return statementService.mapActor(requests[next()].getActor());
+    }
+
+    @Benchmark
+    public Context mapContext() {
+        return statementService.mapContext(requests[next()].getContext());
+    }
+
+    @Benchmark
+    public StatementResponse mapToResponse() {
+        return statementService.mapToResponse(statements[next()]);
+    }
+
+    private int next() {
+        next = (next + 1) & (STATEMENTS - 1);
+        return next;
+    }
+}
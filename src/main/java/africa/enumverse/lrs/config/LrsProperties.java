@@ -0,0 +1,278 @@
+package africa.enumverse.lrs.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Application-specific settings bound from the "lrs" property prefix
+ */
+@Data
+@ConfigurationProperties(prefix = "lrs")
+public class LrsProperties {
+
+    private Statements statements = new Statements();
+    private Ingestion ingestion = new Ingestion();
+    private Rollups rollups = new Rollups();
+    private TopK topK = new TopK();
+    private Definitions definitions = new Definitions();
+    private Reports reports = new Reports();
+    private Store store = new Store();
+
+    @Data
+    public static class Store {
+        /**
+         * MONGO keeps statements and learning records in MongoDB; OFF_HEAP keeps them in
+         * process, outside the Java heap, and loses them on restart. Reports, report jobs,
+         * rollups and the startup index plan check read statements from MongoDB, so they are
+         * turned off with OFF_HEAP
+         */
+        private Engine engine = Engine.MONGO;
+
+        /**
+         * Size of each off-heap segment; every stored entity must fit in one
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Writes statements to MongoDB with their verb displays, activity definitions and actor
+         * identifiers replaced by keys into the statement_dictionary collection. Statements are
+         * read back in full whichever format they were written in
+         */
+        private boolean compactDefinitions = false;
+
+        /**
+         * Dictionary entries kept in memory to compact and rehydrate statements
+         */
+        private int dictionaryCacheSize = 100_000;
+
+        public enum Engine {
+            MONGO,
+            OFF_HEAP
+        }
+    }
+
+    @Data
+    public static class Statements {
+        /**
+         * Page size used when a statement list request does not specify a limit
+         */
+        private int defaultPageSize = 100;
+
+        /**
+         * Upper bound enforced on the limit of a statement list request
+         */
+        private int maxPageSize = 500;
+
+        /**
+         * Number of recent client-assigned statement ids remembered to answer retries
+         * without a round trip to MongoDB
+         */
+        private int recentIdCacheSize = 100_000;
+    }
+
+    @Data
+    public static class Rollups {
+        /**
+         * Maintain live rollups from stored statements and answer reports from them
+         */
+        private boolean enabled = true;
+
+        /**
+         * How often the scheduled job materializes hourly and daily buckets into statement_rollups
+         */
+        private Duration materializeInterval = Duration.ofMinutes(15);
+
+        /**
+         * Trailing part of the materialized range rebuilt on every run, to count statements
+         * that were written after their hour was first materialized
+         */
+        private Duration materializeLookback = Duration.ofHours(1);
+
+        /**
+         * Upper bound on the days materialized by one scheduled run while catching up, and on
+         * the range accepted by one manual materialization request
+         */
+        private int materializeMaxDays = 31;
+
+        /**
+         * How long day-scoped distinct-count markers are kept past their day; a statement
+         * arriving later for that day counts its actor and activity as new again
+         */
+        private Duration dayMarkerTtl = Duration.ofDays(35);
+    }
+
+    @Data
+    public static class TopK {
+        /**
+         * Answer top performer and popular activity lookups from memory, kept up to date
+         * from ingested statements
+         */
+        private boolean enabled = true;
+
+        /**
+         * Entries tracked per ranking; lookups with a larger limit go to the store
+         */
+        private int capacity = 1000;
+
+        /**
+         * Age after which a ranking is reseeded from the store, to pick up statements
+         * ingested by other instances
+         */
+        private Duration refreshInterval = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Definitions {
+        /**
+         * Keep the latest activity definitions and verb displays in the activities and verbs
+         * collections and resolve report names from them
+         */
+        private boolean enabled = true;
+
+        /**
+         * Activities and verbs whose definitions are kept in memory, each
+         */
+        private int cacheSize = 10_000;
+
+        /**
+         * Age after which a cached definition is read again, to pick up definitions
+         * registered by other instances
+         */
+        private Duration cacheTtl = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Reports {
+        /**
+         * Threads computing comprehensive report sections concurrently, shared by all requests
+         */
+        private int sectionThreads = 8;
+
+        /**
+         * Sections waiting for a thread; sections beyond it are left out of the report
+         */
+        private int sectionQueueCapacity = 64;
+
+        /**
+         * Time each report section gets from when it starts running; a section still running
+         * then is interrupted and left out, and the report is flagged as partial. Also sent to
+         * MongoDB as the aggregations' maxTimeMS
+         */
+        private Duration sectionTimeout = Duration.ofSeconds(30);
+
+        /**
+         * Cache report results; entries are dropped when a statement inside their window is stored
+         */
+        private boolean cacheEnabled = true;
+
+        /**
+         * Report results kept in the cache
+         */
+        private long cacheMaximumSize = 1000;
+
+        /**
+         * Lifetime of cached results whose window reaches into the present, which can also
+         * change through statements stored by other instances. Historical windows stay
+         * cached until evicted or invalidated
+         */
+        private Duration cacheTtl = Duration.ofMinutes(1);
+
+        /**
+         * Threads computing background report jobs; a job computes its sections one after
+         * another on its worker, so jobs never take section threads from interactive reports
+         */
+        private int jobThreads = 2;
+
+        /**
+         * Jobs waiting for a worker; submissions beyond it are refused
+         */
+        private int jobQueueCapacity = 100;
+
+        /**
+         * Time a background job may spend on its sections
+         */
+        private Duration jobTimeout = Duration.ofMinutes(30);
+
+        /**
+         * How long job results are kept in report_results
+         */
+        private Duration jobResultTtl = Duration.ofHours(24);
+    }
+
+    @Data
+    public static class Ingestion {
+        /**
+         * SYNC writes each statement on the request thread; ASYNC acknowledges once the
+         * statement is queued and lets background writers persist it in micro-batches
+         */
+        private Mode mode = Mode.SYNC;
+
+        /**
+         * Maximum number of statements waiting to be written before requests get a 429; a
+         * single batch larger than this is rejected with a 413
+         */
+        private int queueCapacity = 10_000;
+
+        /**
+         * Number of writer threads draining the queue
+         */
+        private int writerThreads = 2;
+
+        /**
+         * Maximum statements per insertMany
+         */
+        private int batchSize = 500;
+
+        /**
+         * How long a writer waits for a batch to fill before flushing what it has
+         */
+        private Duration linger = Duration.ofMillis(50);
+
+        /**
+         * Retry-After hint sent with 429 responses when the queue is full
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        private Wal wal = new Wal();
+
+        public enum Mode {
+            SYNC,
+            ASYNC
+        }
+    }
+
+    @Data
+    public static class Wal {
+        /**
+         * Log queued statements to local disk before acknowledging them (ASYNC mode only)
+         */
+        private boolean enabled = true;
+
+        /**
+         * Directory holding the log segments; must survive a process restart
+         */
+        private String directory = "data/wal";
+
+        /**
+         * Size after which the active segment is closed and a new one started
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * ALWAYS forces every append to disk before the request is acknowledged, INTERVAL
+         * forces the active segment every fsync-interval, NONE leaves flushing to the OS
+         */
+        private Fsync fsync = Fsync.INTERVAL;
+
+        private Duration fsyncInterval = Duration.ofMillis(100);
+
+        public enum Fsync {
+            ALWAYS,
+            INTERVAL,
+            NONE
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package africa.enumverse.lrs.config;
+
+import africa.enumverse.lrs.repository.arena.ArenaLearningRecordRepository;
+import africa.enumverse.lrs.repository.arena.ArenaStatementRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Replaces the MongoDB repositories with off-heap ones when lrs.store.engine=off-heap.
+ * The Mongo repositories are still created but never injected; set
+ * spring.data.mongodb.repositories.type=none to skip them
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "lrs.store", name = "engine", havingValue = "off-heap")
+public class OffHeapStoreConfig {
+
+    @Bean
+    @Primary
+    public ArenaStatementRepository offHeapStatementRepository(MongoConverter converter, LrsProperties properties,
+                                                               MeterRegistry meterRegistry) {
+        ArenaStatementRepository repository = new ArenaStatementRepository(converter, segmentSize(properties));
+        registerGauges(meterRegistry, "statements", repository::count, repository::usedBytes, repository::reservedBytes);
+        return repository;
+    }
+
+    @Bean
+    @Primary
+    public ArenaLearningRecordRepository offHeapLearningRecordRepository(MongoConverter converter, LrsProperties properties,
+                                                                         MeterRegistry meterRegistry) {
+        ArenaLearningRecordRepository repository = new ArenaLearningRecordRepository(converter, segmentSize(properties));
+        registerGauges(meterRegistry, "learning_records", repository::count, repository::usedBytes, repository::reservedBytes);
+        return repository;
+    }
+
+    private static int segmentSize(LrsProperties properties) {
+        return Math.toIntExact(properties.getStore().getSegmentSize().toBytes());
+    }
+
+    private static void registerGauges(MeterRegistry meterRegistry, String collection, LongSupplier entities,
+                                       LongSupplier usedBytes, LongSupplier reservedBytes) {
+        Gauge.builder("lrs.store.entities", entities, LongSupplier::getAsLong)
+                .description("Entities held by the off-heap store")
+                .tag("collection", collection)
+                .register(meterRegistry);
+        Gauge.builder("lrs.store.used", usedBytes, LongSupplier::getAsLong)
+                .description("Off-heap bytes written, including superseded versions of entities")
+                .baseUnit("bytes")
+                .tag("collection", collection)
+                .register(meterRegistry);
+        Gauge.builder("lrs.store.reserved", reservedBytes, LongSupplier::getAsLong)
+                .description("Off-heap bytes allocated for segments")
+                .baseUnit("bytes")
+                .tag("collection", collection)
+                .register(meterRegistry);
+    }
+}
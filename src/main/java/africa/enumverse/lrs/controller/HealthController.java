@@ -1,12 +1,15 @@
 package africa.enumverse.lrs.controller;
 
 import africa.enumverse.lrs.dto.ApiResponse;
+import africa.enumverse.lrs.service.StatementIngestionQueue;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -16,22 +19,30 @@ import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("/api")
+@RequiredArgsConstructor
 @Tag(name = "Health Check", description = "API health monitoring endpoint")
 public class HealthController {
 
+    private final StatementIngestionQueue ingestionQueue;
+
     @GetMapping("/health")
     @Operation(
         summary = "Check application health",
-        description = "Returns the current health status of the LRS application"
+        description = "Returns the current health status of the LRS application. Reports RECOVERING " +
+                "with 503 while statements from the write-ahead log are still being replayed"
     )
     public ResponseEntity<ApiResponse<HealthStatus>> health() {
+        boolean recovering = ingestionQueue.isRecovering();
         HealthStatus status = HealthStatus.builder()
-                .status("UP")
+                .status(recovering ? "RECOVERING" : "UP")
                 .service("LRS Application")
                 .version("1.0.0")
                 .timestamp(LocalDateTime.now())
                 .build();
 
+        if (recovering) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ApiResponse.success(status));
+        }
         return ResponseEntity.ok(ApiResponse.success(status));
     }
 
@@ -1,18 +1,23 @@
 package africa.enumverse.lrs.controller;
 
 import africa.enumverse.lrs.dto.*;
-import africa.enumverse.lrs.service.EventPublisherService;
+import africa.enumverse.lrs.exception.IngestionBackpressureException;
+import africa.enumverse.lrs.exception.IngestionBatchTooLargeException;
 import africa.enumverse.lrs.service.InterpretationService;
 import africa.enumverse.lrs.service.StatementService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Interpretation Layer API - Accepts simplified learning events from frontend
@@ -27,7 +32,6 @@ public class InterpretationController {
 
     private final InterpretationService interpretationService;
     private final StatementService statementService;
-    private final EventPublisherService eventPublisherService;
 
     @PostMapping
     @Operation(
@@ -50,13 +54,10 @@ public class InterpretationController {
             // Step 2: Interpret and convert to xAPI statement
             StatementRequest statementRequest = interpretationService.interpretLearningEvent(event);
 
-            // Step 3: Send to LRS service (which validates and saves)
+            // Step 3: Send to LRS service (which validates, saves and publishes the created event)
             StatementResponse statementResponse = statementService.createStatement(statementRequest);
 
-            // Step 4: Publish event to other services
-            eventPublisherService.publishStatementCreated(statementResponse);
-
-            // Step 5: Return response
+            // Step 4: Return response
             InterpretationResponse response = InterpretationResponse.builder()
                     .success(true)
                     .message("Learning event processed successfully")
@@ -66,9 +67,11 @@ public class InterpretationController {
                     .build();
 
             log.info("Learning event processed successfully: {}", statementResponse.getId());
-            return ResponseEntity.status(HttpStatus.CREATED)
+            return ResponseEntity.status(statementService.isWriteBehind() ? HttpStatus.ACCEPTED : HttpStatus.CREATED)
                     .body(ApiResponse.success("Learning event recorded successfully", response));
 
+        } catch (IngestionBackpressureException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             log.error("Error processing learning event", e);
             return ResponseEntity.internalServerError()
@@ -86,53 +89,83 @@ public class InterpretationController {
 
         log.info("Received batch learning events: {} events", request.getEvents().size());
 
-        int successCount = 0;
-        int failureCount = 0;
-        java.util.List<InterpretationResponse> responses = new java.util.ArrayList<>();
+        List<SimplifiedLearningEvent> events = request.getEvents();
+        InterpretationResponse[] responses = new InterpretationResponse[events.size()];
+        List<StatementRequest> statementRequests = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
 
-        for (SimplifiedLearningEvent event : request.getEvents()) {
+        // Step 1: Validate and interpret the whole batch before touching the store
+        for (int i = 0; i < events.size(); i++) {
+            SimplifiedLearningEvent event = events.get(i);
             try {
-                // Validate and process each event
                 if (!interpretationService.validateLearningEvent(event)) {
-                    failureCount++;
-                    responses.add(InterpretationResponse.builder()
-                            .success(false)
-                            .message("Validation failed")
-                            .build());
+                    responses[i] = failure("Validation failed");
                     continue;
                 }
+                statementRequests.add(interpretationService.interpretLearningEvent(event));
+                positions.add(i);
+            } catch (Exception e) {
+                log.error("Error interpreting event in batch", e);
+                responses[i] = failure("Processing error: " + e.getMessage());
+            }
+        }
 
-                StatementRequest statementRequest = interpretationService.interpretLearningEvent(event);
-                StatementResponse statementResponse = statementService.createStatement(statementRequest);
-                eventPublisherService.publishStatementCreated(statementResponse);
+        // Step 2: Persist every interpreted statement in one unordered bulk write;
+        // the service publishes a single created event for the stored statements
+        List<StatementResponse> created = new ArrayList<>();
+        try {
+            StatementService.BatchResult result = statementService.createStatements(statementRequests);
 
-                successCount++;
-                responses.add(InterpretationResponse.builder()
+            for (int i = 0; i < positions.size(); i++) {
+                StatementResponse statementResponse = result.getResponses().get(i);
+                if (statementResponse == null) {
+                    responses[positions.get(i)] = failure("Processing error: " + result.getFailures().get(i));
+                    continue;
+                }
+                created.add(statementResponse);
+                responses[positions.get(i)] = InterpretationResponse.builder()
                         .success(true)
                         .message("Success")
                         .statementId(statementResponse.getId())
                         .timestamp(LocalDateTime.now())
-                        .build());
-
-            } catch (Exception e) {
-                log.error("Error processing event in batch", e);
-                failureCount++;
-                responses.add(InterpretationResponse.builder()
-                        .success(false)
-                        .message("Processing error: " + e.getMessage())
-                        .build());
+                        .build();
             }
+        } catch (IngestionBatchTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (IngestionBackpressureException e) {
+            return tooManyRequests(e);
+        } catch (Exception e) {
+            log.error("Error storing batch of learning events", e);
+            positions.forEach(position -> responses[position] = failure("Processing error: " + e.getMessage()));
         }
 
+        int successCount = created.size();
+        int failureCount = events.size() - successCount;
+
         BatchInterpretationResponse batchResponse = BatchInterpretationResponse.builder()
                 .totalEvents(request.getEvents().size())
                 .successCount(successCount)
                 .failureCount(failureCount)
-                .responses(responses)
+                .responses(Arrays.asList(responses))
                 .build();
 
         log.info("Batch processing complete: {} success, {} failures", successCount, failureCount);
-        return ResponseEntity.ok(ApiResponse.success("Batch processed", batchResponse));
+        return ResponseEntity.status(statementService.isWriteBehind() ? HttpStatus.ACCEPTED : HttpStatus.OK)
+                .body(ApiResponse.success("Batch processed", batchResponse));
+    }
+
+    private <T> ResponseEntity<ApiResponse<T>> tooManyRequests(IngestionBackpressureException e) {
+        log.warn(e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(ApiResponse.error(e.getMessage()));
     }
-}
 
+    private InterpretationResponse failure(String message) {
+        return InterpretationResponse.builder()
+                .success(false)
+                .message(message)
+                .build();
+    }
+}
@@ -1,32 +1,51 @@
 package africa.enumverse.lrs.controller;
 
 import africa.enumverse.lrs.dto.*;
+import africa.enumverse.lrs.model.ReportJob;
+import africa.enumverse.lrs.model.RollupState;
+import africa.enumverse.lrs.service.ReportCache;
+import africa.enumverse.lrs.service.ReportCache.ReportKey;
+import africa.enumverse.lrs.service.ReportFlights;
+import africa.enumverse.lrs.service.ReportJobService;
 import africa.enumverse.lrs.service.ReportService;
+import africa.enumverse.lrs.service.StatementRollupMaterializer;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Reports are computed from the statements in MongoDB, so they are not mapped when
+ * lrs.store.engine=off-heap
+ */
 @RestController
 @RequestMapping("/api/reports")
 @RequiredArgsConstructor
 @Slf4j
+@ConditionalOnProperty(prefix = "lrs.store", name = "engine", havingValue = "mongo", matchIfMissing = true)
 @Tag(name = "Reports & Analytics", description = "API endpoints for generating reports and analytics from xAPI statements")
 public class ReportController {
 
     private final ReportService reportService;
+    private final StatementRollupMaterializer rollupMaterializer;
+    private final ReportCache reportCache;
+    private final ReportFlights reportFlights;
+    private final ReportJobService reportJobService;
 
     @GetMapping("/comprehensive")
     @Operation(
         summary = "Generate comprehensive report",
-        description = "Generates a comprehensive report including all statistics, trends, and breakdowns for the specified date range"
+        description = "Generates a comprehensive report including all statistics, trends, and breakdowns for the specified date range. Where the range is covered by materialized rollups, total actors and activities are HyperLogLog estimates with a relative standard error of about 1.6%. Sections are computed concurrently; a section that does not finish within lrs.reports.section-timeout is left out, listed in incompleteSections and the report is flagged as partial"
     )
     public ResponseEntity<ApiResponse<ComprehensiveReport>> getComprehensiveReport(
             @Parameter(description = "Start date and time (ISO format)", required = true, example = "2025-01-01T00:00:00")
@@ -36,7 +55,10 @@ public class ReportController {
 
         log.info("Received request for comprehensive report from {} to {}", startDate, endDate);
         try {
-            ComprehensiveReport report = reportService.generateComprehensiveReport(startDate, endDate);
+            ReportKey key = ReportKey.window("comprehensive", startDate, endDate);
+            ComprehensiveReport report = reportCache.get(key,
+                    () -> reportFlights.run(key, () -> reportService.generateComprehensiveReport(startDate, endDate)),
+                    generated -> !Boolean.TRUE.equals(generated.getPartial()));
             return ResponseEntity.ok(ApiResponse.success("Comprehensive report generated successfully", report));
         } catch (Exception e) {
             log.error("Error generating comprehensive report", e);
@@ -56,7 +78,8 @@ public class ReportController {
 
         log.info("Received request for activity report: {}", activityId);
         try {
-            ActivityReport report = reportService.generateActivityReport(activityId);
+            ActivityReport report = reportFlights.run(ReportKey.allTime("activity", activityId, null),
+                    () -> reportService.generateActivityReport(activityId));
             return ResponseEntity.ok(ApiResponse.success("Activity report generated successfully", report));
         } catch (Exception e) {
             log.error("Error generating activity report", e);
@@ -76,7 +99,8 @@ public class ReportController {
 
         log.info("Received request for actor report: {}", actorId);
         try {
-            ActorReport report = reportService.generateActorReport(actorId);
+            ActorReport report = reportFlights.run(ReportKey.allTime("actor", actorId, null),
+                    () -> reportService.generateActorReport(actorId));
             return ResponseEntity.ok(ApiResponse.success("Actor report generated successfully", report));
         } catch (Exception e) {
             log.error("Error generating actor report", e);
@@ -98,7 +122,9 @@ public class ReportController {
 
         log.info("Received request for verb breakdown from {} to {}", startDate, endDate);
         try {
-            List<VerbReport> reports = reportService.generateVerbBreakdown(startDate, endDate);
+            ReportKey key = ReportKey.window("verbs", startDate, endDate);
+            List<VerbReport> reports = reportCache.get(key,
+                    () -> reportFlights.run(key, () -> reportService.generateVerbBreakdown(startDate, endDate)));
             return ResponseEntity.ok(ApiResponse.success("Verb breakdown generated successfully", reports));
         } catch (Exception e) {
             log.error("Error generating verb breakdown", e);
@@ -120,7 +146,9 @@ public class ReportController {
 
         log.info("Received request for daily trends from {} to {}", startDate, endDate);
         try {
-            List<DailyActivityReport> reports = reportService.generateDailyTrends(startDate, endDate);
+            ReportKey key = ReportKey.window("daily-trends", startDate, endDate);
+            List<DailyActivityReport> reports = reportCache.get(key,
+                    () -> reportFlights.run(key, () -> reportService.generateDailyTrends(startDate, endDate)));
             return ResponseEntity.ok(ApiResponse.success("Daily trends generated successfully", reports));
         } catch (Exception e) {
             log.error("Error generating daily trends", e);
@@ -140,7 +168,8 @@ public class ReportController {
 
         log.info("Received request for top {} performers", limit);
         try {
-            List<ActorReport> reports = reportService.getTopPerformers(limit);
+            List<ActorReport> reports = reportFlights.run(ReportKey.allTime("top-performers", null, limit),
+                    () -> reportService.getTopPerformers(limit));
             return ResponseEntity.ok(ApiResponse.success("Top performers retrieved successfully", reports));
         } catch (Exception e) {
             log.error("Error retrieving top performers", e);
@@ -160,7 +189,8 @@ public class ReportController {
 
         log.info("Received request for top {} most popular activities", limit);
         try {
-            List<ActivityReport> reports = reportService.getMostPopularActivities(limit);
+            List<ActivityReport> reports = reportFlights.run(ReportKey.allTime("popular-activities", null, limit),
+                    () -> reportService.getMostPopularActivities(limit));
             return ResponseEntity.ok(ApiResponse.success("Most popular activities retrieved successfully", reports));
         } catch (Exception e) {
             log.error("Error retrieving popular activities", e);
@@ -168,5 +198,160 @@ public class ReportController {
                     .body(ApiResponse.error("Failed to retrieve popular activities: " + e.getMessage()));
         }
     }
-}
 
+    @GetMapping("/score-distribution")
+    @Operation(
+        summary = "Get score distribution for a date range",
+        description = "Returns the median, 90th and 99th percentiles and a histogram of the scaled scores in the date range. Percentiles are within 0.005 of the exact values; covered ranges are read from the per-bucket score histograms of the materialized rollups"
+    )
+    public ResponseEntity<ApiResponse<ScoreDistribution>> getScoreDistribution(
+            @Parameter(description = "Start date and time (ISO format)", required = true, example = "2025-01-01T00:00:00")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @Parameter(description = "End date and time (ISO format)", required = true, example = "2025-12-31T23:59:59")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @Parameter(description = "Number of equal-width histogram ranges over [-1, 1]", example = "20")
+            @RequestParam(defaultValue = "20") int ranges) {
+
+        log.info("Received request for score distribution from {} to {}", startDate, endDate);
+        try {
+            ScoreDistribution distribution = reportFlights.run(ReportKey.window("score-distribution", startDate, endDate, ranges),
+                    () -> reportService.getScoreDistribution(startDate, endDate, ranges));
+            return ResponseEntity.ok(ApiResponse.success("Score distribution generated successfully", distribution));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error generating score distribution", e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("Failed to generate score distribution: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/score-distribution/activity/{activityId}")
+    @Operation(
+        summary = "Get score distribution for an activity",
+        description = "Returns the median, 90th and 99th percentiles and a histogram of the scaled scores of a specific activity. Percentiles are within 0.005 of the exact values"
+    )
+    public ResponseEntity<ApiResponse<ScoreDistribution>> getActivityScoreDistribution(
+            @Parameter(description = "Activity ID (URI)", required = true)
+            @PathVariable String activityId,
+            @Parameter(description = "Number of equal-width histogram ranges over [-1, 1]", example = "20")
+            @RequestParam(defaultValue = "20") int ranges) {
+
+        log.info("Received request for activity score distribution: {}", activityId);
+        try {
+            ScoreDistribution distribution = reportFlights.run(ReportKey.allTime("activity-score-distribution", activityId, ranges),
+                    () -> reportService.getActivityScoreDistribution(activityId, ranges));
+            return ResponseEntity.ok(ApiResponse.success("Score distribution generated successfully", distribution));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error generating activity score distribution", e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("Failed to generate score distribution: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/score-distribution/actor/{actorId}")
+    @Operation(
+        summary = "Get score distribution for an actor/learner",
+        description = "Returns the median, 90th and 99th percentiles and a histogram of the scaled scores of a specific actor. Percentiles are within 0.005 of the exact values"
+    )
+    public ResponseEntity<ApiResponse<ScoreDistribution>> getActorScoreDistribution(
+            @Parameter(description = "Actor ID (UUID)", required = true)
+            @PathVariable String actorId,
+            @Parameter(description = "Number of equal-width histogram ranges over [-1, 1]", example = "20")
+            @RequestParam(defaultValue = "20") int ranges) {
+
+        log.info("Received request for actor score distribution: {}", actorId);
+        try {
+            ScoreDistribution distribution = reportFlights.run(ReportKey.allTime("actor-score-distribution", actorId, ranges),
+                    () -> reportService.getActorScoreDistribution(actorId, ranges));
+            return ResponseEntity.ok(ApiResponse.success("Score distribution generated successfully", distribution));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error generating actor score distribution", e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("Failed to generate score distribution: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/jobs")
+    @Operation(
+        summary = "Submit a comprehensive report job",
+        description = "Queues a comprehensive report for the specified date range and returns the job straight away. Poll GET /api/reports/jobs/{id} for its status, progress and result; jobs and results are kept for lrs.reports.job-result-ttl"
+    )
+    public ResponseEntity<ApiResponse<ReportJob>> submitReportJob(
+            @Parameter(description = "Start date and time (ISO format)", required = true, example = "2025-01-01T00:00:00")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @Parameter(description = "End date and time (ISO format)", required = true, example = "2025-12-31T23:59:59")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+
+        log.info("Received report job from {} to {}", startDate, endDate);
+        try {
+            ReportJob job = reportJobService.submit(startDate, endDate);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Report job queued", job));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error("Too many report jobs queued, retry later"));
+        } catch (Exception e) {
+            log.error("Error submitting report job", e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("Failed to submit report job: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/jobs/{id}")
+    @Operation(
+        summary = "Get a report job",
+        description = "Returns the status and progress of a report job, with the report once it has completed"
+    )
+    public ResponseEntity<ApiResponse<ReportJob>> getReportJob(
+            @Parameter(description = "Report job ID", required = true)
+            @PathVariable String id) {
+
+        log.debug("Received request for report job: {}", id);
+        try {
+            return reportJobService.find(id)
+                    .map(job -> ResponseEntity.ok(ApiResponse.success("Report job retrieved successfully", job)))
+                    .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body(ApiResponse.error("Report job not found")));
+        } catch (Exception e) {
+            log.error("Error retrieving report job", e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("Failed to retrieve report job: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/rollups/materialize")
+    @Operation(
+        summary = "Materialize rollups for a date range",
+        description = "Rebuilds the hourly and daily buckets in statement_rollups for the given range from the stored statements. Safe to repeat; the range is widened to whole hours and capped at the last complete hour. Ranges longer than lrs.rollups.materialize-max-days are rejected with 400; split them into several requests"
+    )
+    public ResponseEntity<ApiResponse<RollupState>> materializeRollups(
+            @Parameter(description = "Start date and time (ISO format)", required = true, example = "2025-01-01T00:00:00")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @Parameter(description = "End date and time (ISO format)", required = true, example = "2025-02-01T00:00:00")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+
+        log.info("Received request to materialize rollups from {} to {}", startDate, endDate);
+        try {
+            RollupState materialized = rollupMaterializer.materialize(startDate, endDate);
+            return ResponseEntity.ok(ApiResponse.success("Rollups materialized successfully", materialized));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error materializing rollups", e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("Failed to materialize rollups: " + e.getMessage()));
+        }
+    }
+}
@@ -3,7 +3,17 @@ package africa.enumverse.lrs.controller;
 import africa.enumverse.lrs.dto.ApiResponse;
 import africa.enumverse.lrs.dto.StatementRequest;
 import africa.enumverse.lrs.dto.StatementResponse;
+import africa.enumverse.lrs.dto.StatementResult;
+import africa.enumverse.lrs.exception.IngestionBackpressureException;
+import africa.enumverse.lrs.exception.IngestionBatchTooLargeException;
+import africa.enumverse.lrs.exception.StatementConflictException;
 import africa.enumverse.lrs.service.StatementService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -13,12 +23,20 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/statements")
@@ -27,12 +45,19 @@ import java.util.List;
 @Tag(name = "xAPI Statements", description = "API endpoints for managing xAPI (Experience API) statements")
 public class StatementController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final StatementService statementService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @Operation(
-        summary = "Create a new xAPI statement",
-        description = "Creates a new learning activity statement following the xAPI specification"
+        summary = "Create one or more xAPI statements",
+        description = "Creates a learning activity statement following the xAPI specification. " +
+                "An array of statements is stored with a single bulk write and answered with the list of " +
+                "generated statement ids, in request order. A statement may carry its own UUID in 'id'; " +
+                "resubmitting it with the same content is a no-op. In write-behind ingestion mode statements are " +
+                "acknowledged with 202 once queued"
     )
     @ApiResponses(value = {
         @io.swagger.v3.oas.annotations.responses.ApiResponse(
@@ -40,22 +65,71 @@ public class StatementController {
             description = "Statement created successfully",
             content = @Content(schema = @Schema(implementation = ApiResponse.class))
         ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "200",
+            description = "All statements in the array were created"
+        ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "207",
+            description = "Some statements in the array were rejected; their ids are null"
+        ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "202",
+            description = "Statements were queued for a background write (write-behind ingestion mode)"
+        ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "429",
+            description = "The ingestion queue is full; retry after the number of seconds in Retry-After"
+        ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "413",
+            description = "The array holds more statements than the ingestion queue can; split it"
+        ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "400",
+            description = "The body is neither a statement nor an array of statements"
+        ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "409",
+            description = "The statement id is already used by a statement with different content"
+        ),
         @io.swagger.v3.oas.annotations.responses.ApiResponse(
             responseCode = "500",
             description = "Internal server error"
         )
     })
-    public ResponseEntity<ApiResponse<StatementResponse>> createStatement(
+    public ResponseEntity<? extends ApiResponse<?>> createStatement(
             @io.swagger.v3.oas.annotations.parameters.RequestBody(
-                description = "xAPI statement data",
-                required = true
+                description = "xAPI statement, or an array of statements",
+                required = true,
+                content = @Content(schema = @Schema(oneOf = {StatementRequest.class, StatementRequest[].class}))
             )
-            @RequestBody StatementRequest request) {
+            @RequestBody JsonNode body) {
+        if (body.isArray()) {
+            return createStatements(body);
+        }
+
         log.info("Received request to create statement");
         try {
+            StatementRequest request = objectMapper.treeToValue(body, StatementRequest.class);
             StatementResponse statement = statementService.createStatement(request);
+            if (statementService.isWriteBehind()) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .body(ApiResponse.success("Statement accepted", statement));
+            }
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(ApiResponse.success("Statement created successfully", statement));
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Invalid statement: " + e.getOriginalMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (StatementConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (IngestionBackpressureException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             log.error("Error creating statement", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -63,16 +137,80 @@ public class StatementController {
         }
     }
 
+    @PutMapping
+    @Operation(
+        summary = "Store a statement under a client-assigned id",
+        description = "Stores the statement with the given UUID. Repeating the request with the same content " +
+                "is a no-op, so clients can safely retry after a timeout"
+    )
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "204",
+            description = "Statement stored, or already stored with the same content"
+        ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "202",
+            description = "Statement queued for a background write (write-behind ingestion mode)"
+        ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "400",
+            description = "The statement id is not a UUID or does not match the id in the body"
+        ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "409",
+            description = "The statement id is already used by a statement with different content"
+        )
+    })
+    public ResponseEntity<ApiResponse<Void>> putStatement(
+            @Parameter(description = "Client-assigned statement UUID", required = true)
+            @RequestParam String statementId,
+            @RequestBody StatementRequest request) {
+        log.info("Received request to put statement: {}", statementId);
+        try {
+            if (request.getId() != null && !request.getId().equalsIgnoreCase(statementId)) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("statementId does not match the id in the statement"));
+            }
+            request.setId(statementId);
+            statementService.createStatement(request);
+            if (statementService.isWriteBehind()) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .body(ApiResponse.success("Statement accepted", null));
+            }
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (StatementConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (IngestionBackpressureException e) {
+            return tooManyRequests(e);
+        } catch (Exception e) {
+            log.error("Error storing statement {}", statementId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to store statement: " + e.getMessage()));
+        }
+    }
+
     @GetMapping
     @Operation(
         summary = "Get all statements",
-        description = "Retrieves all xAPI statements from the database"
+        description = "Retrieves xAPI statements one page at a time, most recently stored first. " +
+                "Follow the 'more' link to fetch the next page"
     )
-    public ResponseEntity<ApiResponse<List<StatementResponse>>> getAllStatements() {
-        log.info("Received request to get all statements");
+    public ResponseEntity<ApiResponse<StatementResult>> getAllStatements(
+            @Parameter(description = "Opaque cursor returned by the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Maximum number of statements per page (capped by the server)", example = "100")
+            @RequestParam(required = false) Integer limit) {
+        log.info("Received request to get statements page");
         try {
-            List<StatementResponse> statements = statementService.getAllStatements();
+            StatementResult statements = withMoreLink(statementService.getAllStatements(cursor, limit));
             return ResponseEntity.ok(ApiResponse.success(statements));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             log.error("Error fetching statements", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -98,15 +236,22 @@ public class StatementController {
     @GetMapping("/actor/{actorName}")
     @Operation(
         summary = "Get statements by actor name",
-        description = "Retrieves all statements for a specific actor (learner)"
+        description = "Retrieves statements for a specific actor (learner), one page at a time"
     )
-    public ResponseEntity<ApiResponse<List<StatementResponse>>> getStatementsByActor(
+    public ResponseEntity<ApiResponse<StatementResult>> getStatementsByActor(
             @Parameter(description = "Actor/learner name", required = true)
-            @PathVariable String actorName) {
+            @PathVariable String actorName,
+            @Parameter(description = "Opaque cursor returned by the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Maximum number of statements per page (capped by the server)", example = "100")
+            @RequestParam(required = false) Integer limit) {
         log.info("Received request to get statements by actor: {}", actorName);
         try {
-            List<StatementResponse> statements = statementService.getStatementsByActor(actorName);
+            StatementResult statements = withMoreLink(statementService.getStatementsByActor(actorName, cursor, limit));
             return ResponseEntity.ok(ApiResponse.success(statements));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             log.error("Error fetching statements by actor", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -117,15 +262,22 @@ public class StatementController {
     @GetMapping("/verb/{verbId}")
     @Operation(
         summary = "Get statements by verb",
-        description = "Retrieves all statements with a specific verb (e.g., 'completed', 'passed')"
+        description = "Retrieves statements with a specific verb (e.g., 'completed', 'passed'), one page at a time"
     )
-    public ResponseEntity<ApiResponse<List<StatementResponse>>> getStatementsByVerb(
+    public ResponseEntity<ApiResponse<StatementResult>> getStatementsByVerb(
             @Parameter(description = "Verb ID (e.g., http://adlnet.gov/expapi/verbs/completed)", required = true)
-            @PathVariable String verbId) {
+            @PathVariable String verbId,
+            @Parameter(description = "Opaque cursor returned by the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Maximum number of statements per page (capped by the server)", example = "100")
+            @RequestParam(required = false) Integer limit) {
         log.info("Received request to get statements by verb: {}", verbId);
         try {
-            List<StatementResponse> statements = statementService.getStatementsByVerb(verbId);
+            StatementResult statements = withMoreLink(statementService.getStatementsByVerb(verbId, cursor, limit));
             return ResponseEntity.ok(ApiResponse.success(statements));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             log.error("Error fetching statements by verb", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -136,17 +288,24 @@ public class StatementController {
     @GetMapping("/date-range")
     @Operation(
         summary = "Get statements by date range",
-        description = "Retrieves statements within a specific time period"
+        description = "Retrieves statements within a specific time period, one page at a time, latest timestamp first"
     )
-    public ResponseEntity<ApiResponse<List<StatementResponse>>> getStatementsByDateRange(
+    public ResponseEntity<ApiResponse<StatementResult>> getStatementsByDateRange(
             @Parameter(description = "Start date and time (ISO format)", required = true, example = "2025-10-01T00:00:00")
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
             @Parameter(description = "End date and time (ISO format)", required = true, example = "2025-10-16T23:59:59")
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @Parameter(description = "Opaque cursor returned by the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Maximum number of statements per page (capped by the server)", example = "100")
+            @RequestParam(required = false) Integer limit) {
         log.info("Received request to get statements between {} and {}", start, end);
         try {
-            List<StatementResponse> statements = statementService.getStatementsByDateRange(start, end);
+            StatementResult statements = withMoreLink(statementService.getStatementsByDateRange(start, end, cursor, limit));
             return ResponseEntity.ok(ApiResponse.success(statements));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             log.error("Error fetching statements by date range", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -154,6 +313,59 @@ public class StatementController {
         }
     }
 
+    @GetMapping("/export")
+    @Operation(
+        summary = "Export statements",
+        description = "Streams every statement in a time period, oldest first, as newline-delimited JSON (ndjson) " +
+                "or a single JSON array. Statements are written as they are read from the database, so exports " +
+                "of any size run in constant memory"
+    )
+    public ResponseEntity<StreamingResponseBody> exportStatements(
+            @Parameter(description = "Only statements after this date and time (ISO format)", example = "2025-10-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @Parameter(description = "Only statements before this date and time (ISO format)", example = "2025-10-16T23:59:59")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime until,
+            @Parameter(description = "Output format: ndjson or json", example = "ndjson")
+            @RequestParam(defaultValue = "ndjson") String format) {
+        log.info("Received request to export statements between {} and {} as {}", since, until, format);
+
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        if (!ndjson && !"json".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            ObjectWriter writer = objectMapper.writerFor(StatementResponse.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            long exported = 0;
+
+            try (Stream<StatementResponse> statements = statementService.streamStatements(since, until);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                if (!ndjson) generator.writeStartArray();
+
+                Iterator<StatementResponse> iterator = statements.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                    if (ndjson) generator.writeRaw('\n');
+                    exported++;
+                }
+
+                if (!ndjson) generator.writeEndArray();
+            } catch (IOException | RuntimeException e) {
+                log.error("Statement export aborted after {} statements", exported, e);
+                throw e;
+            }
+            log.info("Exported {} statements", exported);
+        };
+
+        return ResponseEntity.ok()
+                .contentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"statements." + (ndjson ? "ndjson" : "json") + "\"")
+                .body(body);
+    }
+
     @DeleteMapping("/{id}")
     @Operation(
         summary = "Delete statement",
@@ -172,4 +384,67 @@ public class StatementController {
                     .body(ApiResponse.error("Failed to delete statement: " + e.getMessage()));
         }
     }
+
+    private ResponseEntity<ApiResponse<List<String>>> createStatements(JsonNode body) {
+        log.info("Received request to create {} statements", body.size());
+        try {
+            List<StatementRequest> requests = objectMapper.readerForListOf(StatementRequest.class).readValue(body);
+            StatementService.BatchResult result = statementService.createStatements(requests);
+
+            List<String> ids = result.getResponses().stream()
+                    .map(statement -> statement != null ? statement.getId() : null)
+                    .collect(Collectors.toList());
+
+            if (result.getFailures().isEmpty()) {
+                if (statementService.isWriteBehind()) {
+                    return ResponseEntity.status(HttpStatus.ACCEPTED)
+                            .body(ApiResponse.success("Statements accepted", ids));
+                }
+                return ResponseEntity.ok(ApiResponse.success("Statements created successfully", ids));
+            }
+            log.warn("{} of {} statements rejected: {}", result.getFailures().size(), requests.size(), result.getFailures());
+            return ResponseEntity.status(HttpStatus.MULTI_STATUS)
+                    .body(ApiResponse.<List<String>>builder()
+                            .success(false)
+                            .message(result.getFailures().size() + " of " + requests.size() +
+                                    " statements were rejected: " + result.getFailures())
+                            .data(ids)
+                            .build());
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Invalid statement array: " + e.getMessage()));
+        } catch (IngestionBatchTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (IngestionBackpressureException e) {
+            return tooManyRequests(e);
+        } catch (Exception e) {
+            log.error("Error creating statements", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to create statements: " + e.getMessage()));
+        }
+    }
+
+    private <T> ResponseEntity<ApiResponse<T>> tooManyRequests(IngestionBackpressureException e) {
+        log.warn(e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
+    /**
+     * Points the xAPI-style "more" link at the current request with the next cursor
+     */
+    private StatementResult withMoreLink(StatementResult result) {
+        if (result.getCursor() != null) {
+            result.setMore(ServletUriComponentsBuilder.fromCurrentRequest()
+                    .scheme(null)
+                    .host(null)
+                    .port(-1)
+                    .replaceQueryParam("cursor", result.getCursor())
+                    .build(true)
+                    .toUriString());
+        }
+        return result;
+    }
 }
@@ -15,6 +15,7 @@ public class ActivityReport {
     private String activityId;
     private String activityName;
     private Long totalStatements;
+    private Long uniqueActors;
     private Long completedCount;
     private Long successCount;
     private Double averageScore;
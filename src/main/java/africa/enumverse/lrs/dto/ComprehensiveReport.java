@@ -17,7 +17,8 @@ public class ComprehensiveReport {
     private LocalDateTime reportStartDate;
     private LocalDateTime reportEndDate;
 
-    // Overview statistics
+    // Overview statistics; actor and activity totals are HyperLogLog estimates wherever
+    // the range is covered by materialized rollups
     private Long totalStatements;
     private Long totalActors;
     private Long totalActivities;
@@ -33,5 +34,9 @@ public class ComprehensiveReport {
     private List<ActorReport> topPerformers;
     private List<ActivityReport> mostPopularActivities;
     private List<DailyActivityReport> dailyTrends;
+
+    // Sections that did not finish in time are left empty (or null) and listed here
+    private Boolean partial;
+    private List<String> incompleteSections;
 }
 
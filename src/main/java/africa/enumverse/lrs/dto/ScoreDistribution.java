@@ -0,0 +1,38 @@
+package africa.enumverse.lrs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScoreDistribution {
+    // The activity, actor or date range the scores were taken from
+    private String activityId;
+    private String actorId;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+
+    // Scaled scores; percentiles are within 0.005 of the exact values and null without scores
+    private Long count;
+    private Double p50;
+    private Double p90;
+    private Double p99;
+    private List<ScoreRange> histogram;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ScoreRange {
+        private Double lower;
+        private Double upper;
+        private Long count;
+    }
+}
@@ -11,6 +11,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class StatementRequest {
 
+    private String id; // optional client-assigned UUID; resubmitting it with the same content is a no-op
     private ActorDto actor;
     private VerbDto verb;
     private ActivityDto object;
@@ -0,0 +1,21 @@
+package africa.enumverse.lrs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of statements, modelled on the xAPI StatementResult object
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementResult {
+    private List<StatementResponse> statements;
+    private String cursor; // opaque token for the next page, null on the last page
+    private String more; // relative link to the next page, null on the last page
+}
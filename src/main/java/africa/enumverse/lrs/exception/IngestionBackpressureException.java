@@ -0,0 +1,20 @@
+package africa.enumverse.lrs.exception;
+
+import java.time.Duration;
+
+/**
+ * Thrown when the write-behind ingestion queue cannot accept more statements
+ */
+public class IngestionBackpressureException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public IngestionBackpressureException(int requested, int available, Duration retryAfter) {
+        super(String.format("Ingestion queue is full: %d statements submitted, room for %d", requested, available));
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,13 @@
+package africa.enumverse.lrs.exception;
+
+/**
+ * Thrown when a batch is larger than the write-behind ingestion queue can ever hold, so
+ * retrying it would never succeed
+ */
+public class IngestionBatchTooLargeException extends RuntimeException {
+
+    public IngestionBatchTooLargeException(int requested, int capacity) {
+        super(String.format("Batch of %d statements exceeds the ingestion queue capacity of %d; split it into smaller batches",
+                requested, capacity));
+    }
+}
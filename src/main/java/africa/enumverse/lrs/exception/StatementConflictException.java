@@ -0,0 +1,11 @@
+package africa.enumverse.lrs.exception;
+
+/**
+ * Thrown when a client-supplied statement id was already used for different content
+ */
+public class StatementConflictException extends RuntimeException {
+
+    public StatementConflictException(String statementId) {
+        super(String.format("Statement %s already exists with different content", statementId));
+    }
+}
@@ -0,0 +1,148 @@
+package africa.enumverse.lrs.listener;
+
+import com.mongodb.MongoTimeoutException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Explains every derived repository query once the application is ready and logs
+ * the winning plan, so a query that is not backed by an index shows up as a COLLSCAN
+ * warning at startup instead of as a slow endpoint in production. Runs in the background,
+ * so a slow store does not hold up startup
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "lrs.mongo.explain-on-startup", havingValue = "true")
+@ConditionalOnProperty(prefix = "lrs.store", name = "engine", havingValue = "mongo", matchIfMissing = true)
+public class IndexPlanLogger {
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener
+    @Async
+    public void logQueryPlans(ApplicationReadyEvent event) {
+        Repositories repositories = new Repositories(event.getApplicationContext());
+        QueryMapper queryMapper = new QueryMapper(mongoTemplate.getConverter());
+
+        for (Class<?> domainType : repositories) {
+            MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                    .getRequiredPersistentEntity(domainType);
+            RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainType);
+
+            for (Method method : information.getQueryMethods()) {
+                try {
+                    Document filter = queryMapper.getMappedObject(
+                            sampleCriteria(method.getName(), domainType).getCriteriaObject(), entity);
+                    Document explain = mongoTemplate.getCollection(entity.getCollection())
+                            .find(filter)
+                            .explain();
+                    logPlan(information.getRepositoryInterface().getSimpleName() + "." + method.getName(), explain);
+                } catch (IllegalArgumentException e) {
+                    log.debug("Skipping query plan check for {}: {}", method.getName(), e.getMessage());
+                } catch (DataAccessResourceFailureException | MongoTimeoutException e) {
+                    log.warn("Could not explain repository queries, skipping index plan check: {}", e.getMessage());
+                    return;
+                } catch (Exception e) {
+                    log.warn("Could not explain {}, skipping its index plan check: {}", method.getName(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a criteria equivalent to the derived query with placeholder values;
+     * the planner picks indexes by shape, so the values themselves do not matter
+     */
+    private Criteria sampleCriteria(String methodName, Class<?> domainType) {
+        PartTree tree = new PartTree(methodName, domainType);
+        List<Criteria> criteria = new ArrayList<>();
+
+        for (Part part : tree.getParts()) {
+            String path = part.getProperty().toDotPath();
+            Object sample = sampleValue(part.getProperty().getLeafType());
+
+            switch (part.getType()) {
+                case SIMPLE_PROPERTY -> criteria.add(Criteria.where(path).is(sample));
+                case BETWEEN -> criteria.add(Criteria.where(path).gt(sample).lt(sample));
+                case GREATER_THAN, AFTER -> criteria.add(Criteria.where(path).gt(sample));
+                case LESS_THAN, BEFORE -> criteria.add(Criteria.where(path).lt(sample));
+                case TRUE -> criteria.add(Criteria.where(path).is(true));
+                case FALSE -> criteria.add(Criteria.where(path).is(false));
+                default -> throw new IllegalArgumentException("unsupported part type " + part.getType());
+            }
+        }
+
+        return criteria.isEmpty() ? new Criteria() : new Criteria().andOperator(criteria);
+    }
+
+    private Object sampleValue(Class<?> type) {
+        if (LocalDateTime.class.equals(type)) return LocalDateTime.now();
+        if (Boolean.class.equals(type) || boolean.class.equals(type)) return Boolean.TRUE;
+        if (Number.class.isAssignableFrom(type)) return 0;
+        return "explain";
+    }
+
+    private void logPlan(String query, Document explain) {
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        Document winningPlan = queryPlanner != null ? queryPlanner.get("winningPlan", Document.class) : null;
+        if (winningPlan == null) {
+            log.warn("No winning plan reported for {}", query);
+            return;
+        }
+
+        List<String> stages = new ArrayList<>();
+        collectStages(winningPlan, stages);
+        String plan = String.join(" <- ", stages);
+
+        if (stages.stream().anyMatch(stage -> stage.startsWith("COLLSCAN"))) {
+            log.warn("Query {} is not index-backed: {}", query, plan);
+        } else {
+            log.info("Query {} uses {}", query, plan);
+        }
+    }
+
+    private void collectStages(Document plan, List<String> stages) {
+        // Newer servers nest the classic plan shape under "queryPlan"
+        Document queryPlan = plan.get("queryPlan", Document.class);
+        if (queryPlan != null) {
+            collectStages(queryPlan, stages);
+            return;
+        }
+
+        String stage = plan.getString("stage");
+        if (stage != null) {
+            String indexName = plan.getString("indexName");
+            stages.add(indexName != null ? stage + "[" + indexName + "]" : stage);
+        }
+
+        Document inputStage = plan.get("inputStage", Document.class);
+        if (inputStage != null) {
+            collectStages(inputStage, stages);
+        }
+        List<Document> inputStages = plan.getList("inputStages", Document.class);
+        if (inputStages != null) {
+            inputStages.forEach(input -> collectStages(input, stages));
+        }
+    }
+}
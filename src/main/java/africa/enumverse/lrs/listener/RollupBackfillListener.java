@@ -0,0 +1,34 @@
+package africa.enumverse.lrs.listener;
+
+import africa.enumverse.lrs.service.StatementRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+/**
+ * Extends the live rollups over statements stored before they were enabled, in the
+ * background once the application is ready; reports use raw data for anything not yet covered
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "lrs.rollups.backfill-on-startup", havingValue = "true")
+@ConditionalOnProperty(prefix = "lrs.store", name = "engine", havingValue = "mongo", matchIfMissing = true)
+public class RollupBackfillListener {
+
+    private final StatementRollupService rollupService;
+
+    @EventListener
+    @Async
+    public void backfill(ApplicationReadyEvent event) {
+        try {
+            rollupService.backfill();
+        } catch (Exception e) {
+            log.warn("Rollup backfill stopped, it resumes on the next start: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package africa.enumverse.lrs.listener;
+
+import africa.enumverse.lrs.service.StatementRollupMaterializer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps statement_rollups up to date on a fixed delay; a failed run is simply repeated
+ * by the next one, since every run rebuilds its buckets from the statements
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "lrs.rollups.materialize-on-schedule", havingValue = "true")
+@ConditionalOnProperty(prefix = "lrs.store", name = "engine", havingValue = "mongo", matchIfMissing = true)
+public class RollupMaterializationJob {
+
+    private final StatementRollupMaterializer materializer;
+
+    @Scheduled(initialDelayString = "${lrs.rollups.materialize-interval}",
+            fixedDelayString = "${lrs.rollups.materialize-interval}")
+    public void materialize() {
+        try {
+            materializer.materializeRecent();
+        } catch (Exception e) {
+            log.warn("Rollup materialization failed, retrying on the next run: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package africa.enumverse.lrs.listener;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.model.Statement;
+import africa.enumverse.lrs.service.StatementDictionary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compacts statement documents on their way to MongoDB when lrs.store.compact-definitions
+ * is set, and expands every statement document read back before it is mapped, so the rest
+ * of the application only ever sees full statements. This covers every write and entity
+ * read of MongoTemplate and the repositories, bulk inserts included; aggregations that
+ * return raw documents resolve the references themselves
+ */
+@Component
+@RequiredArgsConstructor
+public class StatementDictionaryListener extends AbstractMongoEventListener<Statement> {
+
+    private final StatementDictionary dictionary;
+    private final LrsProperties properties;
+
+    @Override
+    public void onBeforeSave(BeforeSaveEvent<Statement> event) {
+        if (properties.getStore().isCompactDefinitions() && event.getDocument() != null) {
+            dictionary.compact(event.getDocument());
+        }
+    }
+
+    @Override
+    public void onAfterLoad(AfterLoadEvent<Statement> event) {
+        dictionary.expand(event.getDocument());
+    }
+}
@@ -1,35 +1,114 @@
 package africa.enumverse.lrs.listener;
 
+import africa.enumverse.lrs.dto.StatementResponse;
+import africa.enumverse.lrs.service.DefinitionRegistry;
+import africa.enumverse.lrs.service.EventPublisherService.StatementBatchCreatedEvent;
 import africa.enumverse.lrs.service.EventPublisherService.StatementCreatedEvent;
+import africa.enumverse.lrs.service.EventPublisherService.StatementDeletedEvent;
+import africa.enumverse.lrs.service.ReportCache;
+import africa.enumverse.lrs.service.StatementRollupService;
+import africa.enumverse.lrs.service.TopKService;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * Listens for statement created events and can trigger analytics updates,
  * notifications, or other side effects
  */
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class StatementEventListener {
 
+    private final StatementRollupService rollupService;
+    private final TopKService topKService;
+    private final ReportCache reportCache;
+    private final DefinitionRegistry definitionRegistry;
+
     @EventListener
     @Async
     public void handleStatementCreated(StatementCreatedEvent event) {
         log.info("Statement created event received: {}", event.getStatement().getId());
 
-        // Here you can:
-        // 1. Update real-time analytics dashboards
-        // 2. Send notifications
-        // 3. Trigger other business processes
-        // 4. Update caches
-        // 5. Send to external systems (e.g., webhooks, message queues)
+        // Here you can also:
+        // 1. Send notifications
+        // 2. Trigger other business processes
+        // 3. Update caches
+        // 4. Send to external systems (e.g., webhooks, message queues)
 
         log.debug("Actor: {}, Verb: {}, Activity: {}",
                 event.getStatement().getActor() != null ? event.getStatement().getActor().getName() : "unknown",
                 event.getStatement().getVerb() != null ? event.getStatement().getVerb().getId() : "unknown",
                 event.getStatement().getObject() != null ? event.getStatement().getObject().getId() : "unknown");
+
+        updateRollups(List.of(event.getStatement()));
+        registerDefinitions(List.of(event.getStatement()));
+    }
+
+    @EventListener
+    @Async
+    public void handleStatementBatchCreated(StatementBatchCreatedEvent event) {
+        log.info("Statement batch created event received: {} statements", event.getStatements().size());
+        updateRollups(event.getStatements());
+        registerDefinitions(event.getStatements());
+    }
+
+    /**
+     * Takes a deleted statement back out of the rollups and rankings. Reports cached while
+     * the rollups still counted it are dropped again once it is out
+     */
+    @EventListener
+    @Async
+    public void handleStatementDeleted(StatementDeletedEvent event) {
+        StatementResponse statement = event.getStatement();
+        log.info("Statement deleted event received: {}", statement.getId());
+        try {
+            rollupService.remove(statement);
+            topKService.invalidate();
+            reportCache.invalidate(timestamps(List.of(statement)));
+        } catch (Exception e) {
+            log.error("Failed to remove statement {} from the rollups", statement.getId(), e);
+        }
     }
-}
 
+    /**
+     * Drops cached reports before the request that stored the statements completes, so the
+     * next poll already sees them
+     */
+    @EventListener
+    public void invalidateReports(StatementCreatedEvent event) {
+        reportCache.invalidate(timestamps(List.of(event.getStatement())));
+    }
+
+    @EventListener
+    public void invalidateReports(StatementBatchCreatedEvent event) {
+        reportCache.invalidate(timestamps(event.getStatements()));
+    }
+
+    private List<LocalDateTime> timestamps(List<StatementResponse> statements) {
+        return statements.stream().map(StatementResponse::getTimestamp).toList();
+    }
+
+    private void updateRollups(List<StatementResponse> statements) {
+        try {
+            rollupService.record(statements);
+            topKService.record(statements);
+        } catch (Exception e) {
+            log.error("Failed to update rollups for {} statements", statements.size(), e);
+        }
+    }
+
+    private void registerDefinitions(List<StatementResponse> statements) {
+        try {
+            definitionRegistry.register(statements);
+        } catch (Exception e) {
+            log.error("Failed to register definitions of {} statements", statements.size(), e);
+        }
+    }
+}
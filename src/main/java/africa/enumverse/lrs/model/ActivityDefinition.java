@@ -0,0 +1,27 @@
+package africa.enumverse.lrs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * The canonical definition of an activity: the latest one ingested with a statement
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "activities")
+public class ActivityDefinition {
+
+    @Id
+    private String id; // activity IRI
+
+    private Definition definition;
+    private LocalDateTime updated;
+}
@@ -0,0 +1,42 @@
+package africa.enumverse.lrs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.IndexDirection;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Live all-time counters for one activity; indexed by count so the most popular
+ * activities are read straight off the index
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "rollup_activities")
+public class ActivityRollup {
+
+    @Id
+    private String activityId;
+
+    private Map<String, String> name;
+    @Indexed(direction = IndexDirection.DESCENDING)
+    private long count;
+    private long completions;
+    private long successes;
+    private double scoreSum;
+    private long scoreCount;
+    private LocalDateTime first;
+    private LocalDateTime last;
+    // Scaled scores per ScoreHistogram bin, incremented like the counters
+    @Builder.Default
+    private Map<String, Long> scoreBins = new HashMap<>();
+}
@@ -0,0 +1,44 @@
+package africa.enumverse.lrs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.IndexDirection;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Live all-time counters for one actor. averageScore is kept up to date with every
+ * increment and indexed, so the top performers are read straight off the index
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "rollup_actors")
+public class ActorRollup {
+
+    @Id
+    private String actorId;
+
+    private String name;
+    private String mbox;
+    private long count;
+    private long completions;
+    private double scoreSum;
+    private long scoreCount;
+    @Indexed(direction = IndexDirection.DESCENDING)
+    private double averageScore;
+    private long activitiesAttempted;
+    private LocalDateTime first;
+    private LocalDateTime last;
+    // Scaled scores per ScoreHistogram bin, incremented like the counters
+    @Builder.Default
+    private Map<String, Long> scoreBins = new HashMap<>();
+}
@@ -0,0 +1,30 @@
+package africa.enumverse.lrs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Live counters for one calendar day, keyed by the ISO date so a day range is an _id range
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "rollup_days")
+public class DailyRollup {
+
+    @Id
+    private String day; // yyyy-MM-dd
+
+    private long count;
+    private long completions;
+    private long successes;
+    private double scoreSum;
+    private long scoreCount;
+    private long uniqueActors;
+    private long uniqueActivities;
+}
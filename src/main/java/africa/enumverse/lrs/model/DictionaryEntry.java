@@ -0,0 +1,36 @@
+package africa.enumverse.lrs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * A verb display, activity definition or set of actor identifiers referenced by compacted
+ * statements. Entries are written once and never changed, and the same content always
+ * maps to the same entry through its fingerprint
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "statement_dictionary")
+public class DictionaryEntry {
+
+    @Id
+    private Integer id;
+
+    private Kind kind;
+    @Indexed(unique = true)
+    private String fingerprint; // SHA-256 of the kind and the canonical content
+    private org.bson.Document value; // the statement fields, as stored
+
+    public enum Kind {
+        VERB,
+        ACTIVITY,
+        ACTOR
+    }
+}
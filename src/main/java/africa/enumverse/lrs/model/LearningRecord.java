@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -14,22 +16,26 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "learning_records")
+@CompoundIndex(name = "user_course", def = "{'userId': 1, 'courseId': 1}")
 public class LearningRecord {
 
     @Id
     private String id;
 
     private String userId;
+    @Indexed
     private String courseId;
     private String activityType;
     private String activityName;
     private Integer score;
+    @Indexed
     private Boolean completed;
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private Integer durationMinutes;
     private String status;
 
+    @Indexed
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
 
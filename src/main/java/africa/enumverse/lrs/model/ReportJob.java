@@ -0,0 +1,50 @@
+package africa.enumverse.lrs.model;
+
+import africa.enumverse.lrs.dto.ComprehensiveReport;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A report computed in the background, with its stored result. MongoDB removes the job
+ * once expiresAt has passed: the result TTL after completion, or after submission for a
+ * job that never finished (e.g. because its instance stopped)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "report_results")
+public class ReportJob {
+
+    public static final String COMPREHENSIVE = "comprehensive";
+
+    @Id
+    private String id;
+
+    private String type;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+    private Status status;
+    private int progress; // percent of the report sections computed
+    private ComprehensiveReport result;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+    @Indexed(expireAfterSeconds = 0)
+    private LocalDateTime expiresAt;
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
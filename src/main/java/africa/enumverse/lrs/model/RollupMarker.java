@@ -0,0 +1,27 @@
+package africa.enumverse.lrs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Existence marker for a (scope, member) pair, e.g. an actor seen on a day; a marker is
+ * inserted once the matching distinct counter has been incremented for it. Day-scoped
+ * markers expire a while after their day, as late statements for it become rare
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "rollup_markers")
+public class RollupMarker {
+
+    @Id
+    private String id;
+    @Indexed(expireAfterSeconds = 0)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,36 @@
+package africa.enumverse.lrs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Coverage of a rollup store. The live rollups count every statement stored from
+ * "liveFrom" on, whatever its timestamp, and statements stored earlier once they are
+ * timestamped at or after "since"; older ones are only counted once backfilled. The
+ * materialized rollups cover statements timestamped in [since, until)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "rollup_state")
+public class RollupState {
+
+    public static final String LIVE = "live";
+    public static final String MATERIALIZED = "materialized";
+
+    @Id
+    private String id;
+
+    private LocalDateTime since;
+    private LocalDateTime until;
+    private LocalDateTime liveFrom;
+
+    public RollupState(String id, LocalDateTime since, LocalDateTime until) {
+        this(id, since, until, null);
+    }
+}
@@ -7,6 +7,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
@@ -14,6 +16,17 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "statements")
+// Nested "id" properties are persisted as "_id", and index definitions are not mapped
+@CompoundIndexes({
+        @CompoundIndex(name = "actor_timestamp", def = "{'actor._id': 1, 'timestamp': 1}"),
+        @CompoundIndex(name = "actor_name_timestamp_id", def = "{'actor.name': 1, 'timestamp': 1, '_id': 1}"),
+        @CompoundIndex(name = "verb_timestamp_id", def = "{'verb._id': 1, 'timestamp': 1, '_id': 1}"),
+        @CompoundIndex(name = "object_timestamp", def = "{'object._id': 1, 'timestamp': 1}"),
+        @CompoundIndex(name = "timestamp_id", def = "{'timestamp': 1, '_id': 1}"),
+        @CompoundIndex(name = "stored_id", def = "{'stored': -1, '_id': -1}"),
+        @CompoundIndex(name = "actor_name_stored_id", def = "{'actor.name': 1, 'stored': -1, '_id': -1}"),
+        @CompoundIndex(name = "verb_stored_id", def = "{'verb._id': 1, 'stored': -1, '_id': -1}")
+})
 public class Statement {
 
     @Id
@@ -30,4 +43,5 @@ public class Statement {
 
     private Result result;
     private Context context;
+    private String contentHash; // fingerprint of the submitted content, set for client-assigned ids
 }
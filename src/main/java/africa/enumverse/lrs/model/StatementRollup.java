@@ -0,0 +1,45 @@
+package africa.enumverse.lrs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Materialized counters for one hour or one calendar day, rebuilt from the statements by
+ * $merge. The _id is the granularity followed by the local bucket start, so a range of
+ * buckets of one granularity is an _id range. Distinct actors and activities are also kept
+ * as HyperLogLog sketches so they can be counted over any union of buckets, and the scaled
+ * scores as a {@link africa.enumverse.lrs.sketch.ScoreHistogram} for percentiles.
+ *
+ * <p>Documents of the activity granularity ("activity:" followed by the activity id) only
+ * hold the all-time sketch of the actors that used the activity
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "statement_rollups")
+public class StatementRollup {
+
+    public static final String HOUR = "hour";
+    public static final String DAY = "day";
+    public static final String ACTIVITY = "activity";
+
+    @Id
+    private String id; // hour:yyyy-MM-ddTHH, day:yyyy-MM-dd or activity:activityId
+
+    private String granularity;
+    private long count;
+    private long actors;
+    private long activities;
+    private long completions;
+    private long successes;
+    private double scoreSum;
+    private long scoreCount;
+    private byte[] actorSketch;
+    private byte[] activitySketch;
+    private byte[] scoreSketch;
+}
@@ -0,0 +1,31 @@
+package africa.enumverse.lrs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Map;
+
+/**
+ * Live statement count for one verb on one calendar day
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "rollup_day_verbs")
+public class VerbDailyRollup {
+
+    @Id
+    private String id; // day|verbId
+
+    @Indexed
+    private String day;
+    private String verbId;
+    private Map<String, String> display;
+    private long count;
+}
@@ -0,0 +1,28 @@
+package africa.enumverse.lrs.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * The canonical display of a verb: the latest one ingested with a statement
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "verbs")
+public class VerbDefinition {
+
+    @Id
+    private String id; // verb IRI
+
+    private Map<String, String> display; // language map
+    private LocalDateTime updated;
+}
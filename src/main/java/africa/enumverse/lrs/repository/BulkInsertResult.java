@@ -0,0 +1,20 @@
+package africa.enumverse.lrs.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Outcome of an unordered bulk insert; failures are keyed by position in the submitted list
+ */
+@Data
+@AllArgsConstructor
+public class BulkInsertResult {
+    private int insertedCount;
+    private Map<Integer, String> failures;
+
+    public static boolean isDuplicateKey(String error) {
+        return error != null && error.startsWith("E11000");
+    }
+}
@@ -0,0 +1,51 @@
+package africa.enumverse.lrs.repository;
+
+import africa.enumverse.lrs.model.Statement;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in the (stored desc, id desc) statement ordering, or in the
+ * (timestamp desc, id desc) ordering of a date window, exchanged with clients as an
+ * opaque URL-safe token. Statements without a stored time sort last, and a position
+ * among them has a null time
+ */
+@Data
+@AllArgsConstructor
+public class StatementCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private LocalDateTime time;
+    private String id;
+
+    public static StatementCursor after(Statement statement, StatementFilter filter) {
+        return new StatementCursor(filter.isWindowed() ? statement.getTimestamp() : statement.getStored(), statement.getId());
+    }
+
+    public String encode() {
+        String raw = (time != null ? time.toString() : "") + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static StatementCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+            String time = raw.substring(0, separator);
+            // Tokens issued before null times were encoded as empty carry "null"
+            boolean noTime = time.isEmpty() || time.equals("null");
+            return new StatementCursor(noTime ? null : LocalDateTime.parse(time), raw.substring(separator + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package africa.enumverse.lrs.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional constraints for statement list queries; null fields are not applied
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementFilter {
+    private String actorName;
+    private String verbId;
+    private LocalDateTime since; // exclusive
+    private LocalDateTime until; // exclusive
+
+    /**
+     * Pages of a date window are ordered by timestamp, so they are read off a timestamp
+     * index instead of sorting the whole window; other pages are ordered by stored time
+     */
+    public boolean isWindowed() {
+        return since != null || until != null;
+    }
+}
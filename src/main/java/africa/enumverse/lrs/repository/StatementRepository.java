@@ -6,13 +6,24 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface StatementRepository extends MongoRepository<Statement, String> {
+public interface StatementRepository extends MongoRepository<Statement, String>, StatementRepositoryCustom {
 
     List<Statement> findByActor_Name(String actorName);
 
     List<Statement> findByTimestampBetween(LocalDateTime start, LocalDateTime end);
 
     List<Statement> findByVerb_Id(String verbId);
+
+    List<Statement> findByActor_Id(String actorId);
+
+    List<Statement> findByObject_Id(String activityId);
+
+    boolean existsByTimestampBefore(LocalDateTime timestamp);
+
+    Optional<Statement> findFirstByTimestampBeforeOrderByTimestampDesc(LocalDateTime timestamp);
+
+    Optional<Statement> findFirstByOrderByTimestampAsc();
 }
@@ -0,0 +1,27 @@
+package africa.enumverse.lrs.repository;
+
+import africa.enumverse.lrs.model.Statement;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface StatementRepositoryCustom {
+
+    /**
+     * Returns up to {@code limit} statements matching the filter, most recently stored
+     * first, starting strictly after the given cursor (or from the top when null)
+     */
+    List<Statement> findPage(StatementFilter filter, StatementCursor after, int limit);
+
+    /**
+     * Streams every statement matching the filter in timestamp order from a server-side
+     * cursor. The stream holds the cursor open and must be closed by the caller
+     */
+    Stream<Statement> streamAll(StatementFilter filter);
+
+    /**
+     * Inserts all statements in a single unordered bulk write. A failing document does
+     * not stop the others; its position and error are reported in the result
+     */
+    BulkInsertResult insertUnordered(List<Statement> statements);
+}
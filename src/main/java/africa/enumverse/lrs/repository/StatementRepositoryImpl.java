@@ -0,0 +1,102 @@
+package africa.enumverse.lrs.repository;
+
+import africa.enumverse.lrs.model.Statement;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class StatementRepositoryImpl implements StatementRepositoryCustom {
+
+    private static final Sort STORED_ORDER = Sort.by(Sort.Direction.DESC, "stored", "id");
+    private static final Sort WINDOW_ORDER = Sort.by(Sort.Direction.DESC, "timestamp", "id");
+
+    private static final Sort TIMESTAMP_ORDER = Sort.by(Sort.Direction.ASC, "timestamp", "id");
+    private static final int STREAM_BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Statement> findPage(StatementFilter filter, StatementCursor after, int limit) {
+        List<Criteria> clauses = filterClauses(filter);
+        boolean windowed = filter != null && filter.isWindowed();
+        String time = windowed ? "timestamp" : "stored";
+
+        if (after != null && after.getTime() == null) {
+            // Past the dated statements, into the ones without a time, which sort last
+            clauses.add(Criteria.where(time).is(null).and("id").lt(after.getId()));
+        } else if (after != null) {
+            clauses.add(new Criteria().orOperator(
+                    Criteria.where(time).lt(after.getTime()),
+                    Criteria.where(time).is(after.getTime()).and("id").lt(after.getId()),
+                    Criteria.where(time).is(null)));
+        }
+
+        Query query = new Query(clauses.isEmpty() ? new Criteria() : new Criteria().andOperator(clauses))
+                .with(windowed ? WINDOW_ORDER : STORED_ORDER)
+                .limit(limit);
+        return mongoTemplate.find(query, Statement.class);
+    }
+
+    @Override
+    public Stream<Statement> streamAll(StatementFilter filter) {
+        List<Criteria> clauses = filterClauses(filter);
+
+        Query query = new Query(clauses.isEmpty() ? new Criteria() : new Criteria().andOperator(clauses))
+                .with(TIMESTAMP_ORDER)
+                .cursorBatchSize(STREAM_BATCH_SIZE);
+        return mongoTemplate.stream(query, Statement.class);
+    }
+
+    @Override
+    public BulkInsertResult insertUnordered(List<Statement> statements) {
+        if (statements.isEmpty()) {
+            return new BulkInsertResult(0, Map.of());
+        }
+
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Statement.class);
+        operations.insert(statements);
+
+        try {
+            BulkWriteResult result = operations.execute();
+            return new BulkInsertResult(result.getInsertedCount(), Map.of());
+        } catch (BulkOperationException e) {
+            Map<Integer, String> failures = new HashMap<>();
+            for (BulkWriteError error : e.getErrors()) {
+                failures.put(error.getIndex(), error.getMessage());
+            }
+            return new BulkInsertResult(e.getResult().getInsertedCount(), failures);
+        }
+    }
+
+    private List<Criteria> filterClauses(StatementFilter filter) {
+        List<Criteria> clauses = new ArrayList<>();
+        if (filter == null) return clauses;
+
+        if (filter.getActorName() != null) {
+            clauses.add(Criteria.where("actor.name").is(filter.getActorName()));
+        }
+        if (filter.getVerbId() != null) {
+            clauses.add(Criteria.where("verb.id").is(filter.getVerbId()));
+        }
+        if (filter.getSince() != null) {
+            clauses.add(Criteria.where("timestamp").gt(filter.getSince()));
+        }
+        if (filter.getUntil() != null) {
+            clauses.add(Criteria.where("timestamp").lt(filter.getUntil()));
+        }
+        return clauses;
+    }
+}
@@ -0,0 +1,58 @@
+package africa.enumverse.lrs.repository.arena;
+
+import africa.enumverse.lrs.model.LearningRecord;
+import africa.enumverse.lrs.repository.LearningRecordRepository;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * {@link LearningRecordRepository} on the off-heap store, with key indexes on user,
+ * course and completion and a time index on createdAt
+ */
+public class ArenaLearningRecordRepository extends ArenaRepository<LearningRecord> implements LearningRecordRepository {
+
+    private static final String USER_ID = "userId";
+    private static final String COURSE_ID = "courseId";
+    private static final String COMPLETED = "completed";
+    private static final String CREATED_AT = "createdAt";
+
+    public ArenaLearningRecordRepository(MongoConverter converter, int segmentSize) {
+        super(new ArenaStore<>(LearningRecord.class, converter, segmentSize)
+                .key(USER_ID, LearningRecord::getUserId)
+                .key(COURSE_ID, LearningRecord::getCourseId)
+                .key(COMPLETED, LearningRecord::getCompleted)
+                .time(CREATED_AT, LearningRecord::getCreatedAt));
+    }
+
+    @Override
+    public List<LearningRecord> findByUserId(String userId) {
+        return store.select().where(USER_ID, userId).list();
+    }
+
+    @Override
+    public List<LearningRecord> findByCourseId(String courseId) {
+        return store.select().where(COURSE_ID, courseId).list();
+    }
+
+    @Override
+    public List<LearningRecord> findByUserIdAndCourseId(String userId, String courseId) {
+        return store.select().where(USER_ID, userId).where(COURSE_ID, courseId).list();
+    }
+
+    @Override
+    public List<LearningRecord> findByCreatedAtBetween(LocalDateTime start, LocalDateTime end) {
+        return store.select().after(CREATED_AT, start).before(CREATED_AT, end).orderBy(CREATED_AT, false).list();
+    }
+
+    @Override
+    public List<LearningRecord> findByCompleted(Boolean completed) {
+        return store.select().where(COMPLETED, completed).list();
+    }
+
+    @Override
+    protected String id(LearningRecord record) {
+        return record.getId();
+    }
+}
@@ -0,0 +1,212 @@
+package africa.enumverse.lrs.repository.arena;
+
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.BeansException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.repository.query.FluentQuery;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * The {@link MongoRepository} operations over an {@link ArenaStore}. Sorted reads order
+ * by bean property paths, with null values first as MongoDB does; query by example is
+ * not supported.
+ */
+abstract class ArenaRepository<T> implements MongoRepository<T, String> {
+
+    protected final ArenaStore<T> store;
+
+    protected ArenaRepository(ArenaStore<T> store) {
+        this.store = store;
+    }
+
+    /**
+     * Off-heap bytes written, including superseded versions of entities
+     */
+    public long usedBytes() {
+        return store.usedBytes();
+    }
+
+    /**
+     * Off-heap bytes allocated for segments
+     */
+    public long reservedBytes() {
+        return store.reservedBytes();
+    }
+
+    @Override
+    public <S extends T> S insert(S entity) {
+        store.insert(entity);
+        return entity;
+    }
+
+    /**
+     * Inserts in order and stops at the first duplicate id, like an ordered insertMany
+     */
+    @Override
+    public <S extends T> List<S> insert(Iterable<S> entities) {
+        List<S> inserted = new ArrayList<>();
+        for (S entity : entities) {
+            inserted.add(insert(entity));
+        }
+        return inserted;
+    }
+
+    @Override
+    public <S extends T> S save(S entity) {
+        store.save(entity);
+        return entity;
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        for (S entity : entities) {
+            saved.add(save(entity));
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<T> findById(String id) {
+        return store.findById(id);
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return store.exists(id);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return store.select().list();
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<String> ids) {
+        List<T> found = new ArrayList<>();
+        for (String id : ids) {
+            store.findById(id).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return store.count();
+    }
+
+    @Override
+    public void deleteById(String id) {
+        store.delete(id);
+    }
+
+    @Override
+    public void delete(T entity) {
+        store.delete(id(entity));
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends String> ids) {
+        ids.forEach(store::delete);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        entities.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        store.clear();
+    }
+
+    @Override
+    public List<T> findAll(Sort sort) {
+        List<T> all = findAll();
+        if (sort.isSorted()) all.sort(comparator(sort));
+        return all;
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable) {
+        List<T> all = findAll(pageable.getSort());
+        if (pageable.isUnpaged()) return new PageImpl<>(all);
+
+        int from = (int) Math.min(pageable.getOffset(), all.size());
+        int to = Math.min(from + pageable.getPageSize(), all.size());
+        return new PageImpl<>(new ArrayList<>(all.subList(from, to)), pageable, all.size());
+    }
+
+    @Override
+    public <S extends T> Optional<S> findOne(Example<S> example) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example, Sort sort) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T> long count(Example<S> example) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T> boolean exists(Example<S> example) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T, R> R findBy(Example<S> example, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        throw unsupported();
+    }
+
+    protected abstract String id(T entity);
+
+    private Comparator<T> comparator(Sort sort) {
+        Comparator<T> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<T> byProperty = Comparator.comparing(entity -> property(entity, order.getProperty()),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            if (order.isDescending()) byProperty = byProperty.reversed();
+            comparator = comparator == null ? byProperty : comparator.thenComparing(byProperty);
+        }
+        return comparator;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparable property(Object entity, String path) {
+        try {
+            Object value = new BeanWrapperImpl(entity).getPropertyValue(path);
+            return value instanceof Comparable comparable ? comparable : null;
+        } catch (BeansException e) {
+            // A null along the path, as for a missing field
+            return null;
+        }
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Query by example is not supported by the off-heap store");
+    }
+}
@@ -0,0 +1,120 @@
+package africa.enumverse.lrs.repository.arena;
+
+import africa.enumverse.lrs.model.Statement;
+import africa.enumverse.lrs.repository.BulkInsertResult;
+import africa.enumverse.lrs.repository.StatementCursor;
+import africa.enumverse.lrs.repository.StatementFilter;
+import africa.enumverse.lrs.repository.StatementRepository;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * {@link StatementRepository} on the off-heap store, with key indexes on the actor id
+ * and name, verb and activity and time indexes on timestamp and stored
+ */
+public class ArenaStatementRepository extends ArenaRepository<Statement> implements StatementRepository {
+
+    private static final String ACTOR_ID = "actor.id";
+    private static final String ACTOR_NAME = "actor.name";
+    private static final String VERB_ID = "verb.id";
+    private static final String OBJECT_ID = "object.id";
+    private static final String TIMESTAMP = "timestamp";
+    private static final String STORED = "stored";
+
+    public ArenaStatementRepository(MongoConverter converter, int segmentSize) {
+        super(new ArenaStore<>(Statement.class, converter, segmentSize)
+                .key(ACTOR_ID, statement -> statement.getActor() != null ? statement.getActor().getId() : null)
+                .key(ACTOR_NAME, statement -> statement.getActor() != null ? statement.getActor().getName() : null)
+                .key(VERB_ID, statement -> statement.getVerb() != null ? statement.getVerb().getId() : null)
+                .key(OBJECT_ID, statement -> statement.getObject() != null ? statement.getObject().getId() : null)
+                .time(TIMESTAMP, Statement::getTimestamp)
+                .time(STORED, Statement::getStored));
+    }
+
+    @Override
+    public List<Statement> findByActor_Name(String actorName) {
+        return store.select().where(ACTOR_NAME, actorName).list();
+    }
+
+    @Override
+    public List<Statement> findByTimestampBetween(LocalDateTime start, LocalDateTime end) {
+        return store.select().after(TIMESTAMP, start).before(TIMESTAMP, end).orderBy(TIMESTAMP, false).list();
+    }
+
+    @Override
+    public List<Statement> findByVerb_Id(String verbId) {
+        return store.select().where(VERB_ID, verbId).list();
+    }
+
+    @Override
+    public List<Statement> findByActor_Id(String actorId) {
+        return store.select().where(ACTOR_ID, actorId).list();
+    }
+
+    @Override
+    public List<Statement> findByObject_Id(String activityId) {
+        return store.select().where(OBJECT_ID, activityId).list();
+    }
+
+    @Override
+    public boolean existsByTimestampBefore(LocalDateTime timestamp) {
+        return store.select().before(TIMESTAMP, timestamp).orderBy(TIMESTAMP, false).exists();
+    }
+
+    @Override
+    public Optional<Statement> findFirstByTimestampBeforeOrderByTimestampDesc(LocalDateTime timestamp) {
+        return store.select().before(TIMESTAMP, timestamp).orderBy(TIMESTAMP, true).first();
+    }
+
+    @Override
+    public Optional<Statement> findFirstByOrderByTimestampAsc() {
+        return store.select().orderBy(TIMESTAMP, false).first();
+    }
+
+    @Override
+    public List<Statement> findPage(StatementFilter filter, StatementCursor after, int limit) {
+        String time = filter != null && filter.isWindowed() ? TIMESTAMP : STORED;
+        ArenaStore<Statement>.Selection selection = filtered(filter).orderBy(time, true).limit(limit);
+        if (after != null) selection.startAfter(after.getTime(), after.getId());
+        return selection.list();
+    }
+
+    @Override
+    public Stream<Statement> streamAll(StatementFilter filter) {
+        return filtered(filter).orderBy(TIMESTAMP, false).stream();
+    }
+
+    @Override
+    public BulkInsertResult insertUnordered(List<Statement> statements) {
+        Map<Integer, String> failures = new HashMap<>();
+        for (int i = 0; i < statements.size(); i++) {
+            try {
+                store.insert(statements.get(i));
+            } catch (DuplicateKeyException e) {
+                failures.put(i, e.getMessage());
+            }
+        }
+        return new BulkInsertResult(statements.size() - failures.size(), failures);
+    }
+
+    @Override
+    protected String id(Statement statement) {
+        return statement.getId();
+    }
+
+    private ArenaStore<Statement>.Selection filtered(StatementFilter filter) {
+        ArenaStore<Statement>.Selection selection = store.select();
+        if (filter == null) return selection;
+
+        if (filter.getActorName() != null) selection.where(ACTOR_NAME, filter.getActorName());
+        if (filter.getVerbId() != null) selection.where(VERB_ID, filter.getVerbId());
+        return selection.after(TIMESTAMP, filter.getSince()).before(TIMESTAMP, filter.getUntil());
+    }
+}
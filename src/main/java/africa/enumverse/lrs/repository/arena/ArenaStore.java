@@ -0,0 +1,579 @@
+package africa.enumverse.lrs.repository.arena;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonBinaryReader;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Entities of one type kept as BSON in an {@link OffHeapArena}, written with the same
+ * converter as MongoDB so they read back exactly as they would from a collection.
+ *
+ * <p>Every write appends a new version of the entity; only the per-record metadata
+ * stays on the heap: the address and id of each record, the dictionary code of each
+ * key-indexed field and the epoch millis of each time-indexed field. Key indexes map a
+ * code to the records holding it, time indexes map millis to records in time order, so
+ * a selection only decodes the records it returns.
+ *
+ * <p>Queries follow MongoDB semantics: equality matches null and missing values alike,
+ * range bounds exclude records without a value, and ascending time order puts those
+ * records first. Times are compared at millisecond precision, as stored by MongoDB.
+ */
+class ArenaStore<T> {
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int DEAD = -1;
+
+    private final Class<T> type;
+    private final MongoConverter converter;
+    private final MongoPersistentEntity<?> entity;
+    private final Codec<Document> codec = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+    private final OffHeapArena arena;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> records = new HashMap<>();
+    private final LongList addresses = new LongList();
+    private final List<String> ids = new ArrayList<>();
+    private final Map<String, KeyIndex<T>> keys = new LinkedHashMap<>();
+    private final Map<String, TimeIndex<T>> times = new LinkedHashMap<>();
+
+    ArenaStore(Class<T> type, MongoConverter converter, int segmentSize) {
+        this.type = type;
+        this.converter = converter;
+        this.entity = converter.getMappingContext().getRequiredPersistentEntity(type);
+        this.arena = new OffHeapArena(segmentSize);
+    }
+
+    /**
+     * Indexes the records by the value of a field, for equality selections
+     */
+    ArenaStore<T> key(String name, Function<T, Object> field) {
+        keys.put(name, new KeyIndex<>(field));
+        return this;
+    }
+
+    /**
+     * Indexes the records by a date-time field, for range selections and ordering
+     */
+    ArenaStore<T> time(String name, Function<T, LocalDateTime> field) {
+        times.put(name, new TimeIndex<>(field));
+        return this;
+    }
+
+    /**
+     * Stores a new entity, assigning an id when it has none
+     *
+     * @throws DuplicateKeyException when an entity with the same id is stored
+     */
+    T insert(T value) {
+        lock.writeLock().lock();
+        try {
+            String id = idOf(value);
+            if (id != null && records.containsKey(id)) {
+                throw new DuplicateKeyException("E11000 duplicate key error collection: "
+                        + entity.getCollection() + " dup key: { _id: \"" + id + "\" }");
+            }
+            write(value);
+            return value;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stores an entity, replacing the one with the same id if any
+     */
+    T save(T value) {
+        lock.writeLock().lock();
+        try {
+            String id = idOf(value);
+            if (id != null) kill(id);
+            write(value);
+            return value;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    Optional<T> findById(String id) {
+        lock.readLock().lock();
+        try {
+            Integer record = records.get(id);
+            return record == null ? Optional.empty() : Optional.of(read(record));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean exists(String id) {
+        lock.readLock().lock();
+        try {
+            return records.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long count() {
+        lock.readLock().lock();
+        try {
+            return records.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void delete(String id) {
+        lock.writeLock().lock();
+        try {
+            kill(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            records.clear();
+            addresses.clear();
+            ids.clear();
+            keys.values().forEach(KeyIndex::clear);
+            times.values().forEach(TimeIndex::clear);
+            arena.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    long usedBytes() {
+        lock.readLock().lock();
+        try {
+            return arena.usedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long reservedBytes() {
+        lock.readLock().lock();
+        try {
+            return arena.reservedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Selection select() {
+        return new Selection();
+    }
+
+    private void write(T value) {
+        String id = idOf(value);
+        if (id == null) {
+            // What MongoDB assigns to a document without _id, read back as its hex string
+            id = new ObjectId().toHexString();
+            PersistentPropertyAccessor<T> accessor = entity.getPropertyAccessor(value);
+            accessor.setProperty(entity.getRequiredIdProperty(), id);
+        }
+
+        Document document = new Document();
+        converter.write(value, document);
+        long address = arena.append(new RawBsonDocument(document, codec).getByteBuffer().asNIO());
+
+        int record = ids.size();
+        ids.add(id);
+        addresses.add(address);
+        records.put(id, record);
+        keys.values().forEach(index -> index.add(record, value));
+        times.values().forEach(index -> index.add(record, value));
+    }
+
+    private void kill(String id) {
+        Integer record = records.remove(id);
+        if (record != null) addresses.set(record, DEAD);
+    }
+
+    private boolean isLive(int record) {
+        return addresses.get(record) != DEAD;
+    }
+
+    private T read(int record) {
+        Document document = codec.decode(new BsonBinaryReader(arena.read(addresses.get(record))),
+                DecoderContext.builder().build());
+        return converter.read(type, document);
+    }
+
+    private String idOf(T value) {
+        Object id = entity.getIdentifierAccessor(value).getIdentifier();
+        return id == null ? null : id.toString();
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time == null ? NO_TIME : time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Conditions, order and limit of a read; conditions are combined with AND
+     */
+    class Selection {
+
+        private final Map<KeyIndex<T>, Object> equal = new LinkedHashMap<>();
+        private final Map<TimeIndex<T>, long[]> ranges = new LinkedHashMap<>();
+        private TimeIndex<T> order;
+        private boolean descending;
+        private long afterTime;
+        private String afterId;
+        private int limit = Integer.MAX_VALUE;
+
+        Selection where(String key, Object value) {
+            equal.put(requireKey(key), value);
+            return this;
+        }
+
+        /**
+         * Keeps records whose time is strictly after the given one, when it is not null
+         */
+        Selection after(String time, LocalDateTime bound) {
+            if (bound != null) range(time)[0] = Math.max(range(time)[0], millis(bound));
+            return this;
+        }
+
+        /**
+         * Keeps records whose time is strictly before the given one, when it is not null
+         */
+        Selection before(String time, LocalDateTime bound) {
+            if (bound != null) range(time)[1] = Math.min(range(time)[1], millis(bound));
+            return this;
+        }
+
+        /**
+         * Orders by a time, then by id in the same direction
+         */
+        Selection orderBy(String time, boolean descending) {
+            this.order = requireTime(time);
+            this.descending = descending;
+            return this;
+        }
+
+        /**
+         * Starts strictly after the given position of the order
+         */
+        Selection startAfter(LocalDateTime time, String id) {
+            this.afterTime = millis(time);
+            this.afterId = id;
+            return this;
+        }
+
+        Selection limit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        List<T> list() {
+            lock.readLock().lock();
+            try {
+                int[] matches = matches();
+                List<T> result = new ArrayList<>(matches.length);
+                for (int record : matches) {
+                    result.add(read(record));
+                }
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Optional<T> first() {
+            limit(1);
+            List<T> result = list();
+            return result.isEmpty() ? Optional.empty() : Optional.of(result.get(0));
+        }
+
+        boolean exists() {
+            limit(1);
+            lock.readLock().lock();
+            try {
+                return matches().length > 0;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Decodes the matching records as the stream is consumed; records removed in the
+         * meantime are skipped
+         */
+        Stream<T> stream() {
+            int[] matches;
+            lock.readLock().lock();
+            try {
+                matches = matches();
+            } finally {
+                lock.readLock().unlock();
+            }
+            return Arrays.stream(matches).mapToObj(record -> {
+                lock.readLock().lock();
+                try {
+                    return record < ids.size() && isLive(record) ? read(record) : null;
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }).filter(Objects::nonNull);
+        }
+
+        private int[] matches() {
+            int[] codes = new int[equal.size()];
+            int i = 0;
+            for (Map.Entry<KeyIndex<T>, Object> condition : equal.entrySet()) {
+                codes[i] = condition.getKey().code(condition.getValue());
+                if (codes[i++] < 0) return new int[0];
+            }
+
+            IntList result = new IntList();
+            if (order != null) {
+                scanInOrder(codes, result);
+            } else if (!equal.isEmpty()) {
+                // Walk the smallest posting list and check the other conditions per record
+                KeyIndex<T> smallest = null;
+                int smallestCode = 0;
+                i = 0;
+                for (KeyIndex<T> index : equal.keySet()) {
+                    if (smallest == null || index.size(codes[i]) < smallest.size(smallestCode)) {
+                        smallest = index;
+                        smallestCode = codes[i];
+                    }
+                    i++;
+                }
+                IntList postings = smallest.postings(smallestCode);
+                for (int p = 0; p < postings.size() && result.size() < limit; p++) {
+                    int record = postings.get(p);
+                    if (accepts(record, codes)) result.add(record);
+                }
+            } else {
+                for (int record = 0; record < ids.size() && result.size() < limit; record++) {
+                    if (accepts(record, codes)) result.add(record);
+                }
+            }
+            return result.toArray();
+        }
+
+        private void scanInOrder(int[] codes, IntList result) {
+            long[] range = ranges.get(order);
+            NavigableMap<Long, IntList> view = order.byTime;
+            if (range != null) {
+                view = view.subMap(Math.max(range[0], NO_TIME), false, range[1], false);
+            }
+            if (afterId != null) {
+                view = descending ? view.headMap(afterTime, true) : view.tailMap(afterTime, true);
+            }
+            if (descending) view = view.descendingMap();
+
+            Comparator<Integer> byId = Comparator.comparing(ids::get);
+            if (descending) byId = byId.reversed();
+            for (Map.Entry<Long, IntList> bucket : view.entrySet()) {
+                List<Integer> tied = new ArrayList<>();
+                IntList records = bucket.getValue();
+                for (int p = 0; p < records.size(); p++) {
+                    int record = records.get(p);
+                    if (accepts(record, codes) && isPastCursor(bucket.getKey(), record)) tied.add(record);
+                }
+                tied.sort(byId);
+                for (int record : tied) {
+                    if (result.size() >= limit) return;
+                    result.add(record);
+                }
+            }
+        }
+
+        private boolean isPastCursor(long time, int record) {
+            if (afterId == null || time != afterTime) return true;
+            int comparison = ids.get(record).compareTo(afterId);
+            return descending ? comparison < 0 : comparison > 0;
+        }
+
+        private boolean accepts(int record, int[] codes) {
+            if (!isLive(record)) return false;
+            int i = 0;
+            for (KeyIndex<T> index : equal.keySet()) {
+                if (index.codeOf(record) != codes[i++]) return false;
+            }
+            for (Map.Entry<TimeIndex<T>, long[]> range : ranges.entrySet()) {
+                long time = range.getKey().timeOf(record);
+                if (time == NO_TIME || time <= range.getValue()[0] || time >= range.getValue()[1]) return false;
+            }
+            return true;
+        }
+
+        private long[] range(String time) {
+            return ranges.computeIfAbsent(requireTime(time), index -> new long[]{NO_TIME, Long.MAX_VALUE});
+        }
+
+        private KeyIndex<T> requireKey(String name) {
+            KeyIndex<T> index = keys.get(name);
+            if (index == null) throw new IllegalArgumentException("No key index " + name + " on " + type.getSimpleName());
+            return index;
+        }
+
+        private TimeIndex<T> requireTime(String name) {
+            TimeIndex<T> index = times.get(name);
+            if (index == null) throw new IllegalArgumentException("No time index " + name + " on " + type.getSimpleName());
+            return index;
+        }
+    }
+
+    /**
+     * Field values interned to dense codes, with the records holding each code
+     */
+    private static class KeyIndex<T> {
+
+        private final Function<T, Object> field;
+        private final Map<Object, Integer> codes = new HashMap<>();
+        private final List<IntList> postings = new ArrayList<>();
+        private final IntList recordCodes = new IntList();
+
+        KeyIndex(Function<T, Object> field) {
+            this.field = field;
+        }
+
+        void add(int record, T value) {
+            int code = codes.computeIfAbsent(field.apply(value), key -> {
+                postings.add(new IntList());
+                return postings.size() - 1;
+            });
+            postings.get(code).add(record);
+            recordCodes.add(code);
+        }
+
+        /**
+         * Code of a value, or -1 when no record ever held it
+         */
+        int code(Object value) {
+            return codes.getOrDefault(value, -1);
+        }
+
+        int codeOf(int record) {
+            return recordCodes.get(record);
+        }
+
+        IntList postings(int code) {
+            return postings.get(code);
+        }
+
+        int size(int code) {
+            return postings.get(code).size();
+        }
+
+        void clear() {
+            codes.clear();
+            postings.clear();
+            recordCodes.clear();
+        }
+    }
+
+    /**
+     * Records by epoch millis of a date-time field; records without a value sort first
+     */
+    private static class TimeIndex<T> {
+
+        private final Function<T, LocalDateTime> field;
+        private final TreeMap<Long, IntList> byTime = new TreeMap<>();
+        private final LongList recordTimes = new LongList();
+
+        TimeIndex(Function<T, LocalDateTime> field) {
+            this.field = field;
+        }
+
+        void add(int record, T value) {
+            long time = millis(field.apply(value));
+            byTime.computeIfAbsent(time, key -> new IntList()).add(record);
+            recordTimes.add(time);
+        }
+
+        long timeOf(int record) {
+            return recordTimes.get(record);
+        }
+
+        void clear() {
+            byTime.clear();
+            recordTimes.clear();
+        }
+    }
+
+    private static class IntList {
+
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        void clear() {
+            values = new int[4];
+            size = 0;
+        }
+    }
+
+    private static class LongList {
+
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+
+        void set(int index, long value) {
+            values[index] = value;
+        }
+
+        void clear() {
+            values = new long[16];
+            size = 0;
+        }
+    }
+}
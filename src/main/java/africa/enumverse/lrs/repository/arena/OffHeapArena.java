@@ -0,0 +1,80 @@
+package africa.enumverse.lrs.repository.arena;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only byte storage outside the Java heap, in direct buffer segments of a fixed
+ * size. An entry is addressed by a long packing its segment and offset; entries are
+ * never moved or overwritten, so an address stays valid for the life of the arena.
+ * Space of entries that are no longer referenced is not reclaimed.
+ *
+ * <p>Not thread-safe; callers serialize appends against reads.
+ */
+class OffHeapArena {
+
+    private static final int LENGTH_BYTES = Integer.BYTES;
+
+    private final int segmentSize;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer active;
+    private long usedBytes;
+
+    OffHeapArena(int segmentSize) {
+        if (segmentSize <= LENGTH_BYTES) {
+            throw new IllegalArgumentException("Arena segment size is too small: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Copies the remaining bytes of the buffer into the arena
+     *
+     * @return the address of the entry
+     */
+    long append(ByteBuffer bytes) {
+        int length = bytes.remaining();
+        if (length + LENGTH_BYTES > segmentSize) {
+            throw new IllegalArgumentException("Entry of " + length + " bytes does not fit in an arena segment of "
+                    + segmentSize + " bytes");
+        }
+        if (active == null || active.remaining() < length + LENGTH_BYTES) {
+            active = ByteBuffer.allocateDirect(segmentSize);
+            segments.add(active);
+        }
+
+        long address = (long) (segments.size() - 1) << 32 | active.position();
+        active.putInt(length).put(bytes);
+        usedBytes += length + LENGTH_BYTES;
+        return address;
+    }
+
+    /**
+     * Read-only view of the entry at the given address
+     */
+    ByteBuffer read(long address) {
+        ByteBuffer segment = segments.get((int) (address >>> 32)).duplicate();
+        int offset = (int) address;
+        int length = segment.getInt(offset);
+        return segment.position(offset + LENGTH_BYTES).limit(offset + LENGTH_BYTES + length)
+                .slice().asReadOnlyBuffer();
+    }
+
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    long reservedBytes() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    /**
+     * Drops every segment; their memory is released once they are garbage collected
+     */
+    void clear() {
+        segments.clear();
+        active = null;
+        usedBytes = 0;
+    }
+}
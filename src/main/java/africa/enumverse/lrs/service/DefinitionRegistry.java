@@ -0,0 +1,178 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.dto.DefinitionResponse;
+import africa.enumverse.lrs.dto.StatementResponse;
+import africa.enumverse.lrs.model.ActivityDefinition;
+import africa.enumverse.lrs.model.Definition;
+import africa.enumverse.lrs.model.VerbDefinition;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Canonical activity definitions and verb displays, kept in the activities and verbs
+ * collections behind bounded read-through caches. Ingested statements are compared with
+ * the known definitions and only the ones that changed are written, in one unordered bulk
+ * per collection; reports resolve names with a cache lookup instead of searching
+ * statements. Cached definitions are read again after lrs.definitions.cache-ttl, since
+ * definitions registered by other instances do not reach {@link #register(List)} here.
+ * Ids without a definition are cached as empty too, so rows that never had one do not
+ * go back to MongoDB on every lookup.
+ *
+ * <p>Hit and miss counts are published as the "cache.*" metrics of the "activities" and
+ * "verbs" caches.
+ */
+@Service
+@Slf4j
+public class DefinitionRegistry {
+
+    private final MongoTemplate mongoTemplate;
+    private final LrsProperties.Definitions settings;
+    private final LrsProperties.Store.Engine engine;
+    private final Cache<String, Optional<Definition>> activities;
+    private final Cache<String, Optional<Map<String, String>>> verbs;
+
+    public DefinitionRegistry(MongoTemplate mongoTemplate, LrsProperties properties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.settings = properties.getDefinitions();
+        this.engine = properties.getStore().getEngine();
+        this.activities = Caffeine.newBuilder()
+                .maximumSize(settings.getCacheSize())
+                .expireAfterWrite(settings.getCacheTtl())
+                .recordStats()
+                .build();
+        this.verbs = Caffeine.newBuilder()
+                .maximumSize(settings.getCacheSize())
+                .expireAfterWrite(settings.getCacheTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, activities, "activities");
+        CaffeineCacheMetrics.monitor(meterRegistry, verbs, "verbs");
+    }
+
+    /**
+     * Definitions are kept in MongoDB collections, so the registry is off with the off-heap store
+     */
+    public boolean isEnabled() {
+        return settings.isEnabled() && engine == LrsProperties.Store.Engine.MONGO;
+    }
+
+    /**
+     * Records the definitions of newly stored statements; the last statement of the batch
+     * wins when several define the same activity or verb
+     */
+    public void register(List<StatementResponse> statements) {
+        if (!isEnabled() || statements.isEmpty()) return;
+
+        Map<String, Definition> activityDefinitions = new LinkedHashMap<>();
+        Map<String, Map<String, String>> verbDisplays = new LinkedHashMap<>();
+        for (StatementResponse statement : statements) {
+            if (statement.getObject() != null && statement.getObject().getId() != null
+                    && statement.getObject().getDefinition() != null) {
+                activityDefinitions.put(statement.getObject().getId(), toDefinition(statement.getObject().getDefinition()));
+            }
+            if (statement.getVerb() != null && statement.getVerb().getId() != null
+                    && statement.getVerb().getDisplay() != null && !statement.getVerb().getDisplay().isEmpty()) {
+                verbDisplays.put(statement.getVerb().getId(), statement.getVerb().getDisplay());
+            }
+        }
+
+        Map<String, Definition> changedActivities = changed(activityDefinitions,
+                activities.getAll(activityDefinitions.keySet(), this::loadActivities));
+        Map<String, Map<String, String>> changedVerbs = changed(verbDisplays,
+                verbs.getAll(verbDisplays.keySet(), this::loadVerbs));
+        write(changedActivities, ActivityDefinition.class, "definition");
+        write(changedVerbs, VerbDefinition.class, "display");
+        changedActivities.forEach((id, definition) -> activities.put(id, Optional.of(definition)));
+        changedVerbs.forEach((id, display) -> verbs.put(id, Optional.of(display)));
+    }
+
+    /**
+     * Name of an activity as a language map, or null when it is not registered
+     */
+    public Map<String, String> activityName(String activityId) {
+        if (!isEnabled() || activityId == null) return null;
+        return activities.get(activityId, id -> loadActivities(Set.of(id)).get(id))
+                .map(Definition::getName)
+                .orElse(null);
+    }
+
+    /**
+     * Display of a verb as a language map, or null when it is not registered
+     */
+    public Map<String, String> verbDisplay(String verbId) {
+        if (!isEnabled() || verbId == null) return null;
+        return verbs.get(verbId, id -> loadVerbs(Set.of(id)).get(id)).orElse(null);
+    }
+
+    private <V> Map<String, V> changed(Map<String, V> latest, Map<String, Optional<V>> known) {
+        Map<String, V> changed = new LinkedHashMap<>();
+        latest.forEach((id, value) -> {
+            if (!Optional.of(value).equals(known.get(id))) changed.put(id, value);
+        });
+        return changed;
+    }
+
+    private void write(Map<String, ?> changed, Class<?> type, String field) {
+        if (changed.isEmpty()) return;
+
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+        changed.forEach((id, value) -> bulk.upsert(Query.query(Criteria.where("_id").is(id)),
+                new Update().set(field, value).set("updated", now)));
+        bulk.execute();
+        log.debug("Registered {} changed {} definitions", changed.size(), type.getSimpleName());
+    }
+
+    private Map<String, Optional<Definition>> loadActivities(Set<? extends String> ids) {
+        Query byId = Query.query(Criteria.where("_id").in(ids));
+        Map<String, Definition> found = mongoTemplate.find(byId, ActivityDefinition.class).stream()
+                .filter(activity -> activity.getDefinition() != null)
+                .collect(Collectors.toMap(ActivityDefinition::getId, ActivityDefinition::getDefinition));
+        return withAbsent(ids, found);
+    }
+
+    private Map<String, Optional<Map<String, String>>> loadVerbs(Set<? extends String> ids) {
+        Query byId = Query.query(Criteria.where("_id").in(ids));
+        Map<String, Map<String, String>> found = mongoTemplate.find(byId, VerbDefinition.class).stream()
+                .filter(verb -> verb.getDisplay() != null)
+                .collect(Collectors.toMap(VerbDefinition::getId, VerbDefinition::getDisplay));
+        return withAbsent(ids, found);
+    }
+
+    /**
+     * Every requested id, empty when nothing was found for it
+     */
+    private <V> Map<String, Optional<V>> withAbsent(Set<? extends String> ids, Map<String, V> found) {
+        Map<String, Optional<V>> loaded = new LinkedHashMap<>();
+        ids.forEach(id -> loaded.put(id, Optional.ofNullable(found.get(id))));
+        return loaded;
+    }
+
+    private Definition toDefinition(DefinitionResponse definition) {
+        return Definition.builder()
+                .name(definition.getName())
+                .description(definition.getDescription())
+                .type(definition.getType())
+                .moreInfo(definition.getMoreInfo())
+                .extensions(definition.getExtensions())
+                .build();
+    }
+}
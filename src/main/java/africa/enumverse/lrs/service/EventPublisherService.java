@@ -6,6 +6,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
  * Publishes learning events to other parts of the system
  */
@@ -29,6 +31,29 @@ public class EventPublisherService {
         log.debug("Statement created event published successfully");
     }
 
+    /**
+     * Publish a single event for a batch of statements created in one write
+     */
+    public void publishStatementsCreated(List<StatementResponse> statements) {
+        if (statements.isEmpty()) return;
+        log.info("Publishing statement batch created event: {} statements", statements.size());
+
+        eventPublisher.publishEvent(new StatementBatchCreatedEvent(this, statements));
+
+        log.debug("Statement batch created event published successfully");
+    }
+
+    /**
+     * Publish a statement deletion event, carrying the statement as it was stored
+     */
+    public void publishStatementDeleted(StatementResponse statement) {
+        log.info("Publishing statement deleted event: {}", statement.getId());
+
+        eventPublisher.publishEvent(new StatementDeletedEvent(this, statement));
+
+        log.debug("Statement deleted event published successfully");
+    }
+
     /**
      * Custom event class for statement creation
      */
@@ -44,5 +69,36 @@ public class EventPublisherService {
             return statement;
         }
     }
-}
 
+    /**
+     * Custom event class for a batch of statements stored together
+     */
+    public static class StatementBatchCreatedEvent extends org.springframework.context.ApplicationEvent {
+        private final List<StatementResponse> statements;
+
+        public StatementBatchCreatedEvent(Object source, List<StatementResponse> statements) {
+            super(source);
+            this.statements = statements;
+        }
+
+        public List<StatementResponse> getStatements() {
+            return statements;
+        }
+    }
+
+    /**
+     * Custom event class for statement deletion
+     */
+    public static class StatementDeletedEvent extends org.springframework.context.ApplicationEvent {
+        private final StatementResponse statement;
+
+        public StatementDeletedEvent(Object source, StatementResponse statement) {
+            super(source);
+            this.statement = statement;
+        }
+
+        public StatementResponse getStatement() {
+            return statement;
+        }
+    }
+}
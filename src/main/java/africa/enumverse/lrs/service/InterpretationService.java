@@ -71,7 +71,7 @@ public class InterpretationService {
                 .build();
     }
 
-    private VerbDto buildVerb(String action) {
+    VerbDto buildVerb(String action) {
         Map<String, String> display = new HashMap<>();
         String verbId;
 
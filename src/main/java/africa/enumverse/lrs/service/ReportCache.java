@@ -0,0 +1,161 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Caches report results by report type, window and limit. Storing a statement drops only
+ * the entries whose window contains its timestamp, so results for historical windows stay
+ * cached until evicted by size; windows reaching into the present also expire after
+ * lrs.reports.cache-ttl, since statements stored by other instances do not reach
+ * {@link #invalidate(Collection)} here.
+ *
+ * <p>Hit, miss and eviction counts are published as the "cache.*" metrics of the
+ * "reports" cache.
+ */
+@Component
+@Slf4j
+public class ReportCache {
+
+    private final LrsProperties.Reports settings;
+    private final Cache<ReportKey, Object> cache;
+    private final Set<Loading> loading = ConcurrentHashMap.newKeySet();
+
+    public ReportCache(LrsProperties properties, MeterRegistry meterRegistry) {
+        this.settings = properties.getReports();
+        long ttl = settings.getCacheTtl().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(settings.getCacheMaximumSize())
+                .expireAfter(new Expiry<ReportKey, Object>() {
+                    @Override
+                    public long expireAfterCreate(ReportKey key, Object value, long currentTime) {
+                        return key.isHistorical() ? Long.MAX_VALUE : ttl;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ReportKey key, Object value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(ReportKey key, Object value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "reports");
+    }
+
+    /**
+     * The cached result for the key, or the freshly computed one. A result is not kept when
+     * a statement inside its window was stored while it was being computed
+     */
+    public <T> T get(ReportKey key, Supplier<T> report) {
+        return get(key, report, result -> true);
+    }
+
+    /**
+     * As {@link #get(ReportKey, Supplier)}, keeping only results that are cacheable, e.g. not partial
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(ReportKey key, Supplier<T> report, Predicate<T> cacheable) {
+        if (!settings.isCacheEnabled()) return report.get();
+
+        T cached = (T) cache.getIfPresent(key);
+        if (cached != null) return cached;
+
+        Loading load = new Loading(key);
+        loading.add(load);
+        try {
+            T result = report.get();
+            if (result != null && cacheable.test(result)) {
+                cache.put(key, result);
+                // Checked after the put: an invalidation either sees the entry or marked the load
+                if (load.stale) cache.invalidate(key);
+            }
+            return result;
+        } finally {
+            loading.remove(load);
+        }
+    }
+
+    /**
+     * Drops the results whose window contains any of the timestamps
+     */
+    public void invalidate(Collection<LocalDateTime> timestamps) {
+        if (timestamps.isEmpty()) return;
+
+        loading.stream()
+                .filter(load -> timestamps.stream().anyMatch(load.key::contains))
+                .forEach(load -> load.stale = true);
+        int before = cache.asMap().size();
+        cache.asMap().keySet().removeIf(key -> timestamps.stream().anyMatch(key::contains));
+        log.debug("Invalidated {} cached reports for {} new statements", before - cache.asMap().size(), timestamps.size());
+    }
+
+    public void invalidateAll() {
+        loading.forEach(load -> load.stale = true);
+        cache.invalidateAll();
+    }
+
+    /**
+     * A report request: its type, the activity or actor it is about, its window normalized
+     * to the millisecond precision of the stored timestamps (null bounds for all-time
+     * reports) and its limit or number of ranges, if any
+     */
+    public record ReportKey(String type, String subject, LocalDateTime start, LocalDateTime end, Integer limit) {
+
+        public ReportKey {
+            if (start != null) start = start.truncatedTo(ChronoUnit.MILLIS);
+            if (end != null) end = end.truncatedTo(ChronoUnit.MILLIS);
+        }
+
+        public static ReportKey window(String type, LocalDateTime start, LocalDateTime end) {
+            return new ReportKey(type, null, start, end, null);
+        }
+
+        public static ReportKey window(String type, LocalDateTime start, LocalDateTime end, int limit) {
+            return new ReportKey(type, null, start, end, limit);
+        }
+
+        public static ReportKey allTime(String type, String subject, Integer limit) {
+            return new ReportKey(type, subject, null, null, limit);
+        }
+
+        /**
+         * Whether a statement with this timestamp falls in the window; report windows exclude both bounds
+         */
+        public boolean contains(LocalDateTime timestamp) {
+            if (timestamp == null) return true;
+            return (start == null || timestamp.isAfter(start)) && (end == null || timestamp.isBefore(end));
+        }
+
+        boolean isHistorical() {
+            return end != null && end.isBefore(LocalDateTime.now());
+        }
+    }
+
+    private static class Loading {
+        private final ReportKey key;
+        private volatile boolean stale;
+
+        private Loading(ReportKey key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.service.ReportCache.ReportKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of identical report requests: while a report is being computed,
+ * callers asking for the same key wait for that computation and share its result (or its
+ * failure) instead of starting their own. Nothing is kept once the computation finishes,
+ * so this also protects reports that are never cached; the number of requests that joined
+ * a computation is counted in "lrs.reports.coalesced".
+ */
+@Component
+@Slf4j
+public class ReportFlights {
+
+    private final ConcurrentMap<ReportKey, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public ReportFlights(MeterRegistry meterRegistry) {
+        this.coalesced = Counter.builder("lrs.reports.coalesced")
+                .description("Report requests answered by joining an identical computation in flight")
+                .register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T run(ReportKey key, Supplier<T> report) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            coalesced.increment();
+            log.debug("Joining the computation of {} in flight", key);
+            return (T) join(inFlight);
+        }
+
+        try {
+            T result = report.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    private Object join(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            // Rethrow what the computing caller saw, so every caller fails the same way
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+}
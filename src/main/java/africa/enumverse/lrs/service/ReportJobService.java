@@ -0,0 +1,131 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.dto.ComprehensiveReport;
+import africa.enumverse.lrs.model.ReportJob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Comprehensive reports computed in the background on a bounded worker pool. Jobs, their
+ * progress and their results are kept in report_results until lrs.reports.job-result-ttl
+ * has passed, so any instance can answer a poll.
+ *
+ * <p>A job computes its sections one after another on its own worker, within
+ * lrs.reports.job-timeout, rather than on the shared section pool used by interactive
+ * reports. A submission that finds every worker busy and the queue full is refused with
+ * a {@link RejectedExecutionException}.
+ */
+@Service
+@Slf4j
+public class ReportJobService implements DisposableBean {
+
+    private final ReportService reportService;
+    private final ReportSections reportSections;
+    private final MongoTemplate mongoTemplate;
+    private final LrsProperties.Reports settings;
+    private final ThreadPoolExecutor executor;
+
+    public ReportJobService(ReportService reportService, ReportSections reportSections,
+                            MongoTemplate mongoTemplate, LrsProperties properties) {
+        this.reportService = reportService;
+        this.reportSections = reportSections;
+        this.mongoTemplate = mongoTemplate;
+        this.settings = properties.getReports();
+
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(settings.getJobThreads(), settings.getJobThreads(),
+                1, TimeUnit.MINUTES, new ArrayBlockingQueue<>(settings.getJobQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-job-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue a comprehensive report for the given range
+     */
+    public ReportJob submit(LocalDateTime startDate, LocalDateTime endDate) {
+        if (!startDate.isBefore(endDate)) {
+            throw new IllegalArgumentException("startDate must be before endDate");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        ReportJob job = mongoTemplate.insert(ReportJob.builder()
+                .id(UUID.randomUUID().toString())
+                .type(ReportJob.COMPREHENSIVE)
+                .startDate(startDate)
+                .endDate(endDate)
+                .status(ReportJob.Status.QUEUED)
+                .createdAt(now)
+                .expiresAt(now.plus(settings.getJobResultTtl()))
+                .build());
+
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            mongoTemplate.remove(job);
+            log.warn("Report job refused, all {} job threads are busy and {} jobs are queued",
+                    executor.getMaximumPoolSize(), executor.getQueue().size());
+            throw e;
+        }
+        log.info("Queued report job {} from {} to {}", job.getId(), startDate, endDate);
+        return job;
+    }
+
+    public Optional<ReportJob> find(String id) {
+        return Optional.ofNullable(mongoTemplate.findById(id, ReportJob.class));
+    }
+
+    private void run(ReportJob job) {
+        Query byId = Query.query(Criteria.where("_id").is(job.getId()));
+        mongoTemplate.updateFirst(byId, new Update()
+                .set("status", ReportJob.Status.RUNNING)
+                .set("startedAt", LocalDateTime.now()), ReportJob.class);
+
+        try {
+            ComprehensiveReport report = reportService.generateComprehensiveReport(
+                    job.getStartDate(), job.getEndDate(),
+                    reportSections.startInline(settings.getJobTimeout()),
+                    progress -> mongoTemplate.updateFirst(byId, new Update().max("progress", progress), ReportJob.class));
+
+            LocalDateTime completedAt = LocalDateTime.now();
+            mongoTemplate.updateFirst(byId, new Update()
+                    .set("status", ReportJob.Status.COMPLETED)
+                    .set("progress", 100)
+                    .set("result", report)
+                    .set("completedAt", completedAt)
+                    .set("expiresAt", completedAt.plus(settings.getJobResultTtl())), ReportJob.class);
+            log.info("Completed report job {}", job.getId());
+        } catch (Exception e) {
+            log.error("Report job {} failed", job.getId(), e);
+            LocalDateTime completedAt = LocalDateTime.now();
+            mongoTemplate.updateFirst(byId, new Update()
+                    .set("status", ReportJob.Status.FAILED)
+                    .set("error", e.getMessage())
+                    .set("completedAt", completedAt)
+                    .set("expiresAt", completedAt.plus(settings.getJobResultTtl())), ReportJob.class);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,223 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool the sections of a report are computed on concurrently. Every section is
+ * timed into "lrs.reports.section", tagged with the section and its outcome.
+ *
+ * <p>Every section has its own timeout, which runs from when it gets a thread; one still
+ * waiting for a thread a timeout after it was submitted is given up. A section that runs
+ * past its timeout is interrupted, so it frees its thread for later reports, and is left
+ * out along with any that found the pool full. Left-out sections are recorded as
+ * incomplete so the caller can return a partial report. Failures of a section are rethrown.
+ *
+ * <p>{@link #startInline(Duration)} runs the sections one after another on the calling
+ * thread instead, for callers that already run in the background; a section that would
+ * start after the deadline is left out.
+ */
+@Component
+@Slf4j
+public class ReportSections implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    private final MeterRegistry meterRegistry;
+
+    public ReportSections(LrsProperties properties, MeterRegistry meterRegistry) {
+        LrsProperties.Reports settings = properties.getReports();
+        this.timeout = settings.getSectionTimeout();
+        this.meterRegistry = meterRegistry;
+
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(settings.getSectionThreads(), settings.getSectionThreads(),
+                1, TimeUnit.MINUTES, new ArrayBlockingQueue<>(settings.getSectionQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-section-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Starts the sections of one report, each computed on the pool within the section timeout
+     */
+    public Run start() {
+        return new Run(executor, timeout);
+    }
+
+    /**
+     * Starts the sections of one report that are computed on the calling thread; the
+     * timeout is shared by all of them and runs from now
+     */
+    public Run startInline(Duration timeout) {
+        return new Run(null, timeout);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private <T> T timed(String section, Supplier<T> work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = work.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(Timer.builder("lrs.reports.section")
+                    .description("Time taken to compute one report section")
+                    .tag("section", section)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * The sections of one report. Submit every section first, then join them; joins are
+     * made from the requesting thread only
+     */
+    public class Run {
+
+        private final ThreadPoolExecutor pool;
+        private final Duration timeout;
+        private final long deadline;
+        private final Map<CompletableFuture<?>, Section> sections = new IdentityHashMap<>();
+        private final List<String> incomplete = new ArrayList<>();
+
+        /**
+         * @param pool the pool the sections run on, or null to run them inline until the deadline
+         */
+        private Run(ThreadPoolExecutor pool, Duration timeout) {
+            this.pool = pool;
+            this.timeout = timeout;
+            this.deadline = System.nanoTime() + timeout.toNanos();
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public <T> CompletableFuture<T> submit(String section, Supplier<T> work) {
+            if (pool == null) {
+                if (System.nanoTime() - deadline >= 0) {
+                    return CompletableFuture.failedFuture(new TimeoutException());
+                }
+                return CompletableFuture.supplyAsync(() -> timed(section, work), Runnable::run);
+            }
+
+            CompletableFuture<T> result = new CompletableFuture<>();
+            Section running = new Section(System.nanoTime());
+            try {
+                running.task = pool.submit(() -> {
+                    running.startedAt = System.nanoTime();
+                    try {
+                        result.complete(timed(section, work));
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            sections.put(result, running);
+            return result;
+        }
+
+        /**
+         * The section's result, or the fallback when it did not finish within its timeout
+         */
+        public <T> T join(String section, CompletableFuture<T> future, T fallback) {
+            Section running = sections.get(future);
+            try {
+                return running != null ? await(future, running) : future.get(remaining(deadline), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (running != null) {
+                    running.task.cancel(true);
+                    future.cancel(false);
+                }
+                log.warn("Report section {} did not finish within {}", section, timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof TimeoutException) {
+                    log.warn("Report section {} not started, the report ran past {}", section, timeout);
+                } else if (e.getCause() instanceof RejectedExecutionException) {
+                    log.warn("Report section {} skipped, all {} section threads are busy", section, executor.getMaximumPoolSize());
+                } else if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                } else {
+                    throw new IllegalStateException("Report section " + section + " failed", e.getCause());
+                }
+            }
+            incomplete.add(section);
+            return fallback;
+        }
+
+        public List<String> incomplete() {
+            return List.copyOf(incomplete);
+        }
+
+        /**
+         * Waits a timeout from submission, and once the section has a thread, a timeout from
+         * when it started
+         */
+        private <T> T await(CompletableFuture<T> future, Section running)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            try {
+                return future.get(remaining(running.submittedAt + timeout.toNanos()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                long startedAt = running.startedAt;
+                if (startedAt == 0) throw e;
+                return future.get(remaining(startedAt + timeout.toNanos()), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private long remaining(long until) {
+            return Math.max(0, until - System.nanoTime());
+        }
+    }
+
+    /**
+     * A section submitted to the pool: when, when it got a thread (0 until then), and its
+     * task, cancelled with an interrupt when the section runs past its timeout
+     */
+    private static class Section {
+
+        private final long submittedAt;
+        private volatile long startedAt;
+        private Future<?> task;
+
+        private Section(long submittedAt) {
+            this.submittedAt = submittedAt;
+        }
+    }
+}
@@ -1,33 +1,117 @@
 package africa.enumverse.lrs.service;
 
 import africa.enumverse.lrs.dto.*;
+import africa.enumverse.lrs.model.ActivityRollup;
+import africa.enumverse.lrs.model.ActorRollup;
+import africa.enumverse.lrs.model.DailyRollup;
+import africa.enumverse.lrs.model.RollupState;
 import africa.enumverse.lrs.model.Statement;
+import africa.enumverse.lrs.model.StatementRollup;
 import africa.enumverse.lrs.repository.StatementRepository;
+import africa.enumverse.lrs.sketch.BoundedRanking;
+import africa.enumverse.lrs.sketch.HyperLogLog;
+import africa.enumverse.lrs.sketch.ScoreHistogram;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.*;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@Timed(value = "lrs.reports.generate", description = "Time taken to generate a report, tagged with the method")
 public class ReportService {
 
+    private static final String DAY_FORMAT = "%Y-%m-%d";
+    private static final AggregationOptions AGGREGATION_OPTIONS = AggregationOptions.builder()
+            .allowDiskUse(true)
+            .build();
+
     private final StatementRepository statementRepository;
+    private final MongoTemplate mongoTemplate;
+    private final StatementRollupService rollupService;
+    private final StatementRollupMaterializer rollupMaterializer;
+    private final TopKService topKService;
+    private final ReportSections reportSections;
+    private final StatementDictionary statementDictionary;
+    private final DefinitionRegistry definitionRegistry;
 
     /**
-     * Generate a comprehensive report for a given date range
+     * Generate a comprehensive report for a given date range.
+     * Every section is its own server-side aggregation, computed concurrently by
+     * {@link ReportSections}; a section that misses its timeout is left empty and the report
+     * is flagged as partial. Where the range is covered by materialized rollups, distinct
+     * actors and activities are estimated by merging their bucket sketches, so no set of ids
+     * is built for the whole range.
      */
     public ComprehensiveReport generateComprehensiveReport(LocalDateTime startDate, LocalDateTime endDate) {
+        return generateComprehensiveReport(startDate, endDate, reportSections.start(), progress -> {
+        });
+    }
+
+    /**
+     * Generate a comprehensive report with its sections computed by the given run,
+     * reporting the percentage of sections done as they complete
+     */
+    public ComprehensiveReport generateComprehensiveReport(LocalDateTime startDate, LocalDateTime endDate,
+                                                           ReportSections.Run run, IntConsumer progress) {
         log.info("Generating comprehensive report from {} to {}", startDate, endDate);
 
-        List<Statement> statements = statementRepository.findByTimestampBetween(startDate, endDate);
+        AggregationOptions options = AggregationOptions.builder()
+                .allowDiskUse(true)
+                .maxTime(run.getTimeout())
+                .build();
+        CompletableFuture<Document> overviewSection = run.submit("overview", () ->
+                aggregate(timestampWindow(startDate, endDate), options, overviewStages()).stream()
+                        .findFirst()
+                        .orElse(null));
+        CompletableFuture<Totals> totalsSection = run.submit("totals", () ->
+                distinctTotals(startDate, endDate, options));
+        CompletableFuture<List<Document>> verbsSection = run.submit("verbBreakdown", () ->
+                aggregate(timestampWindow(startDate, endDate), options, verbBreakdownStages()));
+        CompletableFuture<List<ActorReport>> performersSection = run.submit("topPerformers", () ->
+                aggregate(timestampWindow(startDate, endDate), options, ranked(topPerformerStages(), "averageScore", 10))
+                        .stream()
+                        .map(this::toActorReport)
+                        .collect(Collectors.toList()));
+        CompletableFuture<List<ActivityReport>> activitiesSection = run.submit("mostPopularActivities", () ->
+                aggregate(timestampWindow(startDate, endDate), options, ranked(popularActivityStages(), "totalStatements", 10))
+                        .stream()
+                        .map(this::toActivityReport)
+                        .collect(Collectors.toList()));
+        CompletableFuture<List<DailyActivityReport>> trendsSection = run.submit("dailyTrends", () ->
+                rawDailyTrends(timestampWindow(startDate, endDate), options));
+
+        List<CompletableFuture<?>> sections = List.of(overviewSection, totalsSection, verbsSection,
+                performersSection, activitiesSection, trendsSection);
+        AtomicInteger done = new AtomicInteger();
+        sections.forEach(section -> section.whenComplete((result, error) ->
+                progress.accept(done.incrementAndGet() * 100 / sections.size())));
+
+        Document overview = run.join("overview", overviewSection, null);
+        Long totalStatements = overview != null ? longValue(overview, "totalStatements") : null;
+        if (totalStatements == null && run.incomplete().isEmpty()) {
+            totalStatements = 0L;
+        }
 
-        if (statements.isEmpty()) {
+        if (totalStatements != null && totalStatements == 0) {
             return ComprehensiveReport.builder()
                     .reportGeneratedAt(LocalDateTime.now())
                     .reportStartDate(startDate)
@@ -40,24 +124,43 @@ public class ReportService {
                     .topPerformers(Collections.emptyList())
                     .mostPopularActivities(Collections.emptyList())
                     .dailyTrends(Collections.emptyList())
+                    .partial(false)
+                    .incompleteSections(Collections.emptyList())
                     .build();
         }
 
+        Totals totals = run.join("totals", totalsSection, null);
+        List<Document> verbs = run.join("verbBreakdown", verbsSection, Collections.emptyList());
+        // Without the overview, verb percentages are relative to the statements that have a verb
+        List<VerbReport> verbBreakdown = toVerbReports(verbs, totalStatements != null
+                ? totalStatements
+                : verbs.stream().mapToLong(verb -> longValue(verb, "count")).sum());
+        List<ActorReport> topPerformers = run.join("topPerformers", performersSection, Collections.emptyList());
+        List<ActivityReport> popularActivities = run.join("mostPopularActivities", activitiesSection, Collections.emptyList());
+        List<DailyActivityReport> dailyTrends = run.join("dailyTrends", trendsSection, Collections.emptyList());
+
+        List<String> incomplete = run.incomplete();
+        if (!incomplete.isEmpty()) {
+            log.warn("Comprehensive report from {} to {} is missing sections {}", startDate, endDate, incomplete);
+        }
+
         return ComprehensiveReport.builder()
                 .reportGeneratedAt(LocalDateTime.now())
                 .reportStartDate(startDate)
                 .reportEndDate(endDate)
-                .totalStatements((long) statements.size())
-                .totalActors(countUniqueActors(statements))
-                .totalActivities(countUniqueActivities(statements))
-                .totalVerbs(countUniqueVerbs(statements))
-                .overallAverageScore(calculateOverallAverageScore(statements))
-                .overallCompletionRate(calculateCompletionRate(statements))
-                .overallSuccessRate(calculateSuccessRate(statements))
-                .verbBreakdown(generateVerbBreakdown(statements))
-                .topPerformers(generateTopPerformers(statements, 10))
-                .mostPopularActivities(generateMostPopularActivities(statements, 10))
-                .dailyTrends(generateDailyTrends(statements))
+                .totalStatements(totalStatements)
+                .totalActors(totals != null ? totals.actors() : null)
+                .totalActivities(totals != null ? totals.activities() : null)
+                .totalVerbs((long) verbBreakdown.size())
+                .overallAverageScore(overview != null ? doubleValue(overview, "averageScore") : null)
+                .overallCompletionRate(overview != null ? longValue(overview, "completed") * 100.0 / totalStatements : null)
+                .overallSuccessRate(overview != null ? longValue(overview, "successes") * 100.0 / totalStatements : null)
+                .verbBreakdown(verbBreakdown)
+                .topPerformers(topPerformers)
+                .mostPopularActivities(popularActivities)
+                .dailyTrends(dailyTrends)
+                .partial(!incomplete.isEmpty())
+                .incompleteSections(incomplete)
                 .build();
     }
 
@@ -67,9 +170,7 @@ public class ReportService {
     public ActivityReport generateActivityReport(String activityId) {
         log.info("Generating activity report for activity: {}", activityId);
 
-        List<Statement> statements = statementRepository.findAll().stream()
-                .filter(s -> s.getObject() != null && activityId.equals(s.getObject().getId()))
-                .collect(Collectors.toList());
+        List<Statement> statements = statementRepository.findByObject_Id(activityId);
 
         if (statements.isEmpty()) {
             return ActivityReport.builder()
@@ -92,16 +193,25 @@ public class ReportService {
                 .average()
                 .orElse(0.0);
 
-        String activityName = statements.stream()
-                .filter(s -> s.getObject() != null && s.getObject().getDefinition() != null && s.getObject().getDefinition().getName() != null)
-                .findFirst()
-                .map(s -> s.getObject().getDefinition().getName().getOrDefault("en-US", activityId))
-                .orElse(activityId);
+        String activityName = label(definitionRegistry.activityName(activityId), null);
+        if (activityName == null) {
+            // Not registered yet, e.g. only stored before the registry was enabled
+            activityName = statements.stream()
+                    .filter(s -> s.getObject() != null && s.getObject().getDefinition() != null && s.getObject().getDefinition().getName() != null)
+                    .findFirst()
+                    .map(s -> s.getObject().getDefinition().getName().getOrDefault("en-US", activityId))
+                    .orElse(activityId);
+        }
 
         return ActivityReport.builder()
                 .activityId(activityId)
                 .activityName(activityName)
                 .totalStatements((long) statements.size())
+                .uniqueActors(statements.stream()
+                        .filter(s -> s.getActor() != null && s.getActor().getId() != null)
+                        .map(s -> s.getActor().getId())
+                        .distinct()
+                        .count())
                 .completedCount(completedCount)
                 .successCount(successCount)
                 .averageScore(averageScore)
@@ -118,9 +228,7 @@ public class ReportService {
     public ActorReport generateActorReport(String actorId) {
         log.info("Generating actor report for actor: {}", actorId);
 
-        List<Statement> statements = statementRepository.findAll().stream()
-                .filter(s -> s.getActor() != null && actorId.equals(s.getActor().getId()))
-                .collect(Collectors.toList());
+        List<Statement> statements = statementRepository.findByActor_Id(actorId);
 
         if (statements.isEmpty()) {
             return ActorReport.builder()
@@ -166,273 +274,725 @@ public class ReportService {
     }
 
     /**
-     * Generate verb usage breakdown
+     * Generate verb usage breakdown. Whole days covered by the rollups are read from them,
+     * only the partial days at the edges of the window are aggregated from raw statements
      */
     public List<VerbReport> generateVerbBreakdown(LocalDateTime startDate, LocalDateTime endDate) {
         log.info("Generating verb breakdown from {} to {}", startDate, endDate);
 
-        List<Statement> statements = statementRepository.findByTimestampBetween(startDate, endDate);
-        return generateVerbBreakdown(statements);
+        DayRange days = rollupDays(startDate, endDate);
+        List<Document> verbs;
+        if (days == null) {
+            verbs = aggregate(timestampWindow(startDate, endDate), verbBreakdownStages());
+        } else {
+            List<Document> counts = new ArrayList<>(rollupService.verbCounts(days.first(), days.last()));
+            counts.addAll(aggregate(edgeWindow(startDate, endDate, days), verbBreakdownStages()));
+            verbs = mergeVerbCounts(counts);
+        }
+
+        long total = verbs.stream().mapToLong(doc -> longValue(doc, "count")).sum();
+        return toVerbReports(verbs, total);
     }
 
     /**
-     * Generate daily activity trends
+     * Generate daily activity trends. Whole days are read from the materialized rollups, or
+     * from the live rollups when none are materialized for the window; only the partial
+     * days at the edges of the window are aggregated from raw statements
      */
     public List<DailyActivityReport> generateDailyTrends(LocalDateTime startDate, LocalDateTime endDate) {
         log.info("Generating daily trends from {} to {}", startDate, endDate);
 
-        List<Statement> statements = statementRepository.findByTimestampBetween(startDate, endDate);
-        return generateDailyTrends(statements);
+        DayRange days = materializedDays(startDate, endDate);
+        List<DailyActivityReport> wholeDays;
+        if (days != null) {
+            wholeDays = rollupMaterializer.days(days.first(), days.last()).stream()
+                    .map(this::toDailyReport)
+                    .collect(Collectors.toList());
+        } else {
+            days = rollupDays(startDate, endDate);
+            if (days == null) {
+                return rawDailyTrends(timestampWindow(startDate, endDate));
+            }
+            wholeDays = rollupService.days(days.first(), days.last()).stream()
+                    .map(this::toDailyReport)
+                    .collect(Collectors.toList());
+        }
+
+        List<DailyActivityReport> trends = new ArrayList<>(rawDailyTrends(edgeWindow(startDate, endDate, days)));
+        trends.addAll(wholeDays);
+        trends.sort(Comparator.comparing(DailyActivityReport::getDate));
+        return trends;
     }
 
     /**
-     * Get top performing actors
+     * Get top performing actors from the in-memory ranking, else off the rollup index once
+     * the rollups cover every statement, else exactly from the raw statements
      */
     public List<ActorReport> getTopPerformers(int limit) {
         log.info("Getting top {} performers", limit);
 
-        List<Statement> allStatements = statementRepository.findAll();
-        return generateTopPerformers(allStatements, limit);
+        Optional<List<ActorRollup>> ranked = topKService.topActors(limit);
+        if (ranked.isEmpty() && rollupService.isComplete()) {
+            ranked = Optional.of(rollupService.topActors(limit));
+        }
+        if (ranked.isPresent()) {
+            return ranked.get().stream()
+                    .map(this::toActorReport)
+                    .collect(Collectors.toList());
+        }
+        return exactTop(topPerformerStages(), "averageScore", limit).stream()
+                .map(this::toActorReport)
+                .collect(Collectors.toList());
     }
 
     /**
-     * Get most popular activities
+     * Get most popular activities from the in-memory ranking, else off the rollup index once
+     * the rollups cover every statement, else exactly from the raw statements. Distinct
+     * actors per activity are estimated from the activity sketches, read with one _id
+     * lookup of the ranked activities; the report cache in front of this method keeps
+     * repeated lookups off the store
      */
     public List<ActivityReport> getMostPopularActivities(int limit) {
         log.info("Getting top {} most popular activities", limit);
 
-        List<Statement> allStatements = statementRepository.findAll();
-        return generateMostPopularActivities(allStatements, limit);
+        Optional<List<ActivityRollup>> ranked = topKService.topActivities(limit);
+        if (ranked.isEmpty() && rollupService.isComplete()) {
+            ranked = Optional.of(rollupService.topActivities(limit));
+        }
+        List<ActivityReport> activities;
+        if (ranked.isPresent()) {
+            activities = ranked.get().stream()
+                    .map(this::toActivityReport)
+                    .collect(Collectors.toList());
+        } else {
+            activities = exactTop(popularActivityStages(), "totalStatements", limit).stream()
+                    .map(this::toActivityReport)
+                    .collect(Collectors.toList());
+        }
+
+        Map<String, Long> actors = rollupMaterializer.activityActors(activities.stream()
+                .map(ActivityReport::getActivityId)
+                .collect(Collectors.toList()));
+        activities.forEach(activity -> activity.setUniqueActors(actors.get(activity.getActivityId())));
+        return activities;
     }
 
-    // Private helper methods
+    /**
+     * Score distribution of one activity, from the score bins of its live rollup once the
+     * rollups cover every statement, else from the activity's statements
+     */
+    public ScoreDistribution getActivityScoreDistribution(String activityId, int ranges) {
+        log.info("Generating score distribution for activity: {}", activityId);
+
+        ScoreHistogram scores = null;
+        if (rollupService.isComplete()) {
+            scores = rollupService.activity(activityId)
+                    .map(activity -> counted(ScoreHistogram.fromBins(activity.getScoreBins()), activity.getScoreCount()))
+                    .orElseGet(ScoreHistogram::new);
+        }
+        if (scores == null) {
+            scores = new ScoreHistogram();
+            addScores(Criteria.where("object.id").is(activityId), scores);
+        }
 
-    private Long countUniqueActors(List<Statement> statements) {
-        return statements.stream()
-                .filter(s -> s.getActor() != null && s.getActor().getId() != null)
-                .map(s -> s.getActor().getId())
-                .distinct()
-                .count();
+        ScoreDistribution distribution = toScoreDistribution(scores, ranges);
+        distribution.setActivityId(activityId);
+        return distribution;
     }
 
-    private Long countUniqueActivities(List<Statement> statements) {
-        return statements.stream()
-                .filter(s -> s.getObject() != null && s.getObject().getId() != null)
-                .map(s -> s.getObject().getId())
-                .distinct()
-                .count();
+    /**
+     * Score distribution of one actor, from the score bins of their live rollup once the
+     * rollups cover every statement, else from the actor's statements
+     */
+    public ScoreDistribution getActorScoreDistribution(String actorId, int ranges) {
+        log.info("Generating score distribution for actor: {}", actorId);
+
+        ScoreHistogram scores = null;
+        if (rollupService.isComplete()) {
+            scores = rollupService.actor(actorId)
+                    .map(actor -> counted(ScoreHistogram.fromBins(actor.getScoreBins()), actor.getScoreCount()))
+                    .orElseGet(ScoreHistogram::new);
+        }
+        if (scores == null) {
+            scores = new ScoreHistogram();
+            addScores(Criteria.where("actor.id").is(actorId), scores);
+        }
+
+        ScoreDistribution distribution = toScoreDistribution(scores, ranges);
+        distribution.setActorId(actorId);
+        return distribution;
     }
 
-    private Long countUniqueVerbs(List<Statement> statements) {
-        return statements.stream()
-                .filter(s -> s.getVerb() != null && s.getVerb().getId() != null)
-                .map(s -> s.getVerb().getId())
-                .distinct()
-                .count();
+    /**
+     * Score distribution over a date range. The score histograms of the materialized hours
+     * are merged, so the cost depends on the number of buckets rather than statements; only
+     * the partial hours at the edges of the window are read from raw statements
+     */
+    public ScoreDistribution getScoreDistribution(LocalDateTime startDate, LocalDateTime endDate, int ranges) {
+        log.info("Generating score distribution from {} to {}", startDate, endDate);
+
+        HourRange hours = materializedHours(startDate, endDate);
+        ScoreHistogram scores = hours != null ? rollupMaterializer.scores(hours.from(), hours.to()) : null;
+        if (scores != null) {
+            addScores(hourEdges(startDate, endDate, hours), scores);
+        } else {
+            scores = new ScoreHistogram();
+            addScores(timestampWindow(startDate, endDate), scores);
+        }
+
+        ScoreDistribution distribution = toScoreDistribution(scores, ranges);
+        distribution.setStartDate(startDate);
+        distribution.setEndDate(endDate);
+        return distribution;
     }
 
-    private Double calculateOverallAverageScore(List<Statement> statements) {
-        return statements.stream()
-                .filter(s -> s.getResult() != null && s.getResult().getScore() != null && s.getResult().getScore().getScaled() != null)
-                .mapToDouble(s -> s.getResult().getScore().getScaled())
-                .average()
-                .orElse(0.0);
+    private List<DailyActivityReport> rawDailyTrends(Criteria window) {
+        return rawDailyTrends(window, AGGREGATION_OPTIONS);
     }
 
-    private Double calculateCompletionRate(List<Statement> statements) {
-        long total = statements.size();
-        if (total == 0) return 0.0;
+    private List<DailyActivityReport> rawDailyTrends(Criteria window, AggregationOptions options) {
+        TypedAggregation<Statement> aggregation = Aggregation.newAggregation(Statement.class,
+                        Aggregation.match(window),
+                        Aggregation.facet(dailyTrendStages()).as("dailyTrends")
+                                .and(dailyDistinctStages("actor.id")).as("dailyActors")
+                                .and(dailyDistinctStages("object.id")).as("dailyActivities"))
+                .withOptions(options);
+
+        Document facets = mongoTemplate.aggregate(aggregation, Document.class).getUniqueMappedResult();
+        if (facets == null) return Collections.emptyList();
+
+        return toDailyReports(
+                facets.getList("dailyTrends", Document.class),
+                facets.getList("dailyActors", Document.class),
+                facets.getList("dailyActivities", Document.class));
+    }
 
-        long completed = statements.stream()
-                .filter(s -> s.getResult() != null && Boolean.TRUE.equals(s.getResult().getCompletion()))
-                .count();
+    // Aggregation pipeline stages
 
-        return (completed * 100.0) / total;
+    private List<Document> aggregate(Criteria criteria, AggregationOperation... stages) {
+        return aggregate(criteria, AGGREGATION_OPTIONS, stages);
     }
 
-    private Double calculateSuccessRate(List<Statement> statements) {
-        long total = statements.size();
-        if (total == 0) return 0.0;
+    private List<Document> aggregate(Criteria criteria, AggregationOptions options, AggregationOperation... stages) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(Aggregation.match(criteria));
+        operations.addAll(Arrays.asList(stages));
 
-        long success = statements.stream()
-                .filter(s -> s.getResult() != null && Boolean.TRUE.equals(s.getResult().getSuccess()))
-                .count();
+        TypedAggregation<Statement> aggregation = Aggregation.newAggregation(Statement.class, operations)
+                .withOptions(options);
+        return mongoTemplate.aggregate(aggregation, Document.class).getMappedResults();
+    }
 
-        return (success * 100.0) / total;
+    /**
+     * Exact top of the grouped stage output, highest value first: groups are streamed off
+     * the cursor through a bounded priority queue instead of being sorted server-side
+     */
+    private List<Document> exactTop(AggregationOperation[] stages, String field, int limit) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(Aggregation.match(new Criteria()));
+        operations.addAll(Arrays.asList(stages));
+        TypedAggregation<Statement> aggregation = Aggregation.newAggregation(Statement.class, operations)
+                .withOptions(AGGREGATION_OPTIONS);
+
+        try (Stream<Document> groups = mongoTemplate.aggregateStream(aggregation, Document.class)) {
+            return exactTop(groups, field, limit);
+        }
     }
 
-    private List<VerbReport> generateVerbBreakdown(List<Statement> statements) {
-        long total = statements.size();
-        if (total == 0) return Collections.emptyList();
+    /**
+     * The limit groups with the highest value of the field, highest first, ties by _id
+     */
+    List<Document> exactTop(Stream<Document> groups, String field, int limit) {
+        Comparator<Document> highestFirst = Comparator
+                .comparingDouble((Document doc) -> doubleValue(doc, field)).reversed()
+                .thenComparing(doc -> String.valueOf(doc.get("_id")));
+        return BoundedRanking.top(groups, limit, highestFirst);
+    }
 
-        Map<String, Long> verbCounts = statements.stream()
-                .filter(s -> s.getVerb() != null && s.getVerb().getId() != null)
-                .collect(Collectors.groupingBy(
-                        s -> s.getVerb().getId(),
-                        Collectors.counting()
-                ));
-
-        Map<String, String> verbDisplays = statements.stream()
-                .filter(s -> s.getVerb() != null && s.getVerb().getId() != null)
-                .collect(Collectors.toMap(
-                        s -> s.getVerb().getId(),
-                        s -> s.getVerb().getDisplay() != null ?
-                                s.getVerb().getDisplay().getOrDefault("en-US", s.getVerb().getId()) :
-                                s.getVerb().getId(),
-                        (v1, v2) -> v1
-                ));
-
-        return verbCounts.entrySet().stream()
-                .map(entry -> VerbReport.builder()
-                        .verbId(entry.getKey())
-                        .verbDisplay(verbDisplays.getOrDefault(entry.getKey(), entry.getKey()))
-                        .count(entry.getValue())
-                        .percentage((entry.getValue() * 100.0) / total)
-                        .build())
-                .sorted((a, b) -> Long.compare(b.getCount(), a.getCount()))
-                .collect(Collectors.toList());
+    private AggregationOperation[] ranked(AggregationOperation[] stages, String field, int limit) {
+        List<AggregationOperation> operations = new ArrayList<>(Arrays.asList(stages));
+        operations.add(Aggregation.sort(Sort.Direction.DESC, field));
+        operations.add(Aggregation.limit(limit));
+        return operations.toArray(new AggregationOperation[0]);
     }
 
-    private List<ActorReport> generateTopPerformers(List<Statement> statements, int limit) {
-        Map<String, List<Statement>> statementsByActor = statements.stream()
-                .filter(s -> s.getActor() != null && s.getActor().getId() != null)
-                .collect(Collectors.groupingBy(s -> s.getActor().getId()));
-
-        return statementsByActor.entrySet().stream()
-                .map(entry -> {
-                    String actorId = entry.getKey();
-                    List<Statement> actorStatements = entry.getValue();
-
-                    double avgScore = actorStatements.stream()
-                            .filter(s -> s.getResult() != null && s.getResult().getScore() != null && s.getResult().getScore().getScaled() != null)
-                            .mapToDouble(s -> s.getResult().getScore().getScaled())
-                            .average()
-                            .orElse(0.0);
-
-                    long completed = actorStatements.stream()
-                            .filter(s -> s.getResult() != null && Boolean.TRUE.equals(s.getResult().getCompletion()))
-                            .count();
-
-                    long uniqueActivities = actorStatements.stream()
-                            .filter(s -> s.getObject() != null && s.getObject().getId() != null)
-                            .map(s -> s.getObject().getId())
-                            .distinct()
-                            .count();
-
-                    Statement firstStatement = actorStatements.stream().findFirst().orElse(null);
-                    String actorName = firstStatement != null && firstStatement.getActor() != null ?
-                            firstStatement.getActor().getName() : actorId;
-                    String actorEmail = firstStatement != null && firstStatement.getActor() != null ?
-                            firstStatement.getActor().getMbox() : null;
-
-                    return ActorReport.builder()
-                            .actorId(actorId)
-                            .actorName(actorName)
-                            .actorEmail(actorEmail)
-                            .totalStatements((long) actorStatements.size())
-                            .activitiesCompleted(completed)
-                            .activitiesAttempted(uniqueActivities)
-                            .averageScore(avgScore)
-                            .completionRate(uniqueActivities > 0 ? (completed * 100.0 / uniqueActivities) : 0.0)
-                            .firstActivity(actorStatements.stream().map(Statement::getTimestamp).min(LocalDateTime::compareTo).orElse(null))
-                            .lastActivity(actorStatements.stream().map(Statement::getTimestamp).max(LocalDateTime::compareTo).orElse(null))
-                            .build();
-                })
-                .sorted((a, b) -> Double.compare(b.getAverageScore(), a.getAverageScore()))
-                .limit(limit)
-                .collect(Collectors.toList());
+    /**
+     * Whole days inside the window that the live rollups cover, or null when there are none
+     */
+    private DayRange rollupDays(LocalDateTime startDate, LocalDateTime endDate) {
+        LocalDate firstCovered = rollupService.firstCoveredDay();
+        if (firstCovered == null) return null;
+        return wholeDays(startDate, endDate, firstCovered, endDate.toLocalDate());
     }
 
-    private List<ActivityReport> generateMostPopularActivities(List<Statement> statements, int limit) {
-        Map<String, List<Statement>> statementsByActivity = statements.stream()
-                .filter(s -> s.getObject() != null && s.getObject().getId() != null)
-                .collect(Collectors.groupingBy(s -> s.getObject().getId()));
-
-        return statementsByActivity.entrySet().stream()
-                .map(entry -> {
-                    String activityId = entry.getKey();
-                    List<Statement> activityStatements = entry.getValue();
-
-                    long completedCount = activityStatements.stream()
-                            .filter(s -> s.getResult() != null && Boolean.TRUE.equals(s.getResult().getCompletion()))
-                            .count();
-
-                    long successCount = activityStatements.stream()
-                            .filter(s -> s.getResult() != null && Boolean.TRUE.equals(s.getResult().getSuccess()))
-                            .count();
-
-                    double averageScore = activityStatements.stream()
-                            .filter(s -> s.getResult() != null && s.getResult().getScore() != null && s.getResult().getScore().getScaled() != null)
-                            .mapToDouble(s -> s.getResult().getScore().getScaled())
-                            .average()
-                            .orElse(0.0);
-
-                    String activityName = activityStatements.stream()
-                            .filter(s -> s.getObject() != null && s.getObject().getDefinition() != null && s.getObject().getDefinition().getName() != null)
-                            .findFirst()
-                            .map(s -> s.getObject().getDefinition().getName().getOrDefault("en-US", activityId))
-                            .orElse(activityId);
-
-                    return ActivityReport.builder()
-                            .activityId(activityId)
-                            .activityName(activityName)
-                            .totalStatements((long) activityStatements.size())
-                            .completedCount(completedCount)
-                            .successCount(successCount)
-                            .averageScore(averageScore)
-                            .completionRate(activityStatements.size() > 0 ? (completedCount * 100.0 / activityStatements.size()) : 0.0)
-                            .successRate(activityStatements.size() > 0 ? (successCount * 100.0 / activityStatements.size()) : 0.0)
-                            .firstAttempt(activityStatements.stream().map(Statement::getTimestamp).min(LocalDateTime::compareTo).orElse(null))
-                            .lastAttempt(activityStatements.stream().map(Statement::getTimestamp).max(LocalDateTime::compareTo).orElse(null))
+    /**
+     * Whole days inside the window with a complete materialized day bucket, or null when there are none
+     */
+    private DayRange materializedDays(LocalDateTime startDate, LocalDateTime endDate) {
+        RollupState coverage = rollupMaterializer.coverage();
+        if (coverage == null) return null;
+
+        LocalDateTime since = coverage.getSince();
+        LocalDate firstCovered = since.toLocalTime().equals(LocalTime.MIDNIGHT)
+                ? since.toLocalDate()
+                : since.toLocalDate().plusDays(1);
+        return wholeDays(startDate, endDate, firstCovered, coverage.getUntil().toLocalDate().minusDays(1));
+    }
+
+    /**
+     * Whole hours inside the window that are materialized, or null when there are none
+     */
+    private HourRange materializedHours(LocalDateTime startDate, LocalDateTime endDate) {
+        RollupState coverage = rollupMaterializer.coverage();
+        if (coverage == null) return null;
+
+        // The window bounds are exclusive, so the hour of the start is never whole
+        LocalDateTime from = startDate.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        if (from.isBefore(coverage.getSince())) from = coverage.getSince();
+        LocalDateTime to = endDate.truncatedTo(ChronoUnit.HOURS);
+        if (to.isAfter(coverage.getUntil())) to = coverage.getUntil();
+        return from.isBefore(to) ? new HourRange(from, to) : null;
+    }
+
+    /**
+     * Distinct actors and activities in the window: estimated from the sketches where the
+     * window is materialized, else counted exactly by the server
+     */
+    private Totals distinctTotals(LocalDateTime startDate, LocalDateTime endDate, AggregationOptions options) {
+        HourRange hours = materializedHours(startDate, endDate);
+        if (hours != null) {
+            StatementRollupMaterializer.Sketches distinct = distinctSketches(startDate, endDate, hours);
+            return new Totals(distinct.actors().estimate(), distinct.activities().estimate());
+        }
+
+        TypedAggregation<Statement> aggregation = Aggregation.newAggregation(Statement.class,
+                        Aggregation.match(timestampWindow(startDate, endDate)),
+                        Aggregation.facet(distinctCountStages("actor.id")).as("actors")
+                                .and(distinctCountStages("object.id")).as("activities"))
+                .withOptions(options);
+        Document facets = mongoTemplate.aggregate(aggregation, Document.class).getUniqueMappedResult();
+        Document actors = facets != null ? firstResult(facets, "actors") : null;
+        Document activities = facets != null ? firstResult(facets, "activities") : null;
+        return new Totals(actors != null ? longValue(actors, "count") : 0L,
+                activities != null ? longValue(activities, "count") : 0L);
+    }
+
+    /**
+     * Sketches of the materialized hours, with the distinct ids of the raw edges streamed into them
+     */
+    private StatementRollupMaterializer.Sketches distinctSketches(LocalDateTime startDate, LocalDateTime endDate,
+                                                                  HourRange hours) {
+        StatementRollupMaterializer.Sketches sketches = rollupMaterializer.sketches(hours.from(), hours.to());
+        addDistinct(startDate, endDate, hours, "actor.id", sketches.actors());
+        addDistinct(startDate, endDate, hours, "object.id", sketches.activities());
+        return sketches;
+    }
+
+    private void addDistinct(LocalDateTime startDate, LocalDateTime endDate, HourRange hours,
+                             String field, HyperLogLog sketch) {
+        TypedAggregation<Statement> ids = Aggregation.newAggregation(Statement.class,
+                        Aggregation.match(new Criteria().andOperator(
+                                hourEdges(startDate, endDate, hours), Criteria.where(field).ne(null))),
+                        Aggregation.group(field))
+                .withOptions(AGGREGATION_OPTIONS);
+
+        try (Stream<Document> stream = mongoTemplate.aggregateStream(ids, Document.class)) {
+            stream.forEach(id -> sketch.add(String.valueOf(id.get("_id"))));
+        }
+    }
+
+    /**
+     * Streams the number of statements per distinct score into the histogram
+     */
+    private void addScores(Criteria criteria, ScoreHistogram scores) {
+        TypedAggregation<Statement> counts = Aggregation.newAggregation(Statement.class,
+                        Aggregation.match(new Criteria().andOperator(
+                                criteria, Criteria.where("result.score.scaled").ne(null))),
+                        Aggregation.group("result.score.scaled").count().as("count"))
+                .withOptions(AGGREGATION_OPTIONS);
+
+        try (Stream<Document> stream = mongoTemplate.aggregateStream(counts, Document.class)) {
+            stream.forEach(count -> scores.add(count.get("_id", Number.class).doubleValue(), longValue(count, "count")));
+        }
+    }
+
+    /**
+     * The live score bins, or null when they do not add up to the scores counted, i.e. the
+     * rollup started before scores were binned
+     */
+    private ScoreHistogram counted(ScoreHistogram scores, long scoreCount) {
+        return scores.count() == scoreCount ? scores : null;
+    }
+
+    private DayRange wholeDays(LocalDateTime startDate, LocalDateTime endDate, LocalDate firstCovered, LocalDate lastCovered) {
+        // The window bounds are exclusive, so neither the start day nor the end day is whole
+        LocalDate first = startDate.toLocalDate().plusDays(1);
+        if (first.isBefore(firstCovered)) first = firstCovered;
+        LocalDate last = endDate.toLocalDate().minusDays(1);
+        if (last.isAfter(lastCovered)) last = lastCovered;
+        return first.isAfter(last) ? null : new DayRange(first, last);
+    }
+
+    /**
+     * The parts of the window before and after the rollup days
+     */
+    private Criteria edgeWindow(LocalDateTime startDate, LocalDateTime endDate, DayRange days) {
+        return new Criteria().orOperator(
+                Criteria.where("timestamp").gt(startDate).lt(days.first().atStartOfDay()),
+                Criteria.where("timestamp").gte(days.last().plusDays(1).atStartOfDay()).lt(endDate));
+    }
+
+    /**
+     * The parts of the window before and after the materialized hours
+     */
+    private Criteria hourEdges(LocalDateTime startDate, LocalDateTime endDate, HourRange hours) {
+        return new Criteria().orOperator(
+                Criteria.where("timestamp").gt(startDate).lt(hours.from()),
+                Criteria.where("timestamp").gte(hours.to()).lt(endDate));
+    }
+
+    /**
+     * Mirrors the exclusive bounds of the derived findByTimestampBetween query
+     */
+    private Criteria timestampWindow(LocalDateTime startDate, LocalDateTime endDate) {
+        return Criteria.where("timestamp").gt(startDate).lt(endDate);
+    }
+
+    private AggregationOperation[] overviewStages() {
+        return new AggregationOperation[]{
+                Aggregation.group()
+                        .count().as("totalStatements")
+                        .sum(isTrue("result.completion")).as("completed")
+                        .sum(isTrue("result.success")).as("successes")
+                        .avg("result.score.scaled").as("averageScore")
+        };
+    }
+
+    private AggregationOperation[] distinctCountStages(String field) {
+        return new AggregationOperation[]{
+                Aggregation.match(Criteria.where(field).ne(null)),
+                Aggregation.group(field),
+                Aggregation.count().as("count")
+        };
+    }
+
+    private AggregationOperation[] verbBreakdownStages() {
+        return new AggregationOperation[]{
+                Aggregation.match(Criteria.where("verb.id").ne(null)),
+                Aggregation.group("verb.id")
+                        .count().as("count")
+                        .first("verb.display").as("display")
+                        .first("verb.ref").as("verbRef"),
+                Aggregation.sort(Sort.Direction.DESC, "count")
+        };
+    }
+
+    private AggregationOperation[] topPerformerStages() {
+        return new AggregationOperation[]{
+                Aggregation.match(Criteria.where("actor.id").ne(null)),
+                Aggregation.group("actor.id")
+                        .count().as("totalStatements")
+                        .sum(isTrue("result.completion")).as("completed")
+                        .avg("result.score.scaled").as("averageScore")
+                        .addToSet("object.id").as("activities")
+                        .first("actor.name").as("name")
+                        .first("actor.mbox").as("mbox")
+                        .first("actor.ref").as("actorRef")
+                        .min("timestamp").as("first")
+                        .max("timestamp").as("last"),
+                Aggregation.project("totalStatements", "completed", "name", "mbox", "actorRef", "first", "last")
+                        .and(ConditionalOperators.ifNull("averageScore").then(0.0)).as("averageScore")
+                        .and(ArrayOperators.Size.lengthOfArray("activities")).as("activitiesAttempted")
+        };
+    }
+
+    private AggregationOperation[] popularActivityStages() {
+        return new AggregationOperation[]{
+                Aggregation.match(Criteria.where("object.id").ne(null)),
+                Aggregation.group("object.id")
+                        .count().as("totalStatements")
+                        .sum(isTrue("result.completion")).as("completed")
+                        .sum(isTrue("result.success")).as("successes")
+                        .avg("result.score.scaled").as("averageScore")
+                        .first("object.definition.name").as("name")
+                        .first("object.ref").as("activityRef")
+                        .min("timestamp").as("first")
+                        .max("timestamp").as("last")
+        };
+    }
+
+    private AggregationOperation[] dailyTrendStages() {
+        return new AggregationOperation[]{
+                Aggregation.project()
+                        .and(dayOf("timestamp")).as("day")
+                        .and("result.completion").as("completion")
+                        .and("result.score.scaled").as("score"),
+                Aggregation.group("day")
+                        .count().as("totalStatements")
+                        .sum(isTrue("completion")).as("completions")
+                        .avg("score").as("averageScore")
+        };
+    }
+
+    private AggregationOperation[] dailyDistinctStages(String field) {
+        return new AggregationOperation[]{
+                Aggregation.match(Criteria.where(field).ne(null)),
+                Aggregation.project()
+                        .and(dayOf("timestamp")).as("day")
+                        .and(field).as("key"),
+                Aggregation.group("day", "key"),
+                Aggregation.group("day").count().as("count")
+        };
+    }
+
+    private AggregationExpression isTrue(String field) {
+        return ConditionalOperators.when(ComparisonOperators.valueOf(field).equalToValue(true))
+                .then(1)
+                .otherwise(0);
+    }
+
+    /**
+     * Buckets timestamps by calendar day in the JVM time zone, matching LocalDateTime#toLocalDate
+     */
+    private AggregationExpression dayOf(String field) {
+        return DateOperators.dateOf(field)
+                .withTimezone(DateOperators.Timezone.valueOf(TimeZone.getDefault().getID()))
+                .toString(DAY_FORMAT);
+    }
+
+    // Aggregation result mappers
+
+    private List<VerbReport> toVerbReports(List<Document> verbs, long total) {
+        if (total == 0) return Collections.emptyList();
+
+        return verbs.stream()
+                .map(doc -> {
+                    String verbId = doc.getString("_id");
+                    Document display = doc.get("display", Document.class);
+                    if (display == null) display = interned(doc, "verbRef", "display");
+                    long count = longValue(doc, "count");
+                    return VerbReport.builder()
+                            .verbId(verbId)
+                            .verbDisplay(label(definitionRegistry.verbDisplay(verbId), label(display, verbId)))
+                            .count(count)
+                            .percentage((count * 100.0) / total)
                             .build();
                 })
-                .sorted((a, b) -> Long.compare(b.getTotalStatements(), a.getTotalStatements()))
-                .limit(limit)
                 .collect(Collectors.toList());
     }
 
-    private List<DailyActivityReport> generateDailyTrends(List<Statement> statements) {
-        Map<LocalDate, List<Statement>> statementsByDate = statements.stream()
-                .collect(Collectors.groupingBy(s -> s.getTimestamp().toLocalDate()));
-
-        return statementsByDate.entrySet().stream()
-                .map(entry -> {
-                    LocalDate date = entry.getKey();
-                    List<Statement> dailyStatements = entry.getValue();
+    private ActorReport toActorReport(Document doc) {
+        String actorId = doc.getString("_id");
+        long completed = longValue(doc, "completed");
+        long activitiesAttempted = longValue(doc, "activitiesAttempted");
+        String actorName = doc.getString("name");
+        String mbox = doc.getString("mbox");
+        if (mbox == null) {
+            Document identifiers = statementDictionary.lookup(doc.get("actorRef"));
+            mbox = identifiers != null ? identifiers.getString("mbox") : null;
+        }
 
-                    long uniqueActors = dailyStatements.stream()
-                            .filter(s -> s.getActor() != null && s.getActor().getId() != null)
-                            .map(s -> s.getActor().getId())
-                            .distinct()
-                            .count();
+        return ActorReport.builder()
+                .actorId(actorId)
+                .actorName(actorName != null ? actorName : actorId)
+                .actorEmail(mbox)
+                .totalStatements(longValue(doc, "totalStatements"))
+                .activitiesCompleted(completed)
+                .activitiesAttempted(activitiesAttempted)
+                .averageScore(doubleValue(doc, "averageScore"))
+                .completionRate(activitiesAttempted > 0 ? (completed * 100.0 / activitiesAttempted) : 0.0)
+                .firstActivity(toLocalDateTime(doc.get("first")))
+                .lastActivity(toLocalDateTime(doc.get("last")))
+                .build();
+    }
 
-                    long uniqueActivities = dailyStatements.stream()
-                            .filter(s -> s.getObject() != null && s.getObject().getId() != null)
-                            .map(s -> s.getObject().getId())
-                            .distinct()
-                            .count();
+    private ActivityReport toActivityReport(Document doc) {
+        String activityId = doc.getString("_id");
+        long total = longValue(doc, "totalStatements");
+        long completedCount = longValue(doc, "completed");
+        long successCount = longValue(doc, "successes");
+        Document name = doc.get("name", Document.class);
+        if (name == null) {
+            Document definition = interned(doc, "activityRef", "definition");
+            name = definition != null ? definition.get("name", Document.class) : null;
+        }
 
-                    long completions = dailyStatements.stream()
-                            .filter(s -> s.getResult() != null && Boolean.TRUE.equals(s.getResult().getCompletion()))
-                            .count();
+        return ActivityReport.builder()
+                .activityId(activityId)
+                .activityName(label(definitionRegistry.activityName(activityId), label(name, activityId)))
+                .totalStatements(total)
+                .completedCount(completedCount)
+                .successCount(successCount)
+                .averageScore(doubleValue(doc, "averageScore"))
+                .completionRate(total > 0 ? (completedCount * 100.0 / total) : 0.0)
+                .successRate(total > 0 ? (successCount * 100.0 / total) : 0.0)
+                .firstAttempt(toLocalDateTime(doc.get("first")))
+                .lastAttempt(toLocalDateTime(doc.get("last")))
+                .build();
+    }
 
-                    double avgScore = dailyStatements.stream()
-                            .filter(s -> s.getResult() != null && s.getResult().getScore() != null && s.getResult().getScore().getScaled() != null)
-                            .mapToDouble(s -> s.getResult().getScore().getScaled())
-                            .average()
-                            .orElse(0.0);
+    private List<DailyActivityReport> toDailyReports(List<Document> days, List<Document> dailyActors,
+                                                     List<Document> dailyActivities) {
+        Map<String, Long> actorsByDay = countsByKey(dailyActors);
+        Map<String, Long> activitiesByDay = countsByKey(dailyActivities);
 
+        return days.stream()
+                .map(doc -> {
+                    String day = doc.getString("_id");
                     return DailyActivityReport.builder()
-                            .date(date)
-                            .totalStatements((long) dailyStatements.size())
-                            .uniqueActors(uniqueActors)
-                            .uniqueActivities(uniqueActivities)
-                            .completions(completions)
-                            .averageScore(avgScore)
+                            .date(LocalDate.parse(day))
+                            .totalStatements(longValue(doc, "totalStatements"))
+                            .uniqueActors(actorsByDay.getOrDefault(day, 0L))
+                            .uniqueActivities(activitiesByDay.getOrDefault(day, 0L))
+                            .completions(longValue(doc, "completions"))
+                            .averageScore(doubleValue(doc, "averageScore"))
                             .build();
                 })
                 .sorted(Comparator.comparing(DailyActivityReport::getDate))
                 .collect(Collectors.toList());
     }
-}
 
+    private DailyActivityReport toDailyReport(DailyRollup day) {
+        return DailyActivityReport.builder()
+                .date(LocalDate.parse(day.getDay()))
+                .totalStatements(day.getCount())
+                .uniqueActors(day.getUniqueActors())
+                .uniqueActivities(day.getUniqueActivities())
+                .completions(day.getCompletions())
+                .averageScore(day.getScoreCount() > 0 ? day.getScoreSum() / day.getScoreCount() : 0.0)
+                .build();
+    }
+
+    private DailyActivityReport toDailyReport(StatementRollup day) {
+        return DailyActivityReport.builder()
+                .date(LocalDate.parse(day.getId().substring(StatementRollup.DAY.length() + 1)))
+                .totalStatements(day.getCount())
+                .uniqueActors(day.getActors())
+                .uniqueActivities(day.getActivities())
+                .completions(day.getCompletions())
+                .averageScore(day.getScoreCount() > 0 ? day.getScoreSum() / day.getScoreCount() : 0.0)
+                .build();
+    }
+
+    /**
+     * The en-US entry of a language map, or the fallback when there is none
+     */
+    private static String label(Map<String, ?> languageMap, String fallback) {
+        Object label = languageMap != null ? languageMap.get("en-US") : null;
+        return label != null ? label.toString() : fallback;
+    }
+
+    /**
+     * A document field that compacted statements keep in the dictionary, read through the
+     * reference the grouping stage picked up with the other fields
+     */
+    private Document interned(Document doc, String refField, String field) {
+        Document value = statementDictionary.lookup(doc.get(refField));
+        return value != null ? value.get(field, Document.class) : null;
+    }
+
+    private ActorReport toActorReport(ActorRollup actor) {
+        return ActorReport.builder()
+                .actorId(actor.getActorId())
+                .actorName(actor.getName() != null ? actor.getName() : actor.getActorId())
+                .actorEmail(actor.getMbox())
+                .totalStatements(actor.getCount())
+                .activitiesCompleted(actor.getCompletions())
+                .activitiesAttempted(actor.getActivitiesAttempted())
+                .averageScore(actor.getAverageScore())
+                .completionRate(actor.getActivitiesAttempted() > 0
+                        ? (actor.getCompletions() * 100.0 / actor.getActivitiesAttempted()) : 0.0)
+                .firstActivity(actor.getFirst())
+                .lastActivity(actor.getLast())
+                .build();
+    }
+
+    private ActivityReport toActivityReport(ActivityRollup activity) {
+        long total = activity.getCount();
+        String activityId = activity.getActivityId();
+
+        return ActivityReport.builder()
+                .activityId(activityId)
+                .activityName(label(definitionRegistry.activityName(activityId), label(activity.getName(), activityId)))
+                .totalStatements(total)
+                .completedCount(activity.getCompletions())
+                .successCount(activity.getSuccesses())
+                .averageScore(activity.getScoreCount() > 0 ? activity.getScoreSum() / activity.getScoreCount() : 0.0)
+                .completionRate(total > 0 ? (activity.getCompletions() * 100.0 / total) : 0.0)
+                .successRate(total > 0 ? (activity.getSuccesses() * 100.0 / total) : 0.0)
+                .firstAttempt(activity.getFirst())
+                .lastAttempt(activity.getLast())
+                .build();
+    }
+
+    /**
+     * Percentiles and equal-width ranges of a score histogram
+     */
+    ScoreDistribution toScoreDistribution(ScoreHistogram scores, int ranges) {
+        return ScoreDistribution.builder()
+                .count(scores.count())
+                .p50(scores.quantile(0.5))
+                .p90(scores.quantile(0.9))
+                .p99(scores.quantile(0.99))
+                .histogram(scores.ranges(ranges).stream()
+                        .map(range -> ScoreDistribution.ScoreRange.builder()
+                                .lower(range.lower())
+                                .upper(range.upper())
+                                .count(range.count())
+                                .build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    /**
+     * Sums verb counts from the rollups and the raw edges into one list, most used first
+     */
+    List<Document> mergeVerbCounts(Iterable<Document> counts) {
+        Map<String, Document> merged = new LinkedHashMap<>();
+        for (Document doc : counts) {
+            merged.merge(doc.getString("_id"), new Document(doc), (existing, next) -> {
+                existing.put("count", longValue(existing, "count") + longValue(next, "count"));
+                if (existing.get("display") == null) existing.put("display", next.get("display"));
+                if (existing.get("verbRef") == null) existing.put("verbRef", next.get("verbRef"));
+                return existing;
+            });
+        }
+        return merged.values().stream()
+                .sorted(Comparator.comparingLong((Document doc) -> longValue(doc, "count")).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private Map<String, Long> countsByKey(List<Document> docs) {
+        return docs.stream()
+                .collect(Collectors.toMap(doc -> doc.getString("_id"), doc -> longValue(doc, "count")));
+    }
+
+    private Document firstResult(Document facets, String facet) {
+        List<Document> results = facets.getList(facet, Document.class);
+        return results == null || results.isEmpty() ? null : results.get(0);
+    }
+
+    private long longValue(Document doc, String key) {
+        Object value = doc.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    private double doubleValue(Document doc, String key) {
+        Object value = doc.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    private record DayRange(LocalDate first, LocalDate last) {
+    }
+
+    private record HourRange(LocalDateTime from, LocalDateTime to) {
+    }
+
+    private record Totals(long actors, long activities) {
+    }
+
+    private LocalDateTime toLocalDateTime(Object value) {
+        if (!(value instanceof Date)) return null;
+        return LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,106 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.dto.StatementRequest;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fingerprints statement content and remembers the fingerprints of recently stored
+ * client-assigned ids, so a retried statement is recognised without querying MongoDB.
+ * Ids that fell out of the cache are resolved against the unique _id index instead.
+ * Ids queued for a write-behind insert are held until the writer stores or drops them.
+ */
+@Component
+public class StatementDeduplicator {
+
+    private static final TypeReference<Map<String, Object>> CONTENT = new TypeReference<>() {
+    };
+
+    private final ObjectMapper canonicalMapper;
+    private final Map<String, String> recent;
+    private final Map<String, String> queued = new ConcurrentHashMap<>();
+
+    public StatementDeduplicator(ObjectMapper objectMapper, LrsProperties properties) {
+        ObjectMapper canonicalMapper = objectMapper.copy()
+                .setDefaultPropertyInclusion(JsonInclude.Value.construct(JsonInclude.Include.NON_NULL, JsonInclude.Include.USE_DEFAULTS));
+        canonicalMapper.setConfig(canonicalMapper.getSerializationConfig()
+                .with(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+                .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS));
+        this.canonicalMapper = canonicalMapper;
+
+        int capacity = properties.getStatements().getRecentIdCacheSize();
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    /**
+     * SHA-256 of the request serialized with sorted keys and without nulls; the id itself
+     * is left out so the same content always yields the same fingerprint
+     */
+    public String fingerprint(StatementRequest request) {
+        Map<String, Object> content = canonicalMapper.convertValue(request, CONTENT);
+        content.remove("id");
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonicalMapper.writeValueAsBytes(content));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint statement", e);
+        }
+    }
+
+    /**
+     * The fingerprint of the statement stored recently or queued under an id, or null for
+     * an id not seen recently
+     */
+    public String known(String id) {
+        String fingerprint = recent.get(id);
+        return fingerprint != null ? fingerprint : queued.get(id);
+    }
+
+    /**
+     * Holds an id for a statement about to be queued, so a retry that arrives before the
+     * write lands is answered from here; returns the fingerprint already held under the
+     * id, or null when this call took it
+     */
+    public String hold(String id, String fingerprint) {
+        return queued.putIfAbsent(id, fingerprint);
+    }
+
+    /**
+     * Lets go of a held id whose statement was not stored, so a retry is written again
+     */
+    public void release(String id) {
+        queued.remove(id);
+    }
+
+    /**
+     * Records the fingerprint of a stored statement; call only once the store has the
+     * statement, so a retry is never answered for a write that may still fail
+     */
+    public void record(String id, String fingerprint) {
+        queued.remove(id);
+        if (fingerprint == null) {
+            recent.remove(id);
+        } else {
+            recent.put(id, fingerprint);
+        }
+    }
+}
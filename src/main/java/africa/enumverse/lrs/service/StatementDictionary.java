@@ -0,0 +1,187 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.model.DictionaryEntry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Interns the descriptive parts of stored statements into the statement_dictionary
+ * collection, where each distinct value is kept once under a small integer key:
+ * <ul>
+ *   <li>the verb display,</li>
+ *   <li>the activity definition,</li>
+ *   <li>the actor and authority identifiers other than id and name.</li>
+ * </ul>
+ * A compacted statement keeps the ids and actor name it is queried and grouped by, and
+ * references the rest through a "ref" field that {@link #expand(Document)} resolves again.
+ * Entries never change, so both caches are read-through and never go stale; their hit and
+ * miss counts are published as the "cache.*" metrics of the "statement_dictionary" cache.
+ */
+@Component
+@Slf4j
+public class StatementDictionary {
+
+    static final String REF = "ref";
+
+    private static final List<String> ACTOR_FIELDS = List.of("mbox", "mboxSha1sum", "openId", "account", "objectType");
+    private static final List<Part> PARTS = List.of(
+            new Part("verb", DictionaryEntry.Kind.VERB, List.of("display")),
+            new Part("object", DictionaryEntry.Kind.ACTIVITY, List.of("definition")),
+            new Part("actor", DictionaryEntry.Kind.ACTOR, ACTOR_FIELDS),
+            new Part("authority", DictionaryEntry.Kind.ACTOR, ACTOR_FIELDS));
+    // Extended JSON keeps the BSON types apart, e.g. an int and a long extension value
+    private static final JsonWriterSettings CANONICAL_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.EXTENDED)
+            .build();
+
+    private final MongoTemplate mongoTemplate;
+    private final Cache<Integer, Document> values;
+    private final Cache<String, Integer> refs;
+
+    public StatementDictionary(MongoTemplate mongoTemplate, LrsProperties properties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        int capacity = properties.getStore().getDictionaryCacheSize();
+        this.values = Caffeine.newBuilder().maximumSize(capacity).recordStats().build();
+        this.refs = Caffeine.newBuilder().maximumSize(capacity).build();
+        CaffeineCacheMetrics.monitor(meterRegistry, values, "statement_dictionary");
+    }
+
+    /**
+     * Moves the interned fields of a statement document about to be written into the
+     * dictionary, leaving a reference in their place
+     */
+    public void compact(Document statement) {
+        for (Part part : PARTS) {
+            Document embedded = statement.get(part.field(), Document.class);
+            if (embedded == null || embedded.containsKey(REF)) continue;
+
+            Document value = new Document();
+            for (String field : part.interned()) {
+                if (embedded.containsKey(field)) {
+                    value.put(field, embedded.remove(field));
+                }
+            }
+            if (!value.isEmpty()) {
+                embedded.put(REF, intern(part.kind(), value));
+            }
+        }
+    }
+
+    /**
+     * Puts the interned fields back into a statement document read from the store; documents
+     * written without compaction are left unchanged
+     */
+    public void expand(Document statement) {
+        for (Part part : PARTS) {
+            Document embedded = statement.get(part.field(), Document.class);
+            if (embedded == null || !embedded.containsKey(REF)) continue;
+
+            Object ref = embedded.remove(REF);
+            Document value = lookup(ref);
+            if (value != null) {
+                embedded.putAll(value);
+            } else {
+                log.warn("Statement {} references missing dictionary entry {}", statement.get("_id"), ref);
+            }
+        }
+    }
+
+    /**
+     * The interned fields stored under a reference, or null when there is no such entry
+     */
+    public Document lookup(Object ref) {
+        if (!(ref instanceof Integer key)) return null;
+        return values.get(key, id -> {
+            DictionaryEntry entry = mongoTemplate.findById(id, DictionaryEntry.class);
+            return entry != null ? entry.getValue() : null;
+        });
+    }
+
+    private int intern(DictionaryEntry.Kind kind, Document value) {
+        return refs.get(fingerprint(kind, value), fingerprint -> store(kind, fingerprint, value));
+    }
+
+    /**
+     * Returns the key of an entry with this fingerprint, adding one under the next free key
+     * when there is none. Inserting fails on a duplicate key when another instance took the
+     * key or stored the same content first, and is retried after looking for that content
+     */
+    private Integer store(DictionaryEntry.Kind kind, String fingerprint, Document value) {
+        Query byFingerprint = Query.query(Criteria.where("fingerprint").is(fingerprint));
+        Query last = new Query().with(Sort.by(Sort.Direction.DESC, "_id")).limit(1);
+
+        while (true) {
+            DictionaryEntry existing = mongoTemplate.findOne(byFingerprint, DictionaryEntry.class);
+            if (existing != null) {
+                values.put(existing.getId(), existing.getValue());
+                return existing.getId();
+            }
+
+            DictionaryEntry previous = mongoTemplate.findOne(last, DictionaryEntry.class);
+            DictionaryEntry entry = DictionaryEntry.builder()
+                    .id(previous != null ? previous.getId() + 1 : 1)
+                    .kind(kind)
+                    .fingerprint(fingerprint)
+                    .value(value)
+                    .build();
+            try {
+                mongoTemplate.insert(entry);
+                values.put(entry.getId(), value);
+                log.debug("Added {} dictionary entry {}", kind, entry.getId());
+                return entry.getId();
+            } catch (DuplicateKeyException e) {
+                log.debug("Dictionary entry {} was taken concurrently, retrying", entry.getId());
+            }
+        }
+    }
+
+    /**
+     * SHA-256 of the kind and the content with keys sorted at every level, so the same
+     * content submitted in another key order maps to the same entry
+     */
+    static String fingerprint(DictionaryEntry.Kind kind, Document value) {
+        String canonical = kind + "\n" + ((Document) canonical(value)).toJson(CANONICAL_JSON);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint dictionary entry", e);
+        }
+    }
+
+    private static Object canonical(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            map.forEach((key, nested) -> sorted.put(String.valueOf(key), canonical(nested)));
+            return new Document(sorted);
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(StatementDictionary::canonical).toList();
+        }
+        return value;
+    }
+
+    private record Part(String field, DictionaryEntry.Kind kind, List<String> interned) {
+    }
+}
@@ -0,0 +1,373 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.exception.IngestionBackpressureException;
+import africa.enumverse.lrs.exception.IngestionBatchTooLargeException;
+import africa.enumverse.lrs.model.Statement;
+import africa.enumverse.lrs.repository.BulkInsertResult;
+import africa.enumverse.lrs.repository.StatementRepository;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for statement ingestion. Requests hand over fully built statements
+ * and return immediately; writer threads drain the queue in micro-batches, flushing when a
+ * batch is full or the linger time has passed. Capacity is reserved up front so a request
+ * is either queued entirely or rejected with backpressure.
+ *
+ * <p>With the write-ahead log enabled, statements are appended to local disk before they
+ * are queued, and segments left behind by a crash are replayed on the next start. Until
+ * that replay has finished {@link #isRecovering()} is true; it stays true when the log
+ * could not be read, until a later start replays the remaining segments.
+ */
+@Service
+@Slf4j
+public class StatementIngestionQueue implements SmartLifecycle {
+
+    private static final long MAX_RETRY_BACKOFF_MS = 5_000;
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private final StatementRepository statementRepository;
+    private final StatementWriteAheadLog writeAheadLog;
+    private final StatementDeduplicator deduplicator;
+    private final LrsProperties.Ingestion settings;
+    private final BlockingQueue<Queued> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacity;
+    private final List<Thread> writers = new ArrayList<>();
+
+    private final Counter rejected;
+    private final Counter dropped;
+    private final DistributionSummary batchSizes;
+    private final Timer flushLatency;
+
+    private volatile boolean running;
+    private volatile boolean recovering;
+    private Thread replayer;
+
+    public StatementIngestionQueue(StatementRepository statementRepository, StatementWriteAheadLog writeAheadLog,
+                                   StatementDeduplicator deduplicator, LrsProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.statementRepository = statementRepository;
+        this.writeAheadLog = writeAheadLog;
+        this.deduplicator = deduplicator;
+        this.settings = properties.getIngestion();
+        this.capacity = new Semaphore(settings.getQueueCapacity());
+
+        Gauge.builder("lrs.ingestion.queue.depth", this, StatementIngestionQueue::depth)
+                .description("Statements accepted but not yet written")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("lrs.ingestion.rejected")
+                .description("Statements rejected because the ingestion queue was full")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("lrs.ingestion.dropped")
+                .description("Queued statements the store rejected, which are not written")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("lrs.ingestion.batch.size")
+                .description("Statements per insertMany issued by the writers")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("lrs.ingestion.flush")
+                .description("Time taken to write one micro-batch")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return settings.getMode() == LrsProperties.Ingestion.Mode.ASYNC;
+    }
+
+    /**
+     * True while statements logged before the last shutdown are still being replayed, or
+     * could not be replayed because the log was unreadable
+     */
+    public boolean isRecovering() {
+        return recovering;
+    }
+
+    /**
+     * Queues all statements or none of them
+     *
+     * @throws IngestionBatchTooLargeException when there are more statements than the queue holds
+     * @throws IngestionBackpressureException when there is not enough room left
+     */
+    public void enqueue(List<Statement> statements) {
+        if (statements.isEmpty()) return;
+
+        if (statements.size() > settings.getQueueCapacity()) {
+            rejected.increment(statements.size());
+            throw new IngestionBatchTooLargeException(statements.size(), settings.getQueueCapacity());
+        }
+
+        if (!capacity.tryAcquire(statements.size())) {
+            rejected.increment(statements.size());
+            throw new IngestionBackpressureException(statements.size(), capacity.availablePermits(),
+                    settings.getRetryAfter());
+        }
+
+        long segment = 0;
+        if (writeAheadLog.isEnabled()) {
+            try {
+                segment = writeAheadLog.append(statements);
+            } catch (IOException e) {
+                capacity.release(statements.size());
+                throw new UncheckedIOException("Could not append statements to the write-ahead log", e);
+            }
+        }
+        for (Statement statement : statements) {
+            queue.add(new Queued(statement, segment));
+        }
+    }
+
+    public int depth() {
+        return settings.getQueueCapacity() - capacity.availablePermits();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (writeAheadLog.isEnabled()) {
+            startReplay();
+        }
+        if (!isEnabled()) return;
+
+        if (writeAheadLog.isEnabled()) {
+            try {
+                writeAheadLog.open();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open the write-ahead log", e);
+            }
+        }
+        for (int i = 0; i < settings.getWriterThreads(); i++) {
+            Thread writer = new Thread(this::drain, "statement-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+        log.info("Started {} statement writers (queue capacity {}, batch size {}, linger {})",
+                settings.getWriterThreads(), settings.getQueueCapacity(), settings.getBatchSize(), settings.getLinger());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        List<Thread> threads = new ArrayList<>(writers);
+        if (replayer != null) {
+            threads.add(replayer);
+        }
+        for (Thread writer : threads) {
+            try {
+                writer.join(SHUTDOWN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        writers.clear();
+        replayer = null;
+        if (depth() > 0) {
+            log.warn("Statement writers stopped with {} statements still queued", depth());
+        }
+        if (writeAheadLog.isEnabled()) {
+            writeAheadLog.close();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Start before and stop after the web server, so no request can enqueue without writers
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drain() {
+        List<Queued> batch = new ArrayList<>(settings.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                if (fill(batch)) {
+                    write(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Blocks briefly for a first statement, then keeps collecting until the batch is full
+     * or the linger time since that first statement has passed
+     */
+    private boolean fill(List<Queued> batch) throws InterruptedException {
+        Queued first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) return false;
+        batch.add(first);
+
+        long deadline = System.nanoTime() + settings.getLinger().toNanos();
+        while (batch.size() < settings.getBatchSize()) {
+            queue.drainTo(batch, settings.getBatchSize() - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= settings.getBatchSize() || remaining <= 0) break;
+
+            Queued next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+        }
+        return true;
+    }
+
+    private void write(List<Queued> batch) throws InterruptedException {
+        List<Statement> statements = batch.stream().map(Queued::statement).toList();
+        BulkInsertResult result = insert(statements);
+        batchSizes.record(batch.size());
+        if (!result.getFailures().isEmpty()) {
+            dropped.increment(result.getFailures().size());
+            log.warn("Dropped {} of {} queued statements rejected by the store: {}",
+                    result.getFailures().size(), batch.size(), result.getFailures());
+        }
+        // Only stored ids answer retries; the client's retry of a dropped statement is written again
+        for (int i = 0; i < statements.size(); i++) {
+            Statement statement = statements.get(i);
+            if (statement.getContentHash() == null) continue;
+            if (result.getFailures().containsKey(i)) {
+                deduplicator.release(statement.getId());
+            } else {
+                deduplicator.record(statement.getId(), statement.getContentHash());
+            }
+        }
+
+        if (writeAheadLog.isEnabled()) {
+            Map<Long, Integer> written = new LinkedHashMap<>();
+            batch.forEach(queued -> written.merge(queued.segment(), 1, Integer::sum));
+            written.forEach(writeAheadLog::acknowledge);
+        }
+        capacity.release(batch.size());
+    }
+
+    /**
+     * Replays segments left by a previous run on a background thread. Statements that
+     * reached MongoDB before the crash come back as duplicate keys and are skipped.
+     */
+    private void startReplay() {
+        List<Long> segments;
+        try {
+            segments = writeAheadLog.segments();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list write-ahead log segments", e);
+        }
+        if (segments.isEmpty()) return;
+
+        recovering = true;
+        replayer = new Thread(() -> replay(segments), "statement-wal-replay");
+        replayer.setDaemon(true);
+        replayer.start();
+        log.info("Replaying {} write-ahead log segments", segments.size());
+    }
+
+    private void replay(List<Long> segments) {
+        boolean unreadable = false;
+        try {
+            for (long segment : segments) {
+                int replayed = 0;
+                try (StatementWriteAheadLog.SegmentReader reader = writeAheadLog.read(segment)) {
+                    List<Statement> batch = reader.next(settings.getBatchSize());
+                    while (!batch.isEmpty()) {
+                        if (!running) return;
+
+                        BulkInsertResult result = insert(batch);
+                        result.getFailures().values().stream()
+                                .filter(error -> !BulkInsertResult.isDuplicateKey(error))
+                                .forEach(error -> {
+                                    dropped.increment();
+                                    log.warn("Dropped replayed statement rejected by the store: {}", error);
+                                });
+                        replayed += result.getInsertedCount();
+                        batch = reader.next(settings.getBatchSize());
+                    }
+                }
+                writeAheadLog.delete(segment);
+                log.info("Replayed {} statements from write-ahead log segment {}", replayed, segment);
+            }
+        } catch (IOException e) {
+            unreadable = true;
+            log.error("Could not replay the write-ahead log, remaining segments are kept for the next start "
+                    + "and health reports RECOVERING until then", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            recovering = unreadable;
+        }
+    }
+
+    /**
+     * Retries whole-batch failures while the store is unreachable, with backoff, holding the
+     * reserved capacity so backpressure builds up while it is down. Any other failure would
+     * recur on every retry, so it fails every statement of the batch instead
+     */
+    private BulkInsertResult insert(List<Statement> statements) throws InterruptedException {
+        long backoff = 100;
+        while (true) {
+            try {
+                return flushLatency.recordCallable(() -> statementRepository.insertUnordered(statements));
+            } catch (Exception e) {
+                if (!isTransient(e)) {
+                    log.error("Failed to write batch of {} statements, dropping it", statements.size(), e);
+                    Map<Integer, String> failures = new LinkedHashMap<>();
+                    for (int i = 0; i < statements.size(); i++) {
+                        failures.put(i, String.valueOf(e.getMessage()));
+                    }
+                    return new BulkInsertResult(0, failures);
+                }
+                log.error("Failed to write batch of {} statements, retrying in {} ms", statements.size(), backoff, e);
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * True for failures to reach the store, as opposed to ones the store reports for the batch
+     */
+    static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessResourceFailureException
+                    || cause instanceof MongoTimeoutException
+                    || cause instanceof MongoSocketException
+                    || cause instanceof SocketException
+                    || cause instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Queued(Statement statement, long segment) {
+    }
+}
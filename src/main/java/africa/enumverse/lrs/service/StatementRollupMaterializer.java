@@ -0,0 +1,464 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.model.RollupState;
+import africa.enumverse.lrs.model.Statement;
+import africa.enumverse.lrs.model.StatementRollup;
+import africa.enumverse.lrs.repository.StatementRepository;
+import africa.enumverse.lrs.sketch.HyperLogLog;
+import africa.enumverse.lrs.sketch.ScoreHistogram;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AddFieldsOperation;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Materializes hourly and daily buckets of the statements into statement_rollups. Every
+ * bucket is recomputed from scratch by an aggregation ending in $merge, so rebuilding any
+ * range is idempotent and picks up statements that arrived late. Day buckets are only
+ * written for days that are complete within the materialized range.
+ *
+ * <p>Distinct actors and activities are additionally sketched with {@link HyperLogLog}
+ * per bucket, and actors per activity in one all-time sketch per activity. Sketches are
+ * built in memory from streamed distinct pairs; re-adding the same pairs leaves them
+ * unchanged, so rebuilds stay idempotent. Scaled scores are kept per bucket as a
+ * {@link ScoreHistogram}, built from streamed (bucket, score) counts.
+ *
+ * <p>The contiguous range of hours materialized so far is tracked in
+ * {@link RollupState#MATERIALIZED}; reports only read buckets inside it. Run the scheduled
+ * job on one instance only.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatementRollupMaterializer {
+
+    private static final String HOUR_FORMAT = "%Y-%m-%dT%H";
+    private static final String DAY_FORMAT = "%Y-%m-%d";
+    private static final int SKETCH_BATCH_SIZE = 500;
+    private static final AggregationOptions AGGREGATION_OPTIONS = AggregationOptions.builder()
+            .allowDiskUse(true)
+            .build();
+
+    private final MongoTemplate mongoTemplate;
+    private final StatementRepository statementRepository;
+    private final LrsProperties properties;
+
+    /**
+     * Extends the materialized range up to the last complete hour, rebuilding the trailing
+     * lookback so statements written late are counted. A first run starts at the oldest
+     * statement; a long backlog is worked off a bounded number of days per run
+     */
+    public synchronized void materializeRecent() {
+        LrsProperties.Rollups settings = properties.getRollups();
+        RollupState coverage = coverage();
+
+        LocalDateTime from;
+        if (coverage == null) {
+            Optional<Statement> oldest = statementRepository.findFirstByOrderByTimestampAsc();
+            if (oldest.isEmpty() || oldest.get().getTimestamp() == null) return;
+            from = oldest.get().getTimestamp().toLocalDate().atStartOfDay();
+        } else {
+            from = coverage.getUntil().minus(settings.getMaterializeLookback());
+            if (from.isBefore(coverage.getSince())) from = coverage.getSince();
+        }
+
+        LocalDateTime to = lastCompleteHour();
+        LocalDateTime limit = from.plusDays(settings.getMaterializeMaxDays()).truncatedTo(ChronoUnit.HOURS);
+        if (to.isAfter(limit)) to = limit;
+        if (from.isBefore(to)) {
+            materialize(from, to);
+        }
+    }
+
+    /**
+     * Rebuilds the buckets of [from, to), widened to whole hours and capped at the last
+     * complete hour, and returns the range of hours that was materialized. Ranges longer
+     * than lrs.rollups.materialize-max-days are rejected: the sketches of every bucket are
+     * built in memory, and the scheduled run waits for this one to finish
+     */
+    public synchronized RollupState materialize(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime hourFrom = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime hourTo = to.truncatedTo(ChronoUnit.HOURS).equals(to)
+                ? to
+                : to.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        LocalDateTime lastCompleteHour = lastCompleteHour();
+        if (hourTo.isAfter(lastCompleteHour)) hourTo = lastCompleteHour;
+        if (!hourFrom.isBefore(hourTo)) {
+            throw new IllegalArgumentException("Nothing to materialize between " + from + " and " + to);
+        }
+        int maxDays = properties.getRollups().getMaterializeMaxDays();
+        if (hourTo.isAfter(hourFrom.plusDays(maxDays))) {
+            throw new IllegalArgumentException("Cannot materialize more than " + maxDays + " days at once");
+        }
+
+        merge(StatementRollup.HOUR, HOUR_FORMAT, hourFrom, hourTo);
+        mergeActivityActors(hourFrom, hourTo);
+        LocalDateTime dayFrom = hourFrom.toLocalDate().atStartOfDay();
+        LocalDateTime dayTo = hourTo.toLocalDate().atStartOfDay();
+        if (dayFrom.isBefore(dayTo)) {
+            merge(StatementRollup.DAY, DAY_FORMAT, dayFrom, dayTo);
+        }
+
+        extendCoverage(hourFrom, hourTo);
+        log.info("Materialized statement rollups from {} to {}", hourFrom, hourTo);
+        return new RollupState(RollupState.MATERIALIZED, hourFrom, hourTo);
+    }
+
+    /**
+     * The contiguous range of materialized hours, or null before the first run
+     */
+    public RollupState coverage() {
+        RollupState state = mongoTemplate.findById(RollupState.MATERIALIZED, RollupState.class);
+        return state != null && state.getSince() != null && state.getUntil() != null ? state : null;
+    }
+
+    public List<StatementRollup> days(LocalDate from, LocalDate to) {
+        return buckets(StatementRollup.DAY, from.toString(), to.toString());
+    }
+
+    /**
+     * Union of the actor and activity sketches of the materialized hours in [from, to),
+     * read from day buckets where whole days fit and from hour buckets for the rest. The
+     * buckets are streamed, so memory stays constant whatever the range
+     */
+    public Sketches sketches(LocalDateTime from, LocalDateTime to) {
+        Sketches union = new Sketches(new HyperLogLog(), new HyperLogLog());
+        forEachBucket(from, to, bucket -> {
+            union.actors().merge(HyperLogLog.fromBytes(bucket.getActorSketch()));
+            union.activities().merge(HyperLogLog.fromBytes(bucket.getActivitySketch()));
+        }, "actorSketch", "activitySketch");
+        return union;
+    }
+
+    /**
+     * Union of the score histograms of the materialized hours in [from, to), read like
+     * {@link #sketches}; null when a bucket was materialized before scores were sketched
+     */
+    public ScoreHistogram scores(LocalDateTime from, LocalDateTime to) {
+        ScoreHistogram union = new ScoreHistogram();
+        AtomicBoolean complete = new AtomicBoolean(true);
+        forEachBucket(from, to, bucket -> {
+            ScoreHistogram scores = ScoreHistogram.fromBytes(bucket.getScoreSketch());
+            if (scores.count() != bucket.getScoreCount()) complete.set(false);
+            union.merge(scores);
+        }, "scoreSketch", "scoreCount");
+        return complete.get() ? union : null;
+    }
+
+    private void forEachBucket(LocalDateTime from, LocalDateTime to, Consumer<StatementRollup> action, String... fields) {
+        LocalDate firstDay = from.toLocalTime().equals(LocalTime.MIDNIGHT) ? from.toLocalDate() : from.toLocalDate().plusDays(1);
+        LocalDate lastDay = to.toLocalDate().minusDays(1);
+
+        if (firstDay.isAfter(lastDay)) {
+            forEachHour(from, to, action, fields);
+        } else {
+            forEach(StatementRollup.DAY, firstDay.toString(), lastDay.toString(), action, fields);
+            forEachHour(from, firstDay.atStartOfDay(), action, fields);
+            forEachHour(lastDay.plusDays(1).atStartOfDay(), to, action, fields);
+        }
+    }
+
+    /**
+     * Estimated number of distinct actors per activity, for the activities that have a sketch
+     */
+    public Map<String, Long> activityActors(Collection<String> activityIds) {
+        if (activityIds.isEmpty()) return Map.of();
+
+        Query query = Query.query(Criteria.where("_id").in(activityIds.stream()
+                .map(id -> StatementRollup.ACTIVITY + ":" + id)
+                .toList()));
+        query.fields().include("actorSketch");
+
+        Map<String, Long> estimates = new HashMap<>();
+        mongoTemplate.find(query, StatementRollup.class).forEach(activity -> estimates.put(
+                activity.getId().substring(StatementRollup.ACTIVITY.length() + 1),
+                HyperLogLog.fromBytes(activity.getActorSketch()).estimate()));
+        return estimates;
+    }
+
+    private void forEachHour(LocalDateTime from, LocalDateTime to, Consumer<StatementRollup> action, String... fields) {
+        if (from.isBefore(to)) {
+            forEach(StatementRollup.HOUR, hourKey(from), hourKey(to.minusHours(1)), action, fields);
+        }
+    }
+
+    private void forEach(String granularity, String from, String to, Consumer<StatementRollup> action, String... fields) {
+        Query query = new Query(Criteria.where("_id").gte(granularity + ":" + from).lte(granularity + ":" + to));
+        query.fields().include(fields);
+        try (Stream<StatementRollup> buckets = mongoTemplate.stream(query, StatementRollup.class)) {
+            buckets.forEach(action);
+        }
+    }
+
+    private String hourKey(LocalDateTime hour) {
+        return String.format("%sT%02d", hour.toLocalDate(), hour.getHour());
+    }
+
+    private List<StatementRollup> buckets(String granularity, String from, String to) {
+        Query query = new Query(Criteria.where("_id").gte(granularity + ":" + from).lte(granularity + ":" + to))
+                .with(Sort.by(Sort.Direction.ASC, "_id"));
+        return mongoTemplate.find(query, StatementRollup.class);
+    }
+
+    /**
+     * Two passes over the window, both written to the same bucket documents: a $merge of the
+     * counters and distinct actors (grouped per actor first, so no per-bucket set is built),
+     * then the sketches and distinct activity counts
+     */
+    private void merge(String granularity, String format, LocalDateTime from, LocalDateTime to) {
+        AggregationExpression bucket = DateOperators.dateOf("timestamp")
+                .withTimezone(DateOperators.Timezone.valueOf(TimeZone.getDefault().getID()))
+                .toString(format);
+
+        TypedAggregation<Statement> counters = Aggregation.newAggregation(Statement.class,
+                        Aggregation.match(Criteria.where("timestamp").gte(from).lt(to)),
+                        Aggregation.project()
+                                .and(bucket).as("bucket")
+                                .and("actor.id").as("actor")
+                                .and("result.completion").as("completion")
+                                .and("result.success").as("success")
+                                .and("result.score.scaled").as("score"),
+                        Aggregation.group("bucket", "actor")
+                                .count().as("count")
+                                .sum(isTrue("completion")).as("completions")
+                                .sum(isTrue("success")).as("successes")
+                                .sum("score").as("scoreSum")
+                                .sum(isPresent("score")).as("scoreCount"),
+                        Aggregation.group("bucket")
+                                .sum("count").as("count")
+                                .sum("completions").as("completions")
+                                .sum("successes").as("successes")
+                                .sum("scoreSum").as("scoreSum")
+                                .sum("scoreCount").as("scoreCount")
+                                .sum(isPresent("_id.actor")).as("actors"),
+                        bucketId(granularity),
+                        into())
+                .withOptions(AGGREGATION_OPTIONS);
+        mongoTemplate.aggregate(counters, Document.class);
+
+        mergeSketches(granularity, bucket, from, to);
+    }
+
+    /**
+     * Sketches the distinct actors and activities and the scores of every bucket in the
+     * window and stores them with the exact distinct activity count
+     */
+    private void mergeSketches(String granularity, AggregationExpression bucket, LocalDateTime from, LocalDateTime to) {
+        Map<String, Distinct> actors = distinctPerBucket(bucket, "actor.id", from, to);
+        Map<String, Distinct> activities = distinctPerBucket(bucket, "object.id", from, to);
+        Map<String, ScoreHistogram> scores = scoresPerBucket(bucket, from, to);
+
+        Set<String> buckets = new HashSet<>(actors.keySet());
+        buckets.addAll(activities.keySet());
+        buckets.addAll(scores.keySet());
+        if (buckets.isEmpty()) return;
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StatementRollup.class);
+        for (String key : buckets) {
+            Update update = new Update().setOnInsert("granularity", granularity);
+            Distinct bucketActors = actors.get(key);
+            if (bucketActors != null) {
+                update.set("actorSketch", bucketActors.sketch.toBytes());
+            }
+            Distinct bucketActivities = activities.get(key);
+            if (bucketActivities != null) {
+                update.set("activitySketch", bucketActivities.sketch.toBytes())
+                        .set("activities", bucketActivities.count);
+            }
+            ScoreHistogram bucketScores = scores.get(key);
+            if (bucketScores != null) {
+                update.set("scoreSketch", bucketScores.toBytes());
+            }
+            bulk.upsert(Query.query(Criteria.where("_id").is(granularity + ":" + key)), update);
+        }
+        bulk.execute();
+    }
+
+    private Map<String, Distinct> distinctPerBucket(AggregationExpression bucket, String field,
+                                                    LocalDateTime from, LocalDateTime to) {
+        TypedAggregation<Statement> pairs = Aggregation.newAggregation(Statement.class,
+                        Aggregation.match(Criteria.where("timestamp").gte(from).lt(to).and(field).ne(null)),
+                        Aggregation.project()
+                                .and(bucket).as("bucket")
+                                .and(field).as("key"),
+                        Aggregation.group("bucket", "key"))
+                .withOptions(AGGREGATION_OPTIONS);
+
+        Map<String, Distinct> distinct = new HashMap<>();
+        try (Stream<Document> stream = mongoTemplate.aggregateStream(pairs, Document.class)) {
+            stream.forEach(pair -> {
+                Document id = pair.get("_id", Document.class);
+                Distinct bucketDistinct = distinct.computeIfAbsent(id.getString("bucket"), key -> new Distinct());
+                bucketDistinct.sketch.add(String.valueOf(id.get("key")));
+                bucketDistinct.count++;
+            });
+        }
+        return distinct;
+    }
+
+    /**
+     * Score histograms per bucket, from the number of statements per (bucket, score)
+     */
+    private Map<String, ScoreHistogram> scoresPerBucket(AggregationExpression bucket, LocalDateTime from, LocalDateTime to) {
+        TypedAggregation<Statement> counts = Aggregation.newAggregation(Statement.class,
+                        Aggregation.match(Criteria.where("timestamp").gte(from).lt(to)
+                                .and("result.score.scaled").ne(null)),
+                        Aggregation.project()
+                                .and(bucket).as("bucket")
+                                .and("result.score.scaled").as("score"),
+                        Aggregation.group("bucket", "score").count().as("count"))
+                .withOptions(AGGREGATION_OPTIONS);
+
+        Map<String, ScoreHistogram> scores = new HashMap<>();
+        try (Stream<Document> stream = mongoTemplate.aggregateStream(counts, Document.class)) {
+            stream.forEach(count -> {
+                Document id = count.get("_id", Document.class);
+                scores.computeIfAbsent(id.getString("bucket"), key -> new ScoreHistogram())
+                        .add(id.get("score", Number.class).doubleValue(), count.get("count", Number.class).longValue());
+            });
+        }
+        return scores;
+    }
+
+    /**
+     * Unions the actors seen per activity in the window into the all-time activity sketches.
+     * Pairs arrive sorted by activity, so only one batch of sketches is held at a time
+     */
+    private void mergeActivityActors(LocalDateTime from, LocalDateTime to) {
+        TypedAggregation<Statement> pairs = Aggregation.newAggregation(Statement.class,
+                        Aggregation.match(Criteria.where("timestamp").gte(from).lt(to)
+                                .and("object.id").ne(null).and("actor.id").ne(null)),
+                        Aggregation.project()
+                                .and("object.id").as("activity")
+                                .and("actor.id").as("actor"),
+                        Aggregation.group("activity", "actor"),
+                        Aggregation.sort(Sort.Direction.ASC, "_id.activity"))
+                .withOptions(AGGREGATION_OPTIONS);
+
+        Map<String, HyperLogLog> batch = new LinkedHashMap<>();
+        try (Stream<Document> stream = mongoTemplate.aggregateStream(pairs, Document.class)) {
+            stream.forEach(pair -> {
+                Document id = pair.get("_id", Document.class);
+                String activity = String.valueOf(id.get("activity"));
+                if (!batch.containsKey(activity) && batch.size() == SKETCH_BATCH_SIZE) {
+                    unionActivitySketches(batch);
+                    batch.clear();
+                }
+                batch.computeIfAbsent(activity, key -> new HyperLogLog()).add(String.valueOf(id.get("actor")));
+            });
+        }
+        unionActivitySketches(batch);
+    }
+
+    private void unionActivitySketches(Map<String, HyperLogLog> sketches) {
+        if (sketches.isEmpty()) return;
+
+        Map<String, HyperLogLog> byId = new HashMap<>();
+        sketches.forEach((activity, sketch) -> byId.put(StatementRollup.ACTIVITY + ":" + activity, sketch));
+        Query stored = Query.query(Criteria.where("_id").in(byId.keySet()));
+        stored.fields().include("actorSketch");
+        mongoTemplate.find(stored, StatementRollup.class)
+                .forEach(existing -> byId.get(existing.getId()).merge(HyperLogLog.fromBytes(existing.getActorSketch())));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StatementRollup.class);
+        byId.forEach((id, sketch) -> bulk.upsert(Query.query(Criteria.where("_id").is(id)), new Update()
+                .setOnInsert("granularity", StatementRollup.ACTIVITY)
+                .set("actorSketch", sketch.toBytes())));
+        bulk.execute();
+    }
+
+    private AddFieldsOperation bucketId(String granularity) {
+        return Aggregation.addFields()
+                .addFieldWithValue("_id", StringOperators.Concat.stringValue(granularity + ":").concatValueOf("_id"))
+                .addFieldWithValue("granularity", granularity)
+                .build();
+    }
+
+    private MergeOperation into() {
+        return Aggregation.merge()
+                .intoCollection(mongoTemplate.getCollectionName(StatementRollup.class))
+                .on("_id")
+                .whenMatched(MergeOperation.WhenDocumentsMatch.mergeDocuments())
+                .whenDocumentsDontMatch(MergeOperation.WhenDocumentsDontMatch.insertNewDocument())
+                .build();
+    }
+
+    /**
+     * Grows the tracked range when the materialized hours touch it; a disjoint range is
+     * kept in the collection but not used by reports until the gap is materialized
+     */
+    private void extendCoverage(LocalDateTime from, LocalDateTime to) {
+        RollupState coverage = coverage();
+        if (coverage == null) {
+            mongoTemplate.save(new RollupState(RollupState.MATERIALIZED, from, to));
+        } else if (!from.isAfter(coverage.getUntil()) && !to.isBefore(coverage.getSince())) {
+            if (from.isBefore(coverage.getSince())) coverage.setSince(from);
+            if (to.isAfter(coverage.getUntil())) coverage.setUntil(to);
+            mongoTemplate.save(coverage);
+        } else {
+            log.info("Materialized range {} to {} is disjoint from the covered range {} to {}",
+                    from, to, coverage.getSince(), coverage.getUntil());
+        }
+    }
+
+    private LocalDateTime lastCompleteHour() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+    }
+
+    /**
+     * 1 for a value that is neither null nor missing; $ne against null would count missing fields
+     */
+    private AggregationExpression isPresent(String field) {
+        return ConditionalOperators.when(Criteria.where(field).gt(null))
+                .then(1)
+                .otherwise(0);
+    }
+
+    private AggregationExpression isTrue(String field) {
+        return ConditionalOperators.when(ComparisonOperators.valueOf(field).equalToValue(true))
+                .then(1)
+                .otherwise(0);
+    }
+
+    public record Sketches(HyperLogLog actors, HyperLogLog activities) {
+    }
+
+    private static class Distinct {
+        private final HyperLogLog sketch = new HyperLogLog();
+        private long count;
+    }
+}
@@ -0,0 +1,613 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.dto.StatementResponse;
+import africa.enumverse.lrs.model.*;
+import africa.enumverse.lrs.sketch.ScoreHistogram;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Maintains incremental rollups of stored statements: per-day counters, per-day verb
+ * counts and all-time per-activity and per-actor counters. Every batch is folded in
+ * memory first and then applied with one unordered bulk of $inc upserts per collection.
+ * Distinct counts (actors and activities per day, activities per actor) are driven by
+ * marker documents: a marker that did not exist before increments its counter. Actor and
+ * activity scores are also counted per {@link ScoreHistogram} bin, for percentiles.
+ *
+ * <p>Every statement stored since the rollups went live ({@link RollupState#getLiveFrom()})
+ * is counted as it arrives, back-dated ones included. Statements stored before that are
+ * covered from {@link RollupState#getSince()} on; {@link #backfill()} extends that coverage
+ * backwards over older statements.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatementRollupService {
+
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final LrsProperties properties;
+
+    private volatile LocalDateTime since;
+    private volatile LocalDateTime liveFrom;
+    private volatile boolean complete;
+
+    /**
+     * Rollups are counted from and backfilled out of MongoDB, so they are off with the off-heap store
+     */
+    public boolean isEnabled() {
+        return properties.getRollups().isEnabled() && properties.getStore().getEngine() == LrsProperties.Store.Engine.MONGO;
+    }
+
+    /**
+     * Counts newly stored statements, including ones timestamped before the covered range;
+     * the backfill skips those, as they were stored after the rollups went live
+     */
+    public void record(List<StatementResponse> statements) {
+        if (!isEnabled() || statements.isEmpty()) return;
+
+        List<Fact> facts = statements.stream()
+                .map(Fact::of)
+                .filter(fact -> fact.timestamp() != null)
+                .toList();
+        if (facts.isEmpty()) return;
+
+        ensureSince(facts.stream()
+                .map(Fact::timestamp)
+                .min(LocalDateTime::compareTo)
+                .orElseThrow());
+        apply(facts);
+    }
+
+    /**
+     * Takes a deleted statement back out of the rollups, if it was counted; call once it is
+     * gone from the store. Counters are decremented; distinct counts and first and last
+     * times are settled against the statements still stored, since others may share them,
+     * and actors and activities left without statements are dropped
+     */
+    public void remove(StatementResponse statement) {
+        if (!isEnabled()) return;
+
+        Fact fact = Fact.of(statement);
+        LocalDateTime coveredFrom = coveredSince();
+        LocalDateTime countedLive = liveFrom;
+        boolean counted = fact.timestamp() != null && coveredFrom != null
+                && (!fact.timestamp().isBefore(coveredFrom)
+                || countedLive != null && statement.getStored() != null && !statement.getStored().isBefore(countedLive));
+        if (!counted) return;
+
+        String day = fact.timestamp().toLocalDate().toString();
+        LocalDateTime dayStart = fact.timestamp().toLocalDate().atStartOfDay();
+        Criteria sameDay = Criteria.where("timestamp").gte(dayStart).lt(dayStart.plusDays(1));
+
+        Update daily = decrements(fact).inc("successes", fact.success() ? -1 : 0);
+        if (fact.activityId() != null
+                && releaseMarker("day|" + day + "|activity|" + fact.activityId(),
+                        Criteria.where("object.id").is(fact.activityId()).andOperator(sameDay))) {
+            daily.inc("uniqueActivities", -1);
+        }
+        if (fact.actorId() != null
+                && releaseMarker("day|" + day + "|actor|" + fact.actorId(),
+                        Criteria.where("actor.id").is(fact.actorId()).andOperator(sameDay))) {
+            daily.inc("uniqueActors", -1);
+        }
+        mongoTemplate.updateFirst(byId(day), daily, DailyRollup.class);
+
+        if (fact.verbId() != null) {
+            mongoTemplate.updateFirst(byId(day + "|" + fact.verbId()), new Update().inc("count", -1), VerbDailyRollup.class);
+        }
+        if (fact.activityId() != null) {
+            Criteria byActivity = Criteria.where("object.id").is(fact.activityId());
+            Update activity = withScoreBin(decrements(fact), fact).inc("successes", fact.success() ? -1 : 0);
+            settle(fact.activityId(), activity, byActivity, ActivityRollup.class);
+        }
+        if (fact.actorId() != null) {
+            Criteria byActor = Criteria.where("actor.id").is(fact.actorId());
+            Update actor = withScoreBin(decrements(fact), fact);
+            if (fact.activityId() != null && releaseMarker("actor|" + fact.actorId() + "|activity|" + fact.activityId(),
+                    Criteria.where("actor.id").is(fact.actorId()).and("object.id").is(fact.activityId()))) {
+                actor.inc("activitiesAttempted", -1);
+            }
+            if (settle(fact.actorId(), actor, byActor, ActorRollup.class)) {
+                updateAverageScores(List.of(fact.actorId()));
+            }
+        }
+    }
+
+    /**
+     * Counts statements older than the covered range, one day at a time from the newest
+     * backwards. "since" moves down after each day, so an interrupted backfill resumes
+     * where it stopped. Run it on one instance only
+     */
+    public void backfill() {
+        if (!isEnabled()) return;
+
+        LocalDateTime coveredFrom = ensureSince(LocalDateTime.now());
+        Statement latest;
+        while ((latest = mongoTemplate.findOne(Query.query(uncounted(null, coveredFrom))
+                .with(Sort.by(Sort.Direction.DESC, "timestamp")), Statement.class)) != null) {
+            LocalDateTime dayStart = latest.getTimestamp().toLocalDate().atStartOfDay();
+            Query day = new Query(uncounted(dayStart, coveredFrom))
+                    .cursorBatchSize(BACKFILL_BATCH_SIZE);
+
+            long counted = 0;
+            try (Stream<Statement> statements = mongoTemplate.stream(day, Statement.class)) {
+                List<Fact> batch = new ArrayList<>(BACKFILL_BATCH_SIZE);
+                for (Iterator<Statement> it = statements.iterator(); it.hasNext(); ) {
+                    batch.add(Fact.of(it.next()));
+                    if (batch.size() == BACKFILL_BATCH_SIZE || !it.hasNext()) {
+                        apply(batch);
+                        counted += batch.size();
+                        batch = new ArrayList<>(BACKFILL_BATCH_SIZE);
+                    }
+                }
+            }
+
+            mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(RollupState.LIVE).and("since").is(coveredFrom)),
+                    Update.update("since", dayStart), RollupState.class);
+            since = dayStart;
+            coveredFrom = dayStart;
+            log.info("Backfilled rollups for {} ({} statements)", dayStart.toLocalDate(), counted);
+        }
+        complete = true;
+    }
+
+    /**
+     * Start of the range counted in the rollups, or null when nothing has been counted yet
+     */
+    public LocalDateTime coveredSince() {
+        if (!isEnabled()) return null;
+
+        LocalDateTime known = since;
+        if (known == null) {
+            RollupState state = mongoTemplate.findById(RollupState.LIVE, RollupState.class);
+            if (state == null) return null;
+            liveFrom = state.getLiveFrom();
+            known = state.getSince();
+            since = known;
+        }
+        return known;
+    }
+
+    /**
+     * First day whose statements are all counted in the rollups
+     */
+    public LocalDate firstCoveredDay() {
+        LocalDateTime coveredFrom = coveredSince();
+        if (coveredFrom == null) return null;
+        return coveredFrom.toLocalTime().equals(LocalTime.MIDNIGHT)
+                ? coveredFrom.toLocalDate()
+                : coveredFrom.toLocalDate().plusDays(1);
+    }
+
+    /**
+     * True once every stored statement is counted, so all-time rollups can replace raw scans
+     */
+    public boolean isComplete() {
+        if (complete) return true;
+
+        LocalDateTime coveredFrom = coveredSince();
+        complete = coveredFrom != null && !mongoTemplate.exists(Query.query(uncounted(null, coveredFrom)), Statement.class);
+        return complete;
+    }
+
+    public List<DailyRollup> days(LocalDate from, LocalDate to) {
+        Query query = new Query(Criteria.where("_id").gte(from.toString()).lte(to.toString()))
+                .with(Sort.by(Sort.Direction.ASC, "_id"));
+        return mongoTemplate.find(query, DailyRollup.class);
+    }
+
+    /**
+     * Verb counts summed over a day range, shaped like the raw verb breakdown stage output
+     */
+    public List<Document> verbCounts(LocalDate from, LocalDate to) {
+        TypedAggregation<VerbDailyRollup> aggregation = Aggregation.newAggregation(VerbDailyRollup.class,
+                Aggregation.match(Criteria.where("day").gte(from.toString()).lte(to.toString())),
+                Aggregation.group("verbId")
+                        .sum("count").as("count")
+                        .first("display").as("display"));
+        return mongoTemplate.aggregate(aggregation, Document.class).getMappedResults();
+    }
+
+    public List<ActorRollup> topActors(int limit) {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "averageScore")).limit(limit);
+        return mongoTemplate.find(query, ActorRollup.class);
+    }
+
+    public List<ActivityRollup> topActivities(int limit) {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "count")).limit(limit);
+        return mongoTemplate.find(query, ActivityRollup.class);
+    }
+
+    public Optional<ActorRollup> actor(String actorId) {
+        return Optional.ofNullable(mongoTemplate.findById(actorId, ActorRollup.class));
+    }
+
+    public Optional<ActivityRollup> activity(String activityId) {
+        return Optional.ofNullable(mongoTemplate.findById(activityId, ActivityRollup.class));
+    }
+
+    public List<ActorRollup> actors(Collection<String> actorIds) {
+        return mongoTemplate.find(Query.query(Criteria.where("_id").in(actorIds)), ActorRollup.class);
+    }
+
+    public List<ActivityRollup> activities(Collection<String> activityIds) {
+        return mongoTemplate.find(Query.query(Criteria.where("_id").in(activityIds)), ActivityRollup.class);
+    }
+
+    /**
+     * Loads the coverage, creating it on first use. "liveFrom" is also set on coverage
+     * created before it existed, as live counting now covers every statement stored from here on
+     */
+    private LocalDateTime ensureSince(LocalDateTime candidate) {
+        LocalDateTime known = since;
+        if (known != null && liveFrom != null) return known;
+
+        LocalDateTime now = LocalDateTime.now();
+        RollupState state = mongoTemplate.findAndModify(byId(RollupState.LIVE),
+                new Update().setOnInsert("since", candidate).setOnInsert("liveFrom", now),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                RollupState.class);
+        if (state != null && state.getLiveFrom() == null) {
+            state = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(RollupState.LIVE).and("liveFrom").exists(false)),
+                    Update.update("liveFrom", now),
+                    FindAndModifyOptions.options().returnNew(true),
+                    RollupState.class);
+            if (state == null) state = mongoTemplate.findById(RollupState.LIVE, RollupState.class);
+        }
+        liveFrom = state != null ? state.getLiveFrom() : now;
+        since = state != null ? state.getSince() : candidate;
+        return since;
+    }
+
+    /**
+     * Statements timestamped in [from, before) that were not counted as they arrived; from
+     * may be null for no lower bound
+     */
+    private Criteria uncounted(LocalDateTime from, LocalDateTime before) {
+        Criteria timestamp = Criteria.where("timestamp").lt(before);
+        if (from != null) timestamp.gte(from);
+        LocalDateTime countedFrom = liveFrom;
+        return countedFrom != null ? timestamp.and("stored").lt(countedFrom) : timestamp;
+    }
+
+    private void apply(List<Fact> facts) {
+        if (facts.isEmpty()) return;
+
+        Map<String, DailyRollup> days = new HashMap<>();
+        Map<String, VerbDailyRollup> verbs = new HashMap<>();
+        Map<String, ActivityRollup> activities = new HashMap<>();
+        Map<String, ActorRollup> actors = new HashMap<>();
+        Map<String, DistinctCount> markers = new LinkedHashMap<>();
+
+        for (Fact fact : facts) {
+            String day = fact.timestamp().toLocalDate().toString();
+            DailyRollup daily = days.computeIfAbsent(day, key -> DailyRollup.builder().day(key).build());
+            daily.setCount(daily.getCount() + 1);
+            if (fact.completed()) daily.setCompletions(daily.getCompletions() + 1);
+            if (fact.success()) daily.setSuccesses(daily.getSuccesses() + 1);
+            if (fact.score() != null) {
+                daily.setScoreSum(daily.getScoreSum() + fact.score());
+                daily.setScoreCount(daily.getScoreCount() + 1);
+            }
+
+            if (fact.verbId() != null) {
+                VerbDailyRollup verb = verbs.computeIfAbsent(day + "|" + fact.verbId(), key -> VerbDailyRollup.builder()
+                        .id(key).day(day).verbId(fact.verbId()).build());
+                verb.setCount(verb.getCount() + 1);
+                if (fact.verbDisplay() != null) verb.setDisplay(fact.verbDisplay());
+            }
+
+            if (fact.activityId() != null) {
+                ActivityRollup activity = activities.computeIfAbsent(fact.activityId(), key -> ActivityRollup.builder()
+                        .activityId(key).first(fact.timestamp()).last(fact.timestamp()).build());
+                activity.setCount(activity.getCount() + 1);
+                if (fact.completed()) activity.setCompletions(activity.getCompletions() + 1);
+                if (fact.success()) activity.setSuccesses(activity.getSuccesses() + 1);
+                if (fact.score() != null) {
+                    activity.setScoreSum(activity.getScoreSum() + fact.score());
+                    activity.setScoreCount(activity.getScoreCount() + 1);
+                    activity.getScoreBins().merge(scoreBin(fact.score()), 1L, Long::sum);
+                }
+                if (fact.activityName() != null) activity.setName(fact.activityName());
+                if (fact.timestamp().isBefore(activity.getFirst())) activity.setFirst(fact.timestamp());
+                if (fact.timestamp().isAfter(activity.getLast())) activity.setLast(fact.timestamp());
+
+                markers.putIfAbsent("day|" + day + "|activity|" + fact.activityId(), new DistinctCount(
+                        DailyRollup.class, day, "uniqueActivities", fact.timestamp().toLocalDate(),
+                        () -> daily.setUniqueActivities(daily.getUniqueActivities() + 1)));
+            }
+
+            if (fact.actorId() != null) {
+                ActorRollup actor = actors.computeIfAbsent(fact.actorId(), key -> ActorRollup.builder()
+                        .actorId(key).first(fact.timestamp()).last(fact.timestamp()).build());
+                actor.setCount(actor.getCount() + 1);
+                if (fact.completed()) actor.setCompletions(actor.getCompletions() + 1);
+                if (fact.score() != null) {
+                    actor.setScoreSum(actor.getScoreSum() + fact.score());
+                    actor.setScoreCount(actor.getScoreCount() + 1);
+                    actor.getScoreBins().merge(scoreBin(fact.score()), 1L, Long::sum);
+                }
+                if (fact.actorName() != null) actor.setName(fact.actorName());
+                if (fact.mbox() != null) actor.setMbox(fact.mbox());
+                if (fact.timestamp().isBefore(actor.getFirst())) actor.setFirst(fact.timestamp());
+                if (fact.timestamp().isAfter(actor.getLast())) actor.setLast(fact.timestamp());
+
+                markers.putIfAbsent("day|" + day + "|actor|" + fact.actorId(), new DistinctCount(
+                        DailyRollup.class, day, "uniqueActors", fact.timestamp().toLocalDate(),
+                        () -> daily.setUniqueActors(daily.getUniqueActors() + 1)));
+                if (fact.activityId() != null) {
+                    markers.putIfAbsent("actor|" + fact.actorId() + "|activity|" + fact.activityId(), new DistinctCount(
+                            ActorRollup.class, fact.actorId(), "activitiesAttempted", null,
+                            () -> actor.setActivitiesAttempted(actor.getActivitiesAttempted() + 1)));
+                }
+            }
+        }
+
+        Map<String, DistinctCount> counted = countNewMarkers(markers);
+        writeDays(days.values());
+        writeVerbs(verbs.values());
+        writeActivities(activities.values());
+        writeActors(actors.values());
+        insertMarkers(counted);
+    }
+
+    /**
+     * Runs the counter increment of every marker not stored yet, and returns those markers
+     * for insertion once the counters are written. A crash in between leaves a counted
+     * marker missing, so the next statement counts it again: distinct counts can come out
+     * one too high, but are never lost
+     */
+    private Map<String, DistinctCount> countNewMarkers(Map<String, DistinctCount> markers) {
+        if (markers.isEmpty()) return markers;
+
+        Map<String, DistinctCount> counted = new LinkedHashMap<>(markers);
+        mongoTemplate.find(Query.query(Criteria.where("_id").in(markers.keySet())), RollupMarker.class)
+                .forEach(marker -> counted.remove(marker.getId()));
+        counted.values().forEach(marker -> marker.count().run());
+        return counted;
+    }
+
+    /**
+     * Inserts markers whose counters were incremented. One that another writer inserted in
+     * the meantime was counted by both, so its increment is taken back
+     */
+    private void insertMarkers(Map<String, DistinctCount> counted) {
+        if (counted.isEmpty()) return;
+
+        List<String> keys = new ArrayList<>(counted.keySet());
+        LocalDateTime now = LocalDateTime.now();
+        Duration ttl = properties.getRollups().getDayMarkerTtl();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RollupMarker.class);
+        keys.forEach(key -> bulk.insert(new RollupMarker(key, counted.get(key).expiresAt(now, ttl))));
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            e.getErrors().forEach(error -> {
+                if (error.getCode() != 11000) throw e;
+                DistinctCount marker = counted.get(keys.get(error.getIndex()));
+                mongoTemplate.updateFirst(byId(marker.rollupId()), new Update().inc(marker.field(), -1), marker.rollup());
+            });
+        }
+    }
+
+    private void writeDays(Collection<DailyRollup> days) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyRollup.class);
+        days.forEach(day -> bulk.upsert(byId(day.getDay()), new Update()
+                .inc("count", day.getCount())
+                .inc("completions", day.getCompletions())
+                .inc("successes", day.getSuccesses())
+                .inc("scoreSum", day.getScoreSum())
+                .inc("scoreCount", day.getScoreCount())
+                .inc("uniqueActors", day.getUniqueActors())
+                .inc("uniqueActivities", day.getUniqueActivities())));
+        execute(bulk, days);
+    }
+
+    private void writeVerbs(Collection<VerbDailyRollup> verbs) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, VerbDailyRollup.class);
+        verbs.forEach(verb -> {
+            Update update = new Update()
+                    .setOnInsert("day", verb.getDay())
+                    .setOnInsert("verbId", verb.getVerbId())
+                    .inc("count", verb.getCount());
+            if (verb.getDisplay() != null) update.set("display", verb.getDisplay());
+            bulk.upsert(byId(verb.getId()), update);
+        });
+        execute(bulk, verbs);
+    }
+
+    private void writeActivities(Collection<ActivityRollup> activities) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityRollup.class);
+        activities.forEach(activity -> {
+            Update update = new Update()
+                    .inc("count", activity.getCount())
+                    .inc("completions", activity.getCompletions())
+                    .inc("successes", activity.getSuccesses())
+                    .inc("scoreSum", activity.getScoreSum())
+                    .inc("scoreCount", activity.getScoreCount())
+                    .min("first", activity.getFirst())
+                    .max("last", activity.getLast());
+            activity.getScoreBins().forEach((bin, count) -> update.inc("scoreBins." + bin, count));
+            if (activity.getName() != null) update.set("name", activity.getName());
+            bulk.upsert(byId(activity.getActivityId()), update);
+        });
+        execute(bulk, activities);
+    }
+
+    private void writeActors(Collection<ActorRollup> actors) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActorRollup.class);
+        actors.forEach(actor -> {
+            Update update = new Update()
+                    .inc("count", actor.getCount())
+                    .inc("completions", actor.getCompletions())
+                    .inc("scoreSum", actor.getScoreSum())
+                    .inc("scoreCount", actor.getScoreCount())
+                    .inc("activitiesAttempted", actor.getActivitiesAttempted())
+                    .min("first", actor.getFirst())
+                    .max("last", actor.getLast());
+            actor.getScoreBins().forEach((bin, count) -> update.inc("scoreBins." + bin, count));
+            if (actor.getName() != null) update.set("name", actor.getName());
+            if (actor.getMbox() != null) update.set("mbox", actor.getMbox());
+            bulk.upsert(byId(actor.getActorId()), update);
+        });
+        if (!execute(bulk, actors)) return;
+
+        updateAverageScores(actors.stream().map(ActorRollup::getActorId).collect(Collectors.toList()));
+    }
+
+    /**
+     * Recomputes the indexed average from the updated sums in one pass over the touched actors
+     */
+    private void updateAverageScores(List<String> actorIds) {
+        AggregationUpdate average = AggregationUpdate.update()
+                .set("averageScore").toValue(ConditionalOperators.when(Criteria.where("scoreCount").gt(0))
+                        .then(ArithmeticOperators.valueOf("scoreSum").divideBy("scoreCount"))
+                        .otherwise(0.0));
+        mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(actorIds)), average, ActorRollup.class);
+    }
+
+    /**
+     * Decrements of the counters a statement added to a daily, actor or activity rollup
+     */
+    private Update decrements(Fact fact) {
+        Update update = new Update()
+                .inc("count", -1)
+                .inc("completions", fact.completed() ? -1 : 0);
+        if (fact.score() != null) update.inc("scoreSum", -fact.score()).inc("scoreCount", -1);
+        return update;
+    }
+
+    private Update withScoreBin(Update update, Fact fact) {
+        if (fact.score() != null) update.inc("scoreBins." + scoreBin(fact.score()), -1);
+        return update;
+    }
+
+    /**
+     * Removes a distinct-count marker once no stored statement matches it any more, and
+     * tells whether its counter is to be decremented
+     */
+    private boolean releaseMarker(String key, Criteria remaining) {
+        if (mongoTemplate.exists(Query.query(remaining), Statement.class)) return false;
+        return mongoTemplate.remove(byId(key), RollupMarker.class).getDeletedCount() > 0;
+    }
+
+    /**
+     * Applies the decrements to an actor or activity rollup and resets its first and last
+     * times from the statements left, or drops it when there are none; true when it is kept
+     */
+    private boolean settle(String id, Update update, Criteria statements, Class<?> rollup) {
+        Statement first = mongoTemplate.findOne(Query.query(statements)
+                .with(Sort.by(Sort.Direction.ASC, "timestamp")).limit(1), Statement.class);
+        if (first == null) {
+            mongoTemplate.remove(byId(id), rollup);
+            return false;
+        }
+        Statement last = mongoTemplate.findOne(Query.query(statements)
+                .with(Sort.by(Sort.Direction.DESC, "timestamp")).limit(1), Statement.class);
+        update.set("first", first.getTimestamp()).set("last", last != null ? last.getTimestamp() : first.getTimestamp());
+        mongoTemplate.updateFirst(byId(id), update, rollup);
+        return true;
+    }
+
+    private boolean execute(BulkOperations bulk, Collection<?> updates) {
+        if (updates.isEmpty()) return false;
+        bulk.execute();
+        return true;
+    }
+
+    private String scoreBin(double score) {
+        return String.valueOf(ScoreHistogram.bin(score));
+    }
+
+    private Query byId(String id) {
+        return Query.query(Criteria.where("_id").is(id));
+    }
+
+    /**
+     * A distinct counter behind a marker: the rollup field it increments, the day it is
+     * scoped to (null when it is not), and the in-memory increment applied before the write
+     */
+    record DistinctCount(Class<?> rollup, String rollupId, String field, LocalDate day, Runnable count) {
+
+        /**
+         * Day-scoped markers are kept for the TTL past their day, or past now while a
+         * backfill is still counting that day; others are kept for good
+         */
+        LocalDateTime expiresAt(LocalDateTime now, Duration ttl) {
+            if (day == null) return null;
+            LocalDateTime dayEnd = day.plusDays(1).atStartOfDay();
+            return (dayEnd.isAfter(now) ? dayEnd : now).plus(ttl);
+        }
+    }
+
+    /**
+     * The parts of a statement the rollups count
+     */
+    record Fact(LocalDateTime timestamp, String verbId, Map<String, String> verbDisplay,
+                String activityId, Map<String, String> activityName,
+                String actorId, String actorName, String mbox,
+                boolean completed, boolean success, Double score) {
+
+        static Fact of(StatementResponse statement) {
+            return new Fact(statement.getTimestamp(),
+                    statement.getVerb() != null ? statement.getVerb().getId() : null,
+                    statement.getVerb() != null ? statement.getVerb().getDisplay() : null,
+                    statement.getObject() != null ? statement.getObject().getId() : null,
+                    statement.getObject() != null && statement.getObject().getDefinition() != null
+                            ? statement.getObject().getDefinition().getName() : null,
+                    statement.getActor() != null ? statement.getActor().getId() : null,
+                    statement.getActor() != null ? statement.getActor().getName() : null,
+                    statement.getActor() != null ? statement.getActor().getMbox() : null,
+                    statement.getResult() != null && Boolean.TRUE.equals(statement.getResult().getCompletion()),
+                    statement.getResult() != null && Boolean.TRUE.equals(statement.getResult().getSuccess()),
+                    statement.getResult() != null && statement.getResult().getScore() != null
+                            && statement.getResult().getScore().getScaled() != null
+                            ? statement.getResult().getScore().getScaled().doubleValue() : null);
+        }
+
+        static Fact of(Statement statement) {
+            return new Fact(statement.getTimestamp(),
+                    statement.getVerb() != null ? statement.getVerb().getId() : null,
+                    statement.getVerb() != null ? statement.getVerb().getDisplay() : null,
+                    statement.getObject() != null ? statement.getObject().getId() : null,
+                    statement.getObject() != null && statement.getObject().getDefinition() != null
+                            ? statement.getObject().getDefinition().getName() : null,
+                    statement.getActor() != null ? statement.getActor().getId() : null,
+                    statement.getActor() != null ? statement.getActor().getName() : null,
+                    statement.getActor() != null ? statement.getActor().getMbox() : null,
+                    statement.getResult() != null && Boolean.TRUE.equals(statement.getResult().getCompletion()),
+                    statement.getResult() != null && Boolean.TRUE.equals(statement.getResult().getSuccess()),
+                    statement.getResult() != null && statement.getResult().getScore() != null
+                            && statement.getResult().getScore().getScaled() != null
+                            ? statement.getResult().getScore().getScaled().doubleValue() : null);
+        }
+    }
+}
@@ -1,47 +1,228 @@
 package africa.enumverse.lrs.service;
 
+import africa.enumverse.lrs.config.LrsProperties;
 import africa.enumverse.lrs.dto.*;
+import africa.enumverse.lrs.exception.StatementConflictException;
 import africa.enumverse.lrs.model.*;
+import africa.enumverse.lrs.repository.BulkInsertResult;
+import africa.enumverse.lrs.repository.StatementCursor;
+import africa.enumverse.lrs.repository.StatementFilter;
 import africa.enumverse.lrs.repository.StatementRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class StatementService {
 
     private final StatementRepository statementRepository;
+    private final StatementIngestionQueue ingestionQueue;
+    private final StatementDeduplicator deduplicator;
+    private final EventPublisherService eventPublisherService;
+    private final LrsProperties properties;
+    private final ReportCache reportCache;
+    private final DistributionSummary batchSizes;
+    private final Counter ingestedSingle;
+    private final Counter ingestedBatch;
+
+    public StatementService(StatementRepository statementRepository, StatementIngestionQueue ingestionQueue,
+                            StatementDeduplicator deduplicator, EventPublisherService eventPublisherService,
+                            LrsProperties properties, ReportCache reportCache, MeterRegistry meterRegistry) {
+        this.statementRepository = statementRepository;
+        this.ingestionQueue = ingestionQueue;
+        this.deduplicator = deduplicator;
+        this.eventPublisherService = eventPublisherService;
+        this.properties = properties;
+        this.reportCache = reportCache;
+
+        this.batchSizes = DistributionSummary.builder("lrs.statements.batch.size")
+                .description("Statements per batch request")
+                .register(meterRegistry);
+        // "lrs.statements.ingested" by path; its rate is the ingestion throughput
+        this.ingestedSingle = meterRegistry.counter("lrs.statements.ingested", "path", "single");
+        this.ingestedBatch = meterRegistry.counter("lrs.statements.ingested", "path", "batch");
+    }
 
+    /**
+     * Stores a statement. A statement with a client-assigned id that was already received
+     * with the same content is not stored again; with different content it is rejected
+     *
+     * @throws StatementConflictException when the id is taken by a different statement
+     */
+    @Timed(value = "lrs.statements.create", description = "Time taken to store or queue one statement")
     public StatementResponse createStatement(StatementRequest request) {
         log.debug("Creating statement for actor: {}", request != null && request.getActor() != null ? request.getActor().getName() : "<none>");
 
-        Statement statement = Statement.builder()
-                .actor(mapActor(request.getActor()))
-                .verb(mapVerb(request.getVerb()))
-                .object(mapActivity(request.getObject()))
-                .timestamp(LocalDateTime.now())
-                .stored(LocalDateTime.now())
-                .context(mapContext(request.getContext()))
-                .result(mapResult(request.getResult()))
-                .build();
+        Statement statement = toStatement(request, LocalDateTime.now());
+        boolean clientId = statement.getContentHash() != null;
+        if (clientId && isRecentRetry(statement)) {
+            log.debug("Statement {} was already received, ignoring retry", statement.getId());
+            return mapToResponse(statement);
+        }
 
-        Statement saved = statementRepository.save(statement);
-        return mapToResponse(saved);
+        StatementResponse created;
+        try {
+            if (ingestionQueue.isEnabled()) {
+                // Queued writes cannot report a duplicate key back to this request, so the id is
+                // held until the writer stores it and looked up in the store before queueing
+                if (clientId && isQueuedRetry(statement)) {
+                    log.debug("Statement {} is already queued, ignoring retry", statement.getId());
+                    return mapToResponse(statement);
+                }
+                try {
+                    Optional<Statement> stored = clientId ? statementRepository.findById(statement.getId()) : Optional.empty();
+                    if (stored.isPresent()) {
+                        return mapToResponse(requireSameContent(statement, stored.get()));
+                    }
+                    ingestionQueue.enqueue(List.of(statement));
+                } catch (RuntimeException e) {
+                    if (clientId) deduplicator.release(statement.getId());
+                    throw e;
+                }
+                created = mapToResponse(statement);
+            } else {
+                Statement inserted = statementRepository.insert(statement);
+                if (clientId) deduplicator.record(inserted.getId(), inserted.getContentHash());
+                created = mapToResponse(inserted);
+            }
+        } catch (DuplicateKeyException e) {
+            Statement stored = statementRepository.findById(statement.getId()).orElseThrow(() -> e);
+            return mapToResponse(requireSameContent(statement, stored));
+        }
+
+        eventPublisherService.publishStatementCreated(created);
+        ingestedSingle.increment();
+        return created;
+    }
+
+    /**
+     * True when statements are acknowledged once queued and written in the background
+     */
+    public boolean isWriteBehind() {
+        return ingestionQueue.isEnabled();
     }
 
-    public List<StatementResponse> getAllStatements() {
-        log.debug("Fetching all statements");
-        return statementRepository.findAll().stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    /**
+     * Stores a batch of statements with one unordered bulk write (or queues it whole in
+     * write-behind mode). The returned responses are aligned with the requests; entries
+     * that failed are null and listed in failures. Retried client-assigned ids count as
+     * stored, conflicting ones as failures
+     */
+    @Timed(value = "lrs.statements.create.batch", description = "Time taken to store or queue one batch of statements")
+    public BatchResult createStatements(List<StatementRequest> requests) {
+        log.debug("Creating batch of {} statements", requests.size());
+        batchSizes.record(requests.size());
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, String> failures = new HashMap<>();
+        List<StatementResponse> responses = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        List<Statement> statements = new ArrayList<>(requests.size());
+        List<Integer> positions = new ArrayList<>(requests.size());
+
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                Statement statement = toStatement(requests.get(i), now);
+                if (statement.getContentHash() != null && isRecentRetry(statement)) {
+                    responses.set(i, mapToResponse(statement));
+                    continue;
+                }
+                statements.add(statement);
+                positions.add(i);
+            } catch (StatementConflictException e) {
+                failures.put(i, e.getMessage());
+            } catch (RuntimeException e) {
+                failures.put(i, "Invalid statement: " + e.getMessage());
+            }
+        }
+
+        Map<Integer, Statement> duplicates = new HashMap<>();
+        if (ingestionQueue.isEnabled()) {
+            // Queued writes cannot report duplicate keys, so client ids are held until the writer
+            // stores them and unknown ones are looked up first
+            List<Statement> held = new ArrayList<>(statements.size());
+            List<Integer> heldPositions = new ArrayList<>(statements.size());
+            for (int i = 0; i < statements.size(); i++) {
+                Statement statement = statements.get(i);
+                try {
+                    if (statement.getContentHash() != null && isQueuedRetry(statement)) {
+                        responses.set(positions.get(i), mapToResponse(statement));
+                        continue;
+                    }
+                    held.add(statement);
+                    heldPositions.add(positions.get(i));
+                } catch (StatementConflictException e) {
+                    failures.put(positions.get(i), e.getMessage());
+                }
+            }
+
+            List<Statement> queued = new ArrayList<>(held.size());
+            List<Integer> queuedPositions = new ArrayList<>(held.size());
+            Map<String, Statement> stored;
+            try {
+                stored = findStored(held);
+                for (int i = 0; i < held.size(); i++) {
+                    if (stored.containsKey(held.get(i).getId())) {
+                        duplicates.put(heldPositions.get(i), held.get(i));
+                    } else {
+                        queued.add(held.get(i));
+                        queuedPositions.add(heldPositions.get(i));
+                    }
+                }
+                ingestionQueue.enqueue(queued);
+            } catch (RuntimeException e) {
+                held.stream()
+                        .filter(statement -> statement.getContentHash() != null)
+                        .forEach(statement -> deduplicator.release(statement.getId()));
+                throw e;
+            }
+            statements = queued;
+            positions = queuedPositions;
+            resolveDuplicates(duplicates, stored, responses, failures);
+        } else {
+            BulkInsertResult result = statementRepository.insertUnordered(statements);
+            for (Map.Entry<Integer, String> failure : result.getFailures().entrySet()) {
+                Statement statement = statements.get(failure.getKey());
+                if (statement.getContentHash() != null && BulkInsertResult.isDuplicateKey(failure.getValue())) {
+                    duplicates.put(positions.get(failure.getKey()), statement);
+                } else {
+                    failures.put(positions.get(failure.getKey()), failure.getValue());
+                }
+            }
+            for (int i = 0; i < statements.size(); i++) {
+                Statement statement = statements.get(i);
+                if (statement.getContentHash() != null && !result.getFailures().containsKey(i)) {
+                    deduplicator.record(statement.getId(), statement.getContentHash());
+                }
+            }
+            resolveDuplicates(duplicates, findStored(duplicates.values()), responses, failures);
+        }
+
+        List<StatementResponse> created = new ArrayList<>(statements.size());
+        for (int i = 0; i < statements.size(); i++) {
+            int position = positions.get(i);
+            if (!failures.containsKey(position) && !duplicates.containsKey(position)) {
+                StatementResponse response = mapToResponse(statements.get(i));
+                responses.set(position, response);
+                created.add(response);
+            }
+        }
+        eventPublisherService.publishStatementsCreated(created);
+        ingestedBatch.increment(created.size());
+
+        log.debug("Batch stored: {} accepted, {} failed", requests.size() - failures.size(), failures.size());
+        return new BatchResult(responses, failures);
     }
 
     public Optional<StatementResponse> getStatementById(String id) {
@@ -50,34 +231,155 @@ public class StatementService {
                 .map(this::mapToResponse);
     }
 
-    public List<StatementResponse> getStatementsByActor(String actorName) {
+    public StatementResult getAllStatements(String cursor, Integer limit) {
+        log.debug("Fetching statements page after cursor: {}", cursor);
+        return getStatements(new StatementFilter(), cursor, limit);
+    }
+
+    public StatementResult getStatementsByActor(String actorName, String cursor, Integer limit) {
         log.debug("Fetching statements for actor: {}", actorName);
-        return statementRepository.findByActor_Name(actorName).stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return getStatements(StatementFilter.builder().actorName(actorName).build(), cursor, limit);
     }
 
-    public List<StatementResponse> getStatementsByDateRange(LocalDateTime start, LocalDateTime end) {
+    public StatementResult getStatementsByDateRange(LocalDateTime start, LocalDateTime end, String cursor, Integer limit) {
         log.debug("Fetching statements between {} and {}", start, end);
-        return statementRepository.findByTimestampBetween(start, end).stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return getStatements(StatementFilter.builder().since(start).until(end).build(), cursor, limit);
     }
 
-    public List<StatementResponse> getStatementsByVerb(String verbId) {
+    /**
+     * Lazily maps statements from a server-side cursor; close the stream to release it
+     */
+    public Stream<StatementResponse> streamStatements(LocalDateTime since, LocalDateTime until) {
+        log.debug("Streaming statements between {} and {}", since, until);
+        return statementRepository.streamAll(StatementFilter.builder().since(since).until(until).build())
+                .map(this::mapToResponse);
+    }
+
+    public StatementResult getStatementsByVerb(String verbId, String cursor, Integer limit) {
         log.debug("Fetching statements by verb: {}", verbId);
-        return statementRepository.findByVerb_Id(verbId).stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return getStatements(StatementFilter.builder().verbId(verbId).build(), cursor, limit);
     }
 
     public void deleteStatement(String id) {
         log.debug("Deleting statement with id: {}", id);
+        Optional<Statement> statement = statementRepository.findById(id);
         statementRepository.deleteById(id);
+        reportCache.invalidateAll();
+        // The rollups and rankings still count it until the listener takes it back out
+        statement.ifPresent(deleted -> eventPublisherService.publishStatementDeleted(mapToResponse(deleted)));
+    }
+
+    /**
+     * Keyset pagination over (stored, id), or (timestamp, id) within a date window: fetches
+     * one extra row to learn whether another page exists, so memory per request is bounded
+     * by the page size cap
+     */
+    private StatementResult getStatements(StatementFilter filter, String cursor, Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        StatementCursor after = cursor != null && !cursor.isBlank() ? StatementCursor.decode(cursor) : null;
+
+        List<Statement> page = statementRepository.findPage(filter, after, pageSize + 1);
+        boolean more = page.size() > pageSize;
+        List<Statement> statements = more ? page.subList(0, pageSize) : page;
+
+        return StatementResult.builder()
+                .statements(statements.stream()
+                        .map(this::mapToResponse)
+                        .collect(Collectors.toList()))
+                .cursor(more ? StatementCursor.after(statements.get(statements.size() - 1), filter).encode() : null)
+                .build();
+    }
+
+    /**
+     * Checks a client-assigned id against the ids stored recently
+     *
+     * @return true when the same statement was already stored
+     * @throws StatementConflictException when the id was stored with different content
+     */
+    private boolean isRecentRetry(Statement statement) {
+        String known = deduplicator.known(statement.getId());
+        if (known == null) return false;
+        if (known.equals(statement.getContentHash())) return true;
+        throw new StatementConflictException(statement.getId());
+    }
+
+    /**
+     * Holds the id for a statement about to be queued; true when the same content is
+     * already held, i.e. the statement is a retry of one still queued
+     */
+    private boolean isQueuedRetry(Statement statement) {
+        String held = deduplicator.hold(statement.getId(), statement.getContentHash());
+        if (held == null) return false;
+        if (held.equals(statement.getContentHash())) return true;
+        throw new StatementConflictException(statement.getId());
+    }
+
+    private Statement requireSameContent(Statement statement, Statement stored) {
+        deduplicator.record(stored.getId(), stored.getContentHash());
+        if (Objects.equals(statement.getContentHash(), stored.getContentHash())) {
+            return stored;
+        }
+        throw new StatementConflictException(statement.getId());
+    }
+
+    private Map<String, Statement> findStored(Collection<Statement> statements) {
+        List<String> ids = statements.stream()
+                .filter(statement -> statement.getContentHash() != null)
+                .map(Statement::getId)
+                .toList();
+        if (ids.isEmpty()) return Map.of();
+        return statementRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Statement::getId, statement -> statement));
+    }
+
+    private void resolveDuplicates(Map<Integer, Statement> duplicates, Map<String, Statement> stored,
+                                   List<StatementResponse> responses, Map<Integer, String> failures) {
+        duplicates.forEach((position, statement) -> {
+            Statement existing = stored.get(statement.getId());
+            try {
+                if (existing == null) throw new StatementConflictException(statement.getId());
+                responses.set(position, mapToResponse(requireSameContent(statement, existing)));
+            } catch (StatementConflictException e) {
+                failures.put(position, e.getMessage());
+            }
+        });
+    }
+
+    private int resolvePageSize(Integer limit) {
+        LrsProperties.Statements settings = properties.getStatements();
+        if (limit == null || limit <= 0) {
+            return Math.min(settings.getDefaultPageSize(), settings.getMaxPageSize());
+        }
+        return Math.min(limit, settings.getMaxPageSize());
     }
 
     // Request DTO to Model mappers
-    private Actor mapActor(ActorDto dto) {
+    Statement toStatement(StatementRequest request, LocalDateTime now) {
+        String id = null;
+        String contentHash = null;
+        if (request.getId() != null) {
+            try {
+                id = UUID.fromString(request.getId()).toString();
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Statement id must be a UUID: " + request.getId());
+            }
+            contentHash = deduplicator.fingerprint(request);
+        }
+
+        return Statement.builder()
+                .id(id != null ? id : UUID.randomUUID().toString())
+                .contentHash(contentHash)
+                .actor(mapActor(request.getActor()))
+                .verb(mapVerb(request.getVerb()))
+                .object(mapActivity(request.getObject()))
+                .timestamp(now)
+                .stored(now)
+                .context(mapContext(request.getContext()))
+                .result(mapResult(request.getResult()))
+                .build();
+    }
+
+    Actor mapActor(ActorDto dto) {
         if (dto == null) return null;
         Account account = null;
         if (dto.getAccount() != null) {
@@ -146,7 +448,7 @@ public class StatementService {
                 .build();
     }
 
-    private Context mapContext(ContextDto dto) {
+    Context mapContext(ContextDto dto) {
         if (dto == null) return null;
 
         Map<String, List<StatementObject>> ctxActivities = null;
@@ -195,7 +497,7 @@ public class StatementService {
     }
 
     // Model to Response DTO mappers
-    private StatementResponse mapToResponse(Statement statement) {
+    StatementResponse mapToResponse(Statement statement) {
         if (statement == null) return null;
         return StatementResponse.builder()
                 .id(statement.getId())
@@ -309,4 +611,14 @@ public class StatementService {
                 .extensions(context.getExtensions())
                 .build();
     }
+
+    /**
+     * Per-request outcome of a batch write
+     */
+    @Data
+    @AllArgsConstructor
+    public static class BatchResult {
+        private List<StatementResponse> responses;
+        private Map<Integer, String> failures;
+    }
 }
@@ -0,0 +1,319 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.model.Statement;
+import com.mongodb.MongoClientSettings;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonBinaryReader;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of statements accepted by the ingestion queue but not yet written to
+ * MongoDB. The log is split into numbered segment files; each record is framed as
+ * [length][crc32c][BSON document] so a torn write at the tail is detected on recovery.
+ * A segment is deleted once it is no longer active and every record in it has been
+ * acknowledged by the writers.
+ */
+@Component
+@Slf4j
+public class StatementWriteAheadLog {
+
+    private static final String SUFFIX = ".wal";
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    private final MongoConverter converter;
+    private final LrsProperties.Wal settings;
+    private final Codec<Document> codec = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+
+    // Unacknowledged record count per segment, guarded by this
+    private final Map<Long, Integer> pending = new HashMap<>();
+    private FileChannel active;
+    private long activeSegment;
+    private boolean dirty;
+    private ScheduledExecutorService flusher;
+
+    public StatementWriteAheadLog(MongoConverter converter, LrsProperties properties) {
+        this.converter = converter;
+        this.settings = properties.getIngestion().getWal();
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * Segments currently on disk, oldest first
+     */
+    public List<Long> segments() throws IOException {
+        Path directory = directory();
+        if (!Files.isDirectory(directory)) return List.of();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Starts a new active segment after any segments left behind by a previous run
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory());
+        List<Long> existing = segments();
+        activeSegment = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        active = openSegment(activeSegment);
+
+        if (settings.getFsync() == LrsProperties.Wal.Fsync.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "statement-wal-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = settings.getFsyncInterval().toMillis();
+            flusher.scheduleWithFixedDelay(this::forceIfDirty, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        log.info("Write-ahead log open at {} (segment {}, fsync {})", directory(), activeSegment, settings.getFsync());
+    }
+
+    /**
+     * Appends the statements as one write and returns the segment they landed in
+     */
+    public synchronized long append(List<Statement> statements) throws IOException {
+        if (active.size() >= settings.getSegmentSize().toBytes()) {
+            roll();
+        }
+
+        ByteBuffer frames = encode(statements);
+        long start = active.position();
+        try {
+            while (frames.hasRemaining()) {
+                active.write(frames);
+            }
+            if (settings.getFsync() == LrsProperties.Wal.Fsync.ALWAYS) {
+                active.force(false);
+            } else {
+                dirty = true;
+            }
+        } catch (IOException e) {
+            // Never leave a partial frame in front of later appends
+            active.truncate(start);
+            active.position(start);
+            throw e;
+        }
+
+        pending.merge(activeSegment, statements.size(), Integer::sum);
+        return activeSegment;
+    }
+
+    /**
+     * Marks records of a segment as written to MongoDB
+     */
+    public synchronized void acknowledge(long segment, int count) {
+        int remaining = pending.merge(segment, -count, Integer::sum);
+        if (remaining <= 0 && segment != activeSegment) {
+            pending.remove(segment);
+            delete(segment);
+        }
+    }
+
+    public SegmentReader read(long segment) throws IOException {
+        return new SegmentReader(segment, FileChannel.open(segmentPath(segment), StandardOpenOption.READ));
+    }
+
+    public void delete(long segment) {
+        try {
+            Files.deleteIfExists(segmentPath(segment));
+        } catch (IOException e) {
+            log.warn("Could not delete write-ahead log segment {}: {}", segment, e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes and closes the active segment, removing it when everything in it was written
+     */
+    public synchronized void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flusher = null;
+        }
+        if (active == null) return;
+
+        try {
+            active.force(false);
+            active.close();
+        } catch (IOException e) {
+            log.warn("Could not close write-ahead log segment {}: {}", activeSegment, e.getMessage());
+        }
+        active = null;
+        if (pending.getOrDefault(activeSegment, 0) <= 0) {
+            pending.remove(activeSegment);
+            delete(activeSegment);
+        }
+    }
+
+    private void roll() throws IOException {
+        active.force(false);
+        active.close();
+
+        long closed = activeSegment;
+        activeSegment++;
+        active = openSegment(activeSegment);
+        dirty = false;
+
+        if (pending.getOrDefault(closed, 0) <= 0) {
+            pending.remove(closed);
+            delete(closed);
+        }
+    }
+
+    private synchronized void forceIfDirty() {
+        if (!dirty || active == null) return;
+        try {
+            active.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            log.error("Could not fsync write-ahead log segment {}", activeSegment, e);
+        }
+    }
+
+    private FileChannel openSegment(long segment) throws IOException {
+        return FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private ByteBuffer encode(List<Statement> statements) {
+        List<ByteBuffer> payloads = new ArrayList<>(statements.size());
+        int size = 0;
+        for (Statement statement : statements) {
+            Document document = new Document();
+            converter.write(statement, document);
+            ByteBuffer payload = new RawBsonDocument(document, codec).getByteBuffer().asNIO();
+            payloads.add(payload);
+            size += HEADER_BYTES + payload.remaining();
+        }
+
+        ByteBuffer frames = ByteBuffer.allocate(size);
+        CRC32C crc = new CRC32C();
+        for (ByteBuffer payload : payloads) {
+            crc.reset();
+            crc.update(payload.duplicate());
+            frames.putInt(payload.remaining());
+            frames.putInt((int) crc.getValue());
+            frames.put(payload);
+        }
+        return frames.flip();
+    }
+
+    private Path directory() {
+        return Paths.get(settings.getDirectory());
+    }
+
+    private Path segmentPath(long segment) {
+        return directory().resolve(String.format("%020d%s", segment, SUFFIX));
+    }
+
+    /**
+     * Reads the records of one segment in order, stopping at the first frame that is
+     * incomplete or fails its checksum
+     */
+    public class SegmentReader implements Closeable {
+
+        private final long segment;
+        private final FileChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        private final CRC32C crc = new CRC32C();
+        private boolean finished;
+
+        private SegmentReader(long segment, FileChannel channel) {
+            this.segment = segment;
+            this.channel = channel;
+        }
+
+        /**
+         * Returns up to max statements, or an empty list at the end of the segment
+         */
+        public List<Statement> next(int max) throws IOException {
+            List<Statement> statements = new ArrayList<>();
+            while (!finished && statements.size() < max) {
+                Statement statement = readRecord();
+                if (statement != null) {
+                    statements.add(statement);
+                }
+            }
+            return statements;
+        }
+
+        private Statement readRecord() throws IOException {
+            long frameStart = channel.position();
+            header.clear();
+            if (!readFully(header)) return end(frameStart);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || length > MAX_RECORD_BYTES) return end(frameStart);
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            if (!readFully(payload)) return end(frameStart);
+            payload.flip();
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) return end(frameStart);
+
+            try {
+                Document document = codec.decode(new BsonBinaryReader(payload), DecoderContext.builder().build());
+                return converter.read(Statement.class, document);
+            } catch (RuntimeException e) {
+                log.warn("Skipping unreadable record in write-ahead log segment {}: {}", segment, e.getMessage());
+                return null;
+            }
+        }
+
+        private Statement end(long frameStart) throws IOException {
+            finished = true;
+            long discarded = channel.size() - frameStart;
+            if (discarded > 0) {
+                log.warn("Discarding torn tail of write-ahead log segment {} ({} bytes)", segment, discarded);
+            }
+            return null;
+        }
+
+        private boolean readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.dto.StatementResponse;
+import africa.enumverse.lrs.model.ActivityRollup;
+import africa.enumverse.lrs.model.ActorRollup;
+import africa.enumverse.lrs.sketch.BoundedRanking;
+import africa.enumverse.lrs.sketch.SpaceSaving;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * In-memory rankings behind the top performers and popular activities lookups. Both are
+ * seeded from the rollup indexes and then follow every ingested statement:
+ * <ul>
+ *   <li>activity popularity is a frequency, tracked with a {@link SpaceSaving} summary that
+ *   only answers when its top entries are guaranteed;</li>
+ *   <li>performers are ranked by average score, which can drop, so they are kept in an exact
+ *   {@link BoundedRanking} fed with the actors' current rollups.</li>
+ * </ul>
+ * Rankings are only used while the rollups cover every statement, and are reseeded when
+ * they can no longer answer or after the refresh interval. A reseed reads the rollups
+ * without holding the lock and swaps the new rankings in, so lookups keep answering from
+ * the current ones meanwhile. A lookup that cannot be answered returns empty and the
+ * caller falls back to the store.
+ */
+@Service
+@Slf4j
+public class TopKService {
+
+    private static final Comparator<ActorRollup> BY_AVERAGE_SCORE = Comparator
+            .comparingDouble(ActorRollup::getAverageScore).reversed()
+            .thenComparing(ActorRollup::getActorId);
+    private static final Comparator<ActivityRollup> BY_COUNT = Comparator
+            .comparingLong(ActivityRollup::getCount).reversed()
+            .thenComparing(ActivityRollup::getActivityId);
+
+    private final StatementRollupService rollupService;
+    private final LrsProperties.TopK settings;
+
+    // Guarded by this
+    private BoundedRanking<String, ActorRollup> performers;
+    private SpaceSaving<String> activityCounts;
+    private Map<String, ActivityRollup> activities = new HashMap<>();
+    private long seededAt;
+    private boolean seeding;
+    // Reseeds started so far, and the one whose rankings are in use
+    private long seedsStarted;
+    private long seedInUse;
+    // Updates applied while a reseed reads the rollups, which it may have read too early to see
+    private final List<Recorded> recordedWhileSeeding = new ArrayList<>();
+
+    public TopKService(StatementRollupService rollupService, LrsProperties properties) {
+        this.rollupService = rollupService;
+        this.settings = properties.getTopK();
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled() && rollupService.isEnabled();
+    }
+
+    public Optional<List<ActorRollup>> topActors(int limit) {
+        if (!prepare(limit)) return Optional.empty();
+
+        synchronized (this) {
+            List<ActorRollup> top = performers != null ? performers.top(limit) : null;
+            if (top != null) return Optional.of(top);
+        }
+        // The ranking dropped entries it would need; a fresh one holds them again
+        if (!reseed()) return Optional.empty();
+        synchronized (this) {
+            return Optional.ofNullable(performers != null ? performers.top(limit) : null);
+        }
+    }
+
+    public Optional<List<ActivityRollup>> topActivities(int limit) {
+        if (!prepare(limit)) return Optional.empty();
+
+        synchronized (this) {
+            if (activityCounts != null && activityCounts.isGuaranteed(limit)) return Optional.of(rankedActivities(limit));
+        }
+        if (!reseed()) return Optional.empty();
+        synchronized (this) {
+            if (activityCounts != null && activityCounts.isGuaranteed(limit)) return Optional.of(rankedActivities(limit));
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Follows newly stored statements; call once the rollups have counted them, so the
+     * actors and activities read back are current. A reseed that started after this call
+     * read the rollups with these statements counted, so they are then not applied again;
+     * one already running may have read them too early, so it applies them once it is done
+     */
+    public void record(List<StatementResponse> statements) {
+        if (!isEnabled()) return;
+        long observedSeeds;
+        synchronized (this) {
+            if (performers == null && !seeding) return;
+            observedSeeds = seedsStarted;
+        }
+
+        Set<String> actorIds = new HashSet<>();
+        Map<String, Long> activityIncrements = new HashMap<>();
+        for (StatementResponse statement : statements) {
+            if (statement.getActor() != null && statement.getActor().getId() != null) {
+                actorIds.add(statement.getActor().getId());
+            }
+            if (statement.getObject() != null && statement.getObject().getId() != null) {
+                activityIncrements.merge(statement.getObject().getId(), 1L, Long::sum);
+            }
+        }
+        // Read outside the lock, so lookups never wait on the store
+        List<ActorRollup> actors = actorIds.isEmpty() ? List.of() : rollupService.actors(actorIds);
+        List<ActivityRollup> touched = activityIncrements.isEmpty()
+                ? List.of()
+                : rollupService.activities(activityIncrements.keySet());
+        Recorded recorded = new Recorded(actors, activityIncrements, touched);
+
+        synchronized (this) {
+            if (seedInUse > observedSeeds) return;
+
+            if (seeding) recordedWhileSeeding.add(recorded);
+            if (performers != null) apply(recorded);
+        }
+    }
+
+    /**
+     * Drops the rankings, so the next lookup reseeds them from the rollups; used once a
+     * statement is deleted, as neither ranking can take a count back out. A reseed still
+     * reading the rollups is not swapped in
+     */
+    public synchronized void invalidate() {
+        performers = null;
+        activityCounts = null;
+        activities = new HashMap<>();
+        seedInUse = ++seedsStarted;
+        seeding = false;
+        recordedWhileSeeding.clear();
+    }
+
+    /**
+     * Whether the rankings may answer; reseeds them first when they are missing or stale.
+     * Runs without the lock, as both checks read the store
+     */
+    private boolean prepare(int limit) {
+        if (!isEnabled() || limit > settings.getCapacity() || !rollupService.isComplete()) return false;
+
+        boolean stale;
+        synchronized (this) {
+            stale = performers == null || System.nanoTime() - seededAt > settings.getRefreshInterval().toNanos();
+        }
+        if (stale) reseed();
+        return true;
+    }
+
+    /**
+     * Reads new rankings from the rollups without holding the lock and swaps them in. Only
+     * one reseed runs at a time; false when another one was already running, whose
+     * rankings lookups use once it is done
+     */
+    private boolean reseed() {
+        long seed;
+        synchronized (this) {
+            if (seeding) return false;
+            seeding = true;
+            seed = ++seedsStarted;
+        }
+
+        try {
+            int capacity = settings.getCapacity();
+            BoundedRanking<String, ActorRollup> seededPerformers = new BoundedRanking<>(capacity,
+                    ActorRollup::getActorId, BY_AVERAGE_SCORE);
+            seededPerformers.seed(rollupService.topActors(capacity).stream().sorted(BY_AVERAGE_SCORE).toList());
+
+            SpaceSaving<String> seededCounts = new SpaceSaving<>(capacity);
+            Map<String, ActivityRollup> seededActivities = new HashMap<>();
+            for (ActivityRollup activity : rollupService.topActivities(capacity)) {
+                seededCounts.seed(activity.getActivityId(), activity.getCount());
+                seededActivities.put(activity.getActivityId(), activity);
+            }
+
+            synchronized (this) {
+                // Invalidated while reading
+                if (seedsStarted != seed) return false;
+
+                performers = seededPerformers;
+                activityCounts = seededCounts;
+                activities = seededActivities;
+                recordedWhileSeeding.forEach(this::apply);
+                seededAt = System.nanoTime();
+                seedInUse = seed;
+                log.debug("Reseeded top-K rankings ({} activities tracked)", activityCounts.size());
+                return true;
+            }
+        } finally {
+            synchronized (this) {
+                if (seedsStarted == seed) {
+                    seeding = false;
+                    recordedWhileSeeding.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies recorded updates to the rankings. Actors carry their current rollups, and a
+     * tracked activity takes the count of its current rollup, so applying an update the
+     * seed already counted changes nothing; an untracked activity is admitted with the
+     * increment, which is all its guaranteed count claims
+     */
+    private void apply(Recorded recorded) {
+        recorded.actors().forEach(performers::offer);
+        Map<String, ActivityRollup> current = new HashMap<>();
+        recorded.touched().forEach(activity -> current.put(activity.getActivityId(), activity));
+        recorded.activityIncrements().forEach((activityId, increment) -> {
+            ActivityRollup latest = current.get(activityId);
+            if (latest != null && activityCounts.contains(activityId)) {
+                ActivityRollup held = activities.get(activityId);
+                if (held == null || latest.getCount() > held.getCount()) {
+                    activityCounts.seed(activityId, latest.getCount());
+                    activities.put(activityId, latest);
+                }
+                return;
+            }
+            String evicted = activityCounts.offer(activityId, increment);
+            if (evicted != null) activities.remove(evicted);
+            if (latest != null && activityCounts.contains(activityId)) activities.put(activityId, latest);
+        });
+    }
+
+    private List<ActivityRollup> rankedActivities(int limit) {
+        return activityCounts.top(limit).stream()
+                .map(counter -> activities.get(counter.key()))
+                .filter(Objects::nonNull)
+                .sorted(BY_COUNT)
+                .toList();
+    }
+
+    /**
+     * Rollups read back for one batch of recorded statements
+     */
+    private record Recorded(List<ActorRollup> actors, Map<String, Long> activityIncrements,
+                            List<ActivityRollup> touched) {
+    }
+}
@@ -0,0 +1,109 @@
+package africa.enumverse.lrs.sketch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Exact top of a ranking over values that can move both ways, such as average scores.
+ * It holds the best capacity entries; an entry is only admitted when it ranks ahead of the
+ * last one held. When a held entry falls behind all others it is dropped instead of kept
+ * at the tail, because a value never seen might now rank ahead of it, so the ranking
+ * shrinks and stays exact for the entries it still holds.
+ */
+public class BoundedRanking<K, T> {
+
+    private final int capacity;
+    private final Function<T, K> key;
+    private final TreeSet<T> ranked;
+    private final Map<K, T> byKey = new HashMap<>();
+    private boolean exhaustive;
+
+    /**
+     * @param order best first; must be a total order consistent with the key
+     */
+    public BoundedRanking(int capacity, Function<T, K> key, Comparator<T> order) {
+        this.capacity = capacity;
+        this.key = key;
+        this.ranked = new TreeSet<>(order);
+    }
+
+    /**
+     * Replaces the content with the best entries of the whole population, best first
+     */
+    public void seed(List<T> best) {
+        ranked.clear();
+        byKey.clear();
+        best.stream().limit(capacity).forEach(this::put);
+        // Fewer entries than requested means the population fitted entirely
+        exhaustive = best.size() < capacity;
+    }
+
+    /**
+     * Applies the current value of an entry after it changed
+     */
+    public void offer(T value) {
+        T previous = byKey.remove(key.apply(value));
+        if (previous != null) {
+            ranked.remove(previous);
+        }
+
+        Comparator<? super T> order = ranked.comparator();
+        boolean improved = previous != null && order.compare(value, previous) <= 0;
+        boolean aheadOfLast = !ranked.isEmpty() && order.compare(value, ranked.last()) < 0;
+        if (exhaustive || improved || aheadOfLast) {
+            put(value);
+            if (ranked.size() > capacity) {
+                byKey.remove(key.apply(ranked.pollLast()));
+                exhaustive = false;
+            }
+        }
+    }
+
+    /**
+     * The best limit entries, or null when fewer than limit are known to be exact
+     */
+    public List<T> top(int limit) {
+        if (limit > ranked.size() && !exhaustive) return null;
+
+        List<T> top = new ArrayList<>(Math.min(limit, ranked.size()));
+        Iterator<T> best = ranked.iterator();
+        while (best.hasNext() && top.size() < limit) {
+            top.add(best.next());
+        }
+        return top;
+    }
+
+    private void put(T value) {
+        byKey.put(key.apply(value), value);
+        ranked.add(value);
+    }
+
+    /**
+     * Exact top limit of a stream in one pass, holding at most limit elements
+     */
+    public static <T> List<T> top(Stream<T> values, int limit, Comparator<T> order) {
+        if (limit <= 0) return List.of();
+
+        PriorityQueue<T> worstFirst = new PriorityQueue<>(limit + 1, order.reversed());
+        values.forEach(value -> {
+            if (worstFirst.size() < limit) {
+                worstFirst.add(value);
+            } else if (order.compare(value, worstFirst.peek()) < 0) {
+                worstFirst.poll();
+                worstFirst.add(value);
+            }
+        });
+
+        List<T> top = new ArrayList<>(worstFirst);
+        top.sort(order);
+        return top;
+    }
+}
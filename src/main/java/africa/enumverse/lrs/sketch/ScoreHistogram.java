@@ -0,0 +1,176 @@
+package africa.enumverse.lrs.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed-resolution histogram of scaled scores. xAPI bounds scaled scores to [-1, 1], so
+ * the whole range is covered by 201 bins centred on multiples of 0.01: scores reported in
+ * hundredths (nearly all of them) are counted exactly and any other score is off by at
+ * most 0.005. Quantiles are therefore within 0.005 of the true value whatever the number
+ * of scores, and histograms of different buckets merge losslessly by adding the bins.
+ *
+ * <p>{@link #toBytes()} writes a sparse list of (bin, count) pairs; {@link #toBins()}
+ * gives the same bins keyed by index for documents updated with $inc.
+ */
+public class ScoreHistogram {
+
+    public static final double MIN = -1.0;
+    public static final double MAX = 1.0;
+    public static final double RESOLUTION = 0.01;
+
+    private static final int BINS = 201;
+    private static final int ENTRY_BYTES = 1 + Long.BYTES;
+
+    private final long[] counts = new long[BINS];
+    private long total;
+
+    public void add(double score) {
+        add(score, 1);
+    }
+
+    public void add(double score, long count) {
+        counts[bin(score)] += count;
+        total += count;
+    }
+
+    public void merge(ScoreHistogram other) {
+        for (int i = 0; i < BINS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    /**
+     * Smallest score such that at least the fraction q of the scores are less than or equal
+     * to it, or null for an empty histogram
+     */
+    public Double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+        }
+        if (total == 0) return null;
+
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BINS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return value(i);
+        }
+        return MAX;
+    }
+
+    /**
+     * The scores regrouped into equal-width ranges over [-1, 1]; every range includes its
+     * lower bound, the last one also includes 1
+     */
+    public List<Range> ranges(int ranges) {
+        if (ranges < 1 || ranges > BINS - 1) {
+            throw new IllegalArgumentException("Number of histogram ranges must be between 1 and " + (BINS - 1));
+        }
+
+        long[] grouped = new long[ranges];
+        for (int i = 0; i < BINS; i++) {
+            // Exact integer form of floor((value - MIN) / width), with 1 folded into the last range
+            grouped[Math.min(ranges - 1, i * ranges / (BINS - 1))] += counts[i];
+        }
+
+        List<Range> result = new ArrayList<>(ranges);
+        double width = (MAX - MIN) / ranges;
+        for (int i = 0; i < ranges; i++) {
+            result.add(new Range(round(MIN + i * width), round(MIN + (i + 1) * width), grouped[i]));
+        }
+        return result;
+    }
+
+    public Map<String, Long> toBins() {
+        Map<String, Long> bins = new HashMap<>();
+        for (int i = 0; i < BINS; i++) {
+            if (counts[i] != 0) bins.put(String.valueOf(i), counts[i]);
+        }
+        return bins;
+    }
+
+    public static ScoreHistogram fromBins(Map<String, Long> bins) {
+        ScoreHistogram histogram = new ScoreHistogram();
+        if (bins == null) return histogram;
+
+        bins.forEach((bin, count) -> {
+            int index = Integer.parseInt(bin);
+            if (index < 0 || index >= BINS) {
+                throw new IllegalArgumentException("Not a score histogram bin: " + bin);
+            }
+            histogram.counts[index] += count;
+            histogram.total += count;
+        });
+        return histogram;
+    }
+
+    public byte[] toBytes() {
+        int used = 0;
+        for (long count : counts) {
+            if (count != 0) used++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(used * ENTRY_BYTES);
+        for (int i = 0; i < BINS; i++) {
+            if (counts[i] != 0) {
+                buffer.put((byte) i).putLong(counts[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static ScoreHistogram fromBytes(byte[] bytes) {
+        ScoreHistogram histogram = new ScoreHistogram();
+        if (bytes == null) return histogram;
+        if (bytes.length % ENTRY_BYTES != 0) {
+            throw new IllegalArgumentException("Not a score histogram");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            int index = buffer.get() & 0xFF;
+            long count = buffer.getLong();
+            if (index >= BINS) {
+                throw new IllegalArgumentException("Not a score histogram");
+            }
+            histogram.counts[index] += count;
+            histogram.total += count;
+        }
+        return histogram;
+    }
+
+    /**
+     * Index of the bin counting a score; scores outside [-1, 1] go to the nearest end
+     */
+    public static int bin(double score) {
+        long index = Math.round((score - MIN) / RESOLUTION);
+        return (int) Math.max(0, Math.min(BINS - 1, index));
+    }
+
+    private static double value(int bin) {
+        return round(MIN + bin * RESOLUTION);
+    }
+
+    /**
+     * Drops the floating point noise of the bin and range arithmetic, e.g. 0.30000000000000004
+     */
+    private static double round(double value) {
+        return Math.round(value * 1e6) / 1e6;
+    }
+
+    public record Range(double lower, double upper, long count) {
+    }
+}
@@ -0,0 +1,122 @@
+package africa.enumverse.lrs.sketch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving heavy-hitter summary holding at most capacity counters. An untracked key
+ * takes over the smallest counter and inherits its count as the error, so every count is
+ * an upper bound and count - error a lower bound of the true frequency. Keys that were
+ * never tracked have a true count no higher than {@link #minCount()}.
+ *
+ * <p>Seeding with exact counts of the most frequent keys keeps those bounds valid, as long
+ * as every key left out has a lower count than every key seeded.
+ */
+public class SpaceSaving<K extends Comparable<K>> {
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    private final TreeSet<Counter<K>> ascending = new TreeSet<>(Comparator
+            .comparingLong((Counter<K> counter) -> counter.count)
+            .thenComparing(counter -> counter.key));
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Sets an exact count for a key, e.g. when seeding from the store
+     */
+    public void seed(K key, long count) {
+        remove(key);
+        put(new Counter<>(key, count, 0));
+        while (counters.size() > capacity) {
+            remove(ascending.first().key);
+        }
+    }
+
+    /**
+     * Counts occurrences of a key and returns the key it evicted, or null
+     */
+    public K offer(K key, long increment) {
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            ascending.remove(counter);
+            put(new Counter<>(key, counter.count + increment, counter.error));
+            return null;
+        }
+        if (counters.size() < capacity) {
+            put(new Counter<>(key, increment, 0));
+            return null;
+        }
+
+        Counter<K> smallest = ascending.pollFirst();
+        counters.remove(smallest.key);
+        put(new Counter<>(key, smallest.count + increment, smallest.count));
+        return smallest.key;
+    }
+
+    public boolean contains(K key) {
+        return counters.containsKey(key);
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public long minCount() {
+        return counters.size() < capacity || ascending.isEmpty() ? 0 : ascending.first().count;
+    }
+
+    /**
+     * The k keys with the highest counts, highest first
+     */
+    public List<Counter<K>> top(int k) {
+        List<Counter<K>> top = new ArrayList<>(Math.min(k, counters.size()));
+        Iterator<Counter<K>> descending = ascending.descendingIterator();
+        while (descending.hasNext() && top.size() < k) {
+            top.add(descending.next());
+        }
+        return top;
+    }
+
+    /**
+     * True when the k highest counters are certainly the k most frequent keys: each of them
+     * is guaranteed a higher count than any key ranked below them can have
+     */
+    public boolean isGuaranteed(int k) {
+        List<Counter<K>> top = top(k + 1);
+        if (top.size() <= k) {
+            // Every key ever seen is tracked, so every count is exact
+            return counters.size() < capacity;
+        }
+        long bound = top.get(k).count;
+        return top.subList(0, k).stream().allMatch(counter -> counter.guaranteed() >= bound);
+    }
+
+    private void put(Counter<K> counter) {
+        counters.put(counter.key, counter);
+        ascending.add(counter);
+    }
+
+    private void remove(K key) {
+        Counter<K> counter = counters.remove(key);
+        if (counter != null) ascending.remove(counter);
+    }
+
+    public record Counter<K>(K key, long count, long error) {
+
+        /**
+         * Lower bound of the true count
+         */
+        public long guaranteed() {
+            return count - error;
+        }
+    }
+}
@@ -3,7 +3,12 @@ package africa.enumverse.lrs;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+        "spring.data.mongodb.auto-index-creation=false",
+        "lrs.mongo.explain-on-startup=false",
+        "lrs.rollups.backfill-on-startup=false",
+        "lrs.rollups.materialize-on-schedule=false"
+})
 class LrsApplicationTests {
 
     @Test
@@ -0,0 +1,175 @@
+package africa.enumverse.lrs.repository.arena;
+
+import africa.enumverse.lrs.model.Actor;
+import africa.enumverse.lrs.model.LearningRecord;
+import africa.enumverse.lrs.model.Statement;
+import africa.enumverse.lrs.model.StatementObject;
+import africa.enumverse.lrs.model.Verb;
+import africa.enumverse.lrs.repository.BulkInsertResult;
+import africa.enumverse.lrs.repository.StatementCursor;
+import africa.enumverse.lrs.repository.StatementFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ArenaRepositoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 10, 1, 9, 0);
+
+    private final MappingMongoConverter converter = converter();
+    // Small segments, so the tests cross segment boundaries
+    private final ArenaStatementRepository statements = new ArenaStatementRepository(converter, 4096);
+    private final ArenaLearningRecordRepository learningRecords = new ArenaLearningRecordRepository(converter, 4096);
+
+    @Test
+    void answersDerivedQueriesWithMongoSemantics() {
+        statements.insert(List.of(
+                statement("s1", "alice", "completed", T0),
+                statement("s2", "bob", "completed", T0.plusHours(1)),
+                statement("s3", "alice", "passed", T0.plusHours(2)),
+                statement("s4", "carol", "completed", T0.plusHours(3))));
+
+        assertThat(statements.findById("s3")).get()
+                .satisfies(found -> assertThat(found.getVerb().getDisplay()).containsEntry("en-US", "passed"));
+        assertThat(ids(statements.findByActor_Name("alice"))).containsExactly("s1", "s3");
+        assertThat(ids(statements.findByActor_Id("actor-bob"))).containsExactly("s2");
+        assertThat(ids(statements.findByVerb_Id("http://adlnet.gov/expapi/verbs/completed"))).containsExactly("s1", "s2", "s4");
+        assertThat(ids(statements.findByObject_Id("http://example.com/activities/unknown"))).isEmpty();
+        // Between excludes both ends
+        assertThat(ids(statements.findByTimestampBetween(T0, T0.plusHours(3)))).containsExactly("s2", "s3");
+
+        assertThat(statements.existsByTimestampBefore(T0)).isFalse();
+        assertThat(statements.existsByTimestampBefore(T0.plusMinutes(1))).isTrue();
+        assertThat(statements.findFirstByTimestampBeforeOrderByTimestampDesc(T0.plusHours(3)))
+                .get().extracting(Statement::getId).isEqualTo("s3");
+        assertThat(statements.findFirstByOrderByTimestampAsc()).get().extracting(Statement::getId).isEqualTo("s1");
+
+        assertThatThrownBy(() -> statements.insert(statement("s1", "dave", "completed", T0)))
+                .isInstanceOf(DuplicateKeyException.class);
+        BulkInsertResult bulk = statements.insertUnordered(List.of(
+                statement("s5", "dave", "completed", T0), statement("s2", "dave", "completed", T0)));
+        assertThat(bulk.getInsertedCount()).isEqualTo(1);
+        assertThat(BulkInsertResult.isDuplicateKey(bulk.getFailures().get(1))).isTrue();
+        assertThat(statements.count()).isEqualTo(5);
+    }
+
+    @Test
+    void pagesInStoredOrderAndStreamsInTimestampOrder() {
+        LocalDateTime stored = T0.plusDays(1);
+        for (int i = 0; i < 60; i++) {
+            Statement statement = statement(String.format("s%02d", i), i % 2 == 0 ? "alice" : "bob", "completed",
+                    T0.plusMinutes(60 - i));
+            // Every three statements share a stored time, so pages split ties by id
+            statement.setStored(stored.plusSeconds(i / 3));
+            statements.insert(statement);
+        }
+
+        StatementFilter alice = StatementFilter.builder().actorName("alice").build();
+        List<String> paged = new java.util.ArrayList<>();
+        StatementCursor cursor = null;
+        List<Statement> page;
+        do {
+            page = statements.findPage(alice, cursor, 7);
+            page.forEach(statement -> paged.add(statement.getId()));
+            if (!page.isEmpty()) cursor = StatementCursor.after(page.get(page.size() - 1), alice);
+        } while (page.size() == 7);
+
+        List<String> expected = Stream.iterate(58, i -> i >= 0, i -> i - 2).map(i -> String.format("s%02d", i)).toList();
+        assertThat(paged).containsExactlyElementsOf(expected);
+
+        StatementFilter window = StatementFilter.builder().since(T0.plusMinutes(10)).until(T0.plusMinutes(15)).build();
+        List<Statement> first = statements.findPage(window, null, 3);
+        assertThat(first).extracting(Statement::getId).containsExactly("s46", "s47", "s48");
+        assertThat(statements.findPage(window, StatementCursor.after(first.get(2), window), 3))
+                .extracting(Statement::getId).containsExactly("s49");
+
+        try (Stream<Statement> streamed = statements.streamAll(window)) {
+            assertThat(streamed.map(Statement::getId)).containsExactly("s49", "s48", "s47", "s46");
+        }
+    }
+
+    @Test
+    void pagesPastStatementsWithoutAStoredTime() {
+        for (int i = 0; i < 6; i++) {
+            Statement statement = statement("s" + i, "alice", "completed", T0.plusMinutes(i));
+            // Written before stored times were recorded
+            if (i < 3) statement.setStored(null);
+            statements.insert(statement);
+        }
+
+        StatementFilter all = new StatementFilter();
+        List<String> paged = new java.util.ArrayList<>();
+        StatementCursor cursor = null;
+        List<Statement> page;
+        do {
+            page = statements.findPage(all, cursor, 2);
+            page.forEach(statement -> paged.add(statement.getId()));
+            // Round-trips through the token handed to clients
+            if (!page.isEmpty()) cursor = StatementCursor.decode(StatementCursor.after(page.get(page.size() - 1), all).encode());
+        } while (page.size() == 2);
+
+        assertThat(paged).containsExactly("s5", "s4", "s3", "s2", "s1", "s0");
+    }
+
+    @Test
+    void savesReplacesAndDeletesLearningRecords() {
+        LearningRecord record = learningRecords.save(LearningRecord.builder()
+                .userId("alice").courseId("math").completed(false).createdAt(T0).build());
+        learningRecords.save(LearningRecord.builder()
+                .userId("alice").courseId("physics").completed(true).createdAt(T0.plusHours(1)).build());
+
+        assertThat(record.getId()).isNotBlank();
+        assertThat(learningRecords.findByUserIdAndCourseId("alice", "math")).extracting(LearningRecord::getId)
+                .containsExactly(record.getId());
+
+        record.setCompleted(true);
+        learningRecords.save(record);
+        assertThat(learningRecords.count()).isEqualTo(2);
+        assertThat(learningRecords.findByCompleted(false)).isEmpty();
+        assertThat(learningRecords.findByCompleted(true)).hasSize(2);
+
+        learningRecords.delete(record);
+        assertThat(learningRecords.findByCourseId("math")).isEmpty();
+        assertThat(learningRecords.findByCreatedAtBetween(T0.minusDays(1), T0.plusDays(1)))
+                .extracting(LearningRecord::getCourseId).containsExactly("physics");
+    }
+
+    private static Statement statement(String id, String actor, String verb, LocalDateTime timestamp) {
+        return Statement.builder()
+                .id(id)
+                .actor(Actor.builder().id("actor-" + actor).name(actor).build())
+                .verb(Verb.builder().id("http://adlnet.gov/expapi/verbs/" + verb).display(Map.of("en-US", verb)).build())
+                .object(StatementObject.builder().id("http://example.com/activities/course-1").build())
+                .timestamp(timestamp)
+                .stored(timestamp)
+                .build();
+    }
+
+    private static List<String> ids(List<Statement> statements) {
+        return statements.stream().map(Statement::getId).toList();
+    }
+
+    private static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.setMapKeyDotReplacement("_DOT_");
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
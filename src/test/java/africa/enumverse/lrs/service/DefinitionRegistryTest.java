@@ -0,0 +1,125 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.dto.DefinitionResponse;
+import africa.enumverse.lrs.dto.StatementObjectResponse;
+import africa.enumverse.lrs.dto.StatementResponse;
+import africa.enumverse.lrs.dto.VerbResponse;
+import africa.enumverse.lrs.model.ActivityDefinition;
+import africa.enumverse.lrs.model.Definition;
+import africa.enumverse.lrs.model.VerbDefinition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DefinitionRegistryTest {
+
+    private static final String ACTIVITY_ID = "http://example.com/activities/quiz-1";
+    private static final String VERB_ID = "http://adlnet.gov/expapi/verbs/completed";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Test
+    void onlyChangedDefinitionsAreWritten() {
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), any(Class.class))).thenReturn(bulkOperations);
+        DefinitionRegistry registry = registry();
+
+        registry.register(List.of(statement("Quiz 1", "completed")));
+        registry.register(List.of(statement("Quiz 1", "completed"), statement("Quiz 1", "completed")));
+        registry.register(List.of(statement("Quiz 1", "finished")));
+
+        verify(mongoTemplate, times(1)).bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityDefinition.class);
+        verify(mongoTemplate, times(2)).bulkOps(BulkOperations.BulkMode.UNORDERED, VerbDefinition.class);
+        verify(bulkOperations, times(3)).upsert(any(Query.class), any(Update.class));
+        // Only the first batch looked the definitions up; later ones compared with memory
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(ActivityDefinition.class));
+        assertThat(registry.verbDisplay(VERB_ID)).containsEntry("en-US", "finished");
+        assertThat(registry.activityName(ACTIVITY_ID)).containsEntry("en-US", "Quiz 1");
+    }
+
+    @Test
+    void namesAreReadThroughOnceAndThenServedFromMemory() {
+        when(mongoTemplate.find(any(Query.class), eq(ActivityDefinition.class))).thenReturn(List.of(
+                ActivityDefinition.builder()
+                        .id(ACTIVITY_ID)
+                        .definition(Definition.builder().name(Map.of("en-US", "Quiz 1")).build())
+                        .build()));
+        DefinitionRegistry registry = registry();
+
+        assertThat(registry.activityName(ACTIVITY_ID)).containsEntry("en-US", "Quiz 1");
+        assertThat(registry.activityName(ACTIVITY_ID)).containsEntry("en-US", "Quiz 1");
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(ActivityDefinition.class));
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class));
+    }
+
+    @Test
+    void missingDefinitionsAreRememberedAsAbsent() {
+        DefinitionRegistry registry = registry();
+
+        assertThat(registry.activityName(ACTIVITY_ID)).isNull();
+        assertThat(registry.activityName(ACTIVITY_ID)).isNull();
+        assertThat(registry.verbDisplay(VERB_ID)).isNull();
+        assertThat(registry.verbDisplay(VERB_ID)).isNull();
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(ActivityDefinition.class));
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(VerbDefinition.class));
+    }
+
+    @Test
+    void registryIsOffWithTheOffHeapStore() {
+        LrsProperties properties = new LrsProperties();
+        properties.getStore().setEngine(LrsProperties.Store.Engine.OFF_HEAP);
+        DefinitionRegistry registry = new DefinitionRegistry(mongoTemplate, properties, new SimpleMeterRegistry());
+
+        registry.register(List.of(statement("Quiz 1", "completed")));
+
+        assertThat(registry.activityName(ACTIVITY_ID)).isNull();
+        assertThat(registry.verbDisplay(VERB_ID)).isNull();
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private DefinitionRegistry registry() {
+        return new DefinitionRegistry(mongoTemplate, new LrsProperties(), new SimpleMeterRegistry());
+    }
+
+    private static StatementResponse statement(String activityName, String verbDisplay) {
+        return StatementResponse.builder()
+                .verb(VerbResponse.builder()
+                        .id(VERB_ID)
+                        .display(Map.of("en-US", verbDisplay))
+                        .build())
+                .object(StatementObjectResponse.builder()
+                        .id(ACTIVITY_ID)
+                        .objectType("Activity")
+                        .definition(DefinitionResponse.builder()
+                                .name(Map.of("en-US", activityName))
+                                .type("http://adlnet.gov/expapi/activities/assessment")
+                                .build())
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.service.ReportCache.ReportKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReportCacheTest {
+
+    private static final ReportKey OCTOBER = ReportKey.window("verbs",
+            LocalDateTime.of(2025, 10, 1, 0, 0), LocalDateTime.of(2025, 11, 1, 0, 0));
+    private static final ReportKey NOVEMBER = ReportKey.window("verbs",
+            LocalDateTime.of(2025, 11, 1, 0, 0), LocalDateTime.of(2025, 12, 1, 0, 0));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReportCache cache = new ReportCache(new LrsProperties(), meterRegistry);
+    private final AtomicInteger computed = new AtomicInteger();
+
+    @Test
+    void newStatementsOnlyInvalidateWindowsContainingThem() {
+        compute(OCTOBER);
+        compute(NOVEMBER);
+
+        cache.invalidate(List.of(LocalDateTime.of(2025, 11, 15, 9, 30)));
+        compute(OCTOBER);
+        compute(NOVEMBER);
+
+        assertThat(computed).hasValue(3);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "reports").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void keysAreNormalizedToStoredTimestampPrecision() {
+        compute(ReportKey.window("verbs", LocalDateTime.of(2025, 10, 1, 0, 0, 0, 123_456_789),
+                LocalDateTime.of(2025, 11, 1, 0, 0)));
+        compute(ReportKey.window("verbs", LocalDateTime.of(2025, 10, 1, 0, 0, 0, 123_000_000),
+                LocalDateTime.of(2025, 11, 1, 0, 0)));
+
+        assertThat(computed).hasValue(1);
+    }
+
+    @Test
+    void resultInvalidatedWhileComputingIsNotKept() {
+        cache.get(OCTOBER, () -> {
+            cache.invalidate(List.of(LocalDateTime.of(2025, 10, 20, 12, 0)));
+            return computed.incrementAndGet();
+        });
+        compute(OCTOBER);
+
+        assertThat(computed).hasValue(2);
+    }
+
+    @Test
+    void uncacheableResultsAreComputedEveryTime() {
+        cache.get(OCTOBER, computed::incrementAndGet, result -> false);
+        cache.get(OCTOBER, computed::incrementAndGet, result -> false);
+
+        assertThat(computed).hasValue(2);
+    }
+
+    private void compute(ReportKey key) {
+        cache.get(key, computed::incrementAndGet);
+    }
+}
@@ -0,0 +1,83 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.service.ReportCache.ReportKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReportFlightsTest {
+
+    private static final ReportKey KEY = ReportKey.window("comprehensive",
+            LocalDateTime.of(2025, 10, 1, 0, 0), LocalDateTime.of(2025, 11, 1, 0, 0));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReportFlights flights = new ReportFlights(meterRegistry);
+
+    @Test
+    void concurrentIdenticalRequestsShareOneComputation() throws Exception {
+        AtomicInteger computed = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<Integer>> results = IntStream.range(0, 8)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(() -> flights.run(KEY, () -> {
+                        computed.incrementAndGet();
+                        await(release);
+                        return 42;
+                    }), callers))
+                    .toList();
+            while (meterRegistry.get("lrs.reports.coalesced").counter().count() < 7) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertThat(results).allSatisfy(result -> assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(42));
+            assertThat(computed).hasValue(1);
+        } finally {
+            callers.shutdownNow();
+        }
+
+        // Nothing is kept once the computation is over
+        assertThat(flights.run(KEY, computed::incrementAndGet)).isEqualTo(2);
+    }
+
+    @Test
+    void followersSeeTheFailureOfTheComputation() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> leader = CompletableFuture.supplyAsync(() -> flights.run(KEY, () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("store unavailable");
+        }));
+        await(started);
+        CompletableFuture<Object> follower = CompletableFuture.supplyAsync(() -> flights.run(KEY, () -> "recomputed"));
+        while (meterRegistry.get("lrs.reports.coalesced").counter().count() < 1) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("store unavailable");
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("store unavailable");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
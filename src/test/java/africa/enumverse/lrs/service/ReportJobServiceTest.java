@@ -0,0 +1,92 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.dto.ComprehensiveReport;
+import africa.enumverse.lrs.model.ReportJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReportJobServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 10, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2025, 11, 1, 0, 0);
+
+    @Mock
+    private ReportService reportService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private ReportSections reportSections;
+    private ReportJobService jobService;
+
+    @BeforeEach
+    void setUp() {
+        LrsProperties properties = new LrsProperties();
+        reportSections = new ReportSections(properties, new SimpleMeterRegistry());
+        jobService = new ReportJobService(reportService, reportSections, mongoTemplate, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobService.destroy();
+        reportSections.destroy();
+    }
+
+    @Test
+    void submittedJobIsComputedInTheBackgroundAndStored() {
+        ComprehensiveReport report = ComprehensiveReport.builder().totalStatements(3L).build();
+        when(mongoTemplate.insert(any(ReportJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(reportService.generateComprehensiveReport(eq(START), eq(END), any(ReportSections.Run.class), any()))
+                .thenAnswer(invocation -> {
+                    invocation.<IntConsumer>getArgument(3).accept(50);
+                    return report;
+                });
+
+        ReportJob job = jobService.submit(START, END);
+
+        assertThat(job.getId()).isNotBlank();
+        assertThat(job.getStatus()).isEqualTo(ReportJob.Status.QUEUED);
+        assertThat(job.getExpiresAt()).isAfter(job.getCreatedAt());
+
+        // Running, progress at 50%, then completed
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, timeout(5000).times(3)).updateFirst(any(Query.class), updates.capture(), eq(ReportJob.class));
+        Update completed = updates.getAllValues().get(2);
+        assertThat(completed.getUpdateObject().get("$set", Document.class))
+                .containsEntry("status", ReportJob.Status.COMPLETED)
+                .containsEntry("progress", 100)
+                .containsEntry("result", report);
+    }
+
+    @Test
+    void rejectsEmptyRange() {
+        assertThatThrownBy(() -> jobService.submit(END, START))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(mongoTemplate, never()).insert(any(ReportJob.class));
+        verify(reportService, never()).generateComprehensiveReport(any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,80 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReportSectionsTest {
+
+    private ReportSections reportSections;
+
+    @AfterEach
+    void tearDown() {
+        reportSections.destroy();
+    }
+
+    @Test
+    void sectionPastItsTimeoutIsInterruptedAndFreesItsThread() throws InterruptedException {
+        reportSections = sections(1, Duration.ofMillis(200));
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        ReportSections.Run slow = reportSections.start();
+        CompletableFuture<String> stuck = slow.submit("stuck", () -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "late";
+        });
+        assertThat(slow.join("stuck", stuck, "fallback")).isEqualTo("fallback");
+        assertThat(slow.incomplete()).containsExactly("stuck");
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // The only section thread is free again for the next report
+        ReportSections.Run next = reportSections.start();
+        CompletableFuture<String> quick = next.submit("quick", () -> "done");
+        assertThat(next.join("quick", quick, "fallback")).isEqualTo("done");
+        assertThat(next.incomplete()).isEmpty();
+    }
+
+    @Test
+    void eachSectionGetsItsOwnTimeout() {
+        reportSections = sections(2, Duration.ofMillis(300));
+
+        ReportSections.Run run = reportSections.start();
+        CompletableFuture<String> first = run.submit("first", () -> sleep(200, "first"));
+        CompletableFuture<String> second = run.submit("second", () -> sleep(200, "second"));
+        CompletableFuture<String> queued = run.submit("queued", () -> sleep(200, "queued"));
+
+        // Together they run past one timeout, but no section does on its own
+        assertThat(run.join("first", first, null)).isEqualTo("first");
+        assertThat(run.join("second", second, null)).isEqualTo("second");
+        assertThat(run.join("queued", queued, null)).isEqualTo("queued");
+        assertThat(run.incomplete()).isEmpty();
+    }
+
+    private static ReportSections sections(int threads, Duration timeout) {
+        LrsProperties properties = new LrsProperties();
+        properties.getReports().setSectionThreads(threads);
+        properties.getReports().setSectionTimeout(timeout);
+        return new ReportSections(properties, new SimpleMeterRegistry());
+    }
+
+    private static String sleep(long millis, String result) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,371 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.dto.ActivityReport;
+import africa.enumverse.lrs.dto.ActorReport;
+import africa.enumverse.lrs.dto.ComprehensiveReport;
+import africa.enumverse.lrs.dto.DailyActivityReport;
+import africa.enumverse.lrs.dto.ScoreDistribution;
+import africa.enumverse.lrs.dto.VerbReport;
+import africa.enumverse.lrs.model.*;
+import africa.enumverse.lrs.repository.StatementRepository;
+import africa.enumverse.lrs.sketch.HyperLogLog;
+import africa.enumverse.lrs.sketch.ScoreHistogram;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReportServiceTest {
+
+    private static final String ACTOR_ID = "actor-1";
+    private static final String ACTIVITY_ID = "http://example.com/activities/quiz-1";
+
+    @Mock
+    private StatementRepository statementRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private StatementRollupService rollupService;
+
+    @Mock
+    private StatementRollupMaterializer rollupMaterializer;
+
+    @Mock
+    private TopKService topKService;
+
+    @Mock
+    private StatementDictionary statementDictionary;
+
+    @Mock
+    private DefinitionRegistry definitionRegistry;
+
+    @Spy
+    private ReportSections reportSections = new ReportSections(new LrsProperties(), new SimpleMeterRegistry());
+
+    @InjectMocks
+    private ReportService reportService;
+
+    @Test
+    void activityReportUsesIndexedObjectLookup() {
+        when(statementRepository.findByObject_Id(ACTIVITY_ID)).thenReturn(List.of(
+                statement(0.8f, true, LocalDateTime.of(2025, 10, 1, 9, 0)),
+                statement(0.4f, false, LocalDateTime.of(2025, 10, 2, 9, 0))));
+
+        ActivityReport report = reportService.generateActivityReport(ACTIVITY_ID);
+
+        assertThat(report.getActivityName()).isEqualTo("Quiz 1");
+        assertThat(report.getTotalStatements()).isEqualTo(2L);
+        assertThat(report.getCompletedCount()).isEqualTo(1L);
+        assertThat(report.getAverageScore()).isCloseTo(0.6, offset(1e-6));
+        assertThat(report.getFirstAttempt()).isEqualTo(LocalDateTime.of(2025, 10, 1, 9, 0));
+        verify(statementRepository).findByObject_Id(ACTIVITY_ID);
+        assertNoFullCollectionScan();
+    }
+
+    @Test
+    void activityReportTakesTheNameFromTheDefinitionRegistry() {
+        when(statementRepository.findByObject_Id(ACTIVITY_ID)).thenReturn(List.of(
+                statement(0.8f, true, LocalDateTime.of(2025, 10, 1, 9, 0))));
+        when(definitionRegistry.activityName(ACTIVITY_ID)).thenReturn(Map.of("en-US", "Final quiz"));
+
+        ActivityReport report = reportService.generateActivityReport(ACTIVITY_ID);
+
+        assertThat(report.getActivityName()).isEqualTo("Final quiz");
+    }
+
+    @Test
+    void actorReportUsesIndexedActorLookup() {
+        when(statementRepository.findByActor_Id(ACTOR_ID)).thenReturn(List.of(
+                statement(1.0f, true, LocalDateTime.of(2025, 10, 1, 9, 0))));
+
+        ActorReport report = reportService.generateActorReport(ACTOR_ID);
+
+        assertThat(report.getActorName()).isEqualTo("Ada");
+        assertThat(report.getTotalStatements()).isEqualTo(1L);
+        assertThat(report.getActivitiesCompleted()).isEqualTo(1L);
+        verify(statementRepository).findByActor_Id(ACTOR_ID);
+        assertNoFullCollectionScan();
+    }
+
+    @Test
+    void emptyReportsStillAvoidFullCollectionScan() {
+        assertThat(reportService.generateActivityReport(ACTIVITY_ID).getTotalStatements()).isZero();
+        assertThat(reportService.generateActorReport(ACTOR_ID).getTotalStatements()).isZero();
+        assertNoFullCollectionScan();
+    }
+
+    @Test
+    void statementIndexesLeadWithReportLookupKeys() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        Iterable<? extends IndexDefinition> indexes =
+                new MongoPersistentEntityIndexResolver(mappingContext).resolveIndexFor(Statement.class);
+
+        List<String> leadingKeys = StreamSupport.stream(indexes.spliterator(), false)
+                .map(index -> index.getIndexKeys().keySet().iterator().next())
+                .toList();
+
+        // nested "id" properties are stored as "_id", so the index must use the stored field name
+        assertThat(leadingKeys).contains("actor._id", "object._id");
+    }
+
+    @Test
+    void verbBreakdownReadsWholeDaysFromRollupsAndOnlyEdgesFromStatements() {
+        when(rollupService.firstCoveredDay()).thenReturn(LocalDate.of(2025, 1, 1));
+        when(rollupService.verbCounts(LocalDate.of(2025, 10, 2), LocalDate.of(2025, 10, 4))).thenReturn(List.of(
+                new Document("_id", "completed").append("count", 5L)));
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Document.class))).thenReturn(
+                new AggregationResults<>(List.of(
+                        new Document("_id", "attempted").append("count", 3L),
+                        new Document("_id", "completed").append("count", 2L)), new Document()));
+
+        List<VerbReport> verbs = reportService.generateVerbBreakdown(
+                LocalDateTime.of(2025, 10, 1, 12, 0), LocalDateTime.of(2025, 10, 5, 6, 0));
+
+        assertThat(verbs).extracting(VerbReport::getVerbId).containsExactly("completed", "attempted");
+        assertThat(verbs).extracting(VerbReport::getCount).containsExactly(7L, 3L);
+        assertThat(verbs.get(0).getPercentage()).isCloseTo(70.0, offset(1e-9));
+    }
+
+    @Test
+    void dailyTrendsReadCompleteMaterializedDaysAndOnlyEdgesFromStatements() {
+        when(rollupMaterializer.coverage()).thenReturn(new RollupState(RollupState.MATERIALIZED,
+                LocalDateTime.of(2025, 10, 1, 5, 0), LocalDateTime.of(2025, 10, 4, 13, 0)));
+        when(rollupMaterializer.days(LocalDate.of(2025, 10, 2), LocalDate.of(2025, 10, 3))).thenReturn(List.of(
+                StatementRollup.builder().id("day:2025-10-02").count(10).actors(4).activities(2)
+                        .completions(6).scoreSum(4.5).scoreCount(6).build(),
+                StatementRollup.builder().id("day:2025-10-03").count(8).actors(3).build()));
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Document.class))).thenReturn(
+                new AggregationResults<>(List.of(new Document("dailyTrends", List.of(
+                                new Document("_id", "2025-10-04").append("totalStatements", 5L),
+                                new Document("_id", "2025-10-01").append("totalStatements", 2L)))
+                        .append("dailyActors", List.of())
+                        .append("dailyActivities", List.of())), new Document()));
+
+        List<DailyActivityReport> trends = reportService.generateDailyTrends(
+                LocalDateTime.of(2025, 10, 1, 12, 0), LocalDateTime.of(2025, 10, 6, 0, 0));
+
+        assertThat(trends).extracting(DailyActivityReport::getDate).containsExactly(
+                LocalDate.of(2025, 10, 1), LocalDate.of(2025, 10, 2), LocalDate.of(2025, 10, 3), LocalDate.of(2025, 10, 4));
+        assertThat(trends).extracting(DailyActivityReport::getTotalStatements).containsExactly(2L, 10L, 8L, 5L);
+        assertThat(trends.get(1).getUniqueActors()).isEqualTo(4L);
+        assertThat(trends.get(1).getAverageScore()).isCloseTo(0.75, offset(1e-9));
+        verify(mongoTemplate, times(1)).aggregate(any(TypedAggregation.class), eq(Document.class));
+        verifyNoInteractions(rollupService);
+    }
+
+    @Test
+    void comprehensiveReportEstimatesDistinctTotalsFromSketchesAndRawEdges() {
+        LocalDateTime start = LocalDateTime.of(2025, 10, 1, 12, 30);
+        LocalDateTime end = LocalDateTime.of(2025, 10, 5, 6, 45);
+        when(rollupMaterializer.coverage()).thenReturn(new RollupState(RollupState.MATERIALIZED,
+                LocalDateTime.of(2025, 10, 1, 0, 0), LocalDateTime.of(2025, 10, 10, 0, 0)));
+        HyperLogLog actors = new HyperLogLog();
+        List.of("ada", "grace", "linus").forEach(actors::add);
+        HyperLogLog activities = new HyperLogLog();
+        activities.add(ACTIVITY_ID);
+        when(rollupMaterializer.sketches(LocalDateTime.of(2025, 10, 1, 13, 0), LocalDateTime.of(2025, 10, 5, 6, 0)))
+                .thenReturn(new StatementRollupMaterializer.Sketches(actors, activities));
+        stubSections(Duration.ZERO);
+        when(mongoTemplate.aggregateStream(any(TypedAggregation.class), eq(Document.class))).thenReturn(
+                Stream.of(new Document("_id", "ada"), new Document("_id", "margaret")),
+                Stream.of(new Document("_id", "http://example.com/activities/quiz-2")));
+
+        ComprehensiveReport report = reportService.generateComprehensiveReport(start, end);
+
+        assertThat(report.getTotalStatements()).isEqualTo(12L);
+        assertThat(report.getTotalActors()).isEqualTo(4L);
+        assertThat(report.getTotalActivities()).isEqualTo(2L);
+        assertThat(report.getPartial()).isFalse();
+    }
+
+    @Test
+    void comprehensiveReportLeavesOutSectionsThatMissTheDeadline() {
+        LrsProperties properties = new LrsProperties();
+        properties.getReports().setSectionTimeout(Duration.ofMillis(200));
+        ReportService service = new ReportService(statementRepository, mongoTemplate, rollupService,
+                rollupMaterializer, topKService, new ReportSections(properties, new SimpleMeterRegistry()),
+                statementDictionary, definitionRegistry);
+        stubSections(Duration.ofSeconds(5));
+
+        ComprehensiveReport report = service.generateComprehensiveReport(
+                LocalDateTime.of(2025, 10, 1, 0, 0), LocalDateTime.of(2025, 10, 2, 0, 0));
+
+        assertThat(report.getPartial()).isTrue();
+        assertThat(report.getIncompleteSections()).containsExactly("topPerformers");
+        assertThat(report.getTotalStatements()).isEqualTo(12L);
+        assertThat(report.getVerbBreakdown()).extracting(VerbReport::getPercentage).containsExactly(25.0);
+        assertThat(report.getTopPerformers()).isEmpty();
+        assertThat(report.getMostPopularActivities()).extracting(ActivityReport::getActivityId).containsExactly(ACTIVITY_ID);
+    }
+
+    @Test
+    void scoreDistributionMergesBucketHistogramsAndOnlyEdgesFromStatements() {
+        LocalDateTime start = LocalDateTime.of(2025, 10, 1, 12, 30);
+        LocalDateTime end = LocalDateTime.of(2025, 10, 5, 6, 45);
+        when(rollupMaterializer.coverage()).thenReturn(new RollupState(RollupState.MATERIALIZED,
+                LocalDateTime.of(2025, 10, 1, 0, 0), LocalDateTime.of(2025, 10, 10, 0, 0)));
+        // Bimodal: a cluster of failing and a cluster of passing results
+        ScoreHistogram buckets = new ScoreHistogram();
+        buckets.add(0.2, 40);
+        buckets.add(0.9, 50);
+        when(rollupMaterializer.scores(LocalDateTime.of(2025, 10, 1, 13, 0), LocalDateTime.of(2025, 10, 5, 6, 0)))
+                .thenReturn(buckets);
+        when(mongoTemplate.aggregateStream(any(TypedAggregation.class), eq(Document.class))).thenReturn(
+                Stream.of(new Document("_id", 0.25).append("count", 8), new Document("_id", 1.0).append("count", 2)));
+
+        ScoreDistribution distribution = reportService.getScoreDistribution(start, end, 10);
+
+        assertThat(distribution.getCount()).isEqualTo(100L);
+        assertThat(distribution.getP50()).isEqualTo(0.9);
+        assertThat(distribution.getP90()).isEqualTo(0.9);
+        assertThat(distribution.getP99()).isEqualTo(1.0);
+        assertThat(distribution.getHistogram()).hasSize(10)
+                .extracting(ScoreDistribution.ScoreRange::getCount)
+                .containsExactly(0L, 0L, 0L, 0L, 0L, 0L, 48L, 0L, 0L, 52L);
+        verify(mongoTemplate, never()).aggregate(any(TypedAggregation.class), eq(Document.class));
+    }
+
+    @Test
+    void actorScoreDistributionReadsTheLiveScoreBins() {
+        ScoreHistogram scores = new ScoreHistogram();
+        scores.add(0.5, 3);
+        scores.add(0.75);
+        when(rollupService.isComplete()).thenReturn(true);
+        when(rollupService.actor(ACTOR_ID)).thenReturn(Optional.of(ActorRollup.builder()
+                .actorId(ACTOR_ID).scoreCount(4).scoreBins(scores.toBins()).build()));
+
+        ScoreDistribution distribution = reportService.getActorScoreDistribution(ACTOR_ID, 20);
+
+        assertThat(distribution.getActorId()).isEqualTo(ACTOR_ID);
+        assertThat(distribution.getP50()).isEqualTo(0.5);
+        assertThat(distribution.getP99()).isEqualTo(0.75);
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void topPerformersComeFromRollupsOnceTheyCoverEveryStatement() {
+        when(rollupService.isComplete()).thenReturn(true);
+        when(rollupService.topActors(1)).thenReturn(List.of(ActorRollup.builder()
+                .actorId(ACTOR_ID).name("Ada").count(4).completions(2).activitiesAttempted(2)
+                .scoreSum(3.0).scoreCount(4).averageScore(0.75).build()));
+
+        List<ActorReport> top = reportService.getTopPerformers(1);
+
+        assertThat(top).singleElement().satisfies(actor -> {
+            assertThat(actor.getActorName()).isEqualTo("Ada");
+            assertThat(actor.getAverageScore()).isEqualTo(0.75);
+            assertThat(actor.getCompletionRate()).isEqualTo(100.0);
+        });
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void topPerformersComeFromTheInMemoryRankingWhenItCanAnswer() {
+        when(topKService.topActors(1)).thenReturn(Optional.of(List.of(ActorRollup.builder()
+                .actorId(ACTOR_ID).name("Ada").count(4).completions(1).activitiesAttempted(2)
+                .scoreSum(3.6).scoreCount(4).averageScore(0.9).build())));
+
+        List<ActorReport> top = reportService.getTopPerformers(1);
+
+        assertThat(top).singleElement().satisfies(actor -> assertThat(actor.getAverageScore()).isEqualTo(0.9));
+        verifyNoInteractions(mongoTemplate);
+        verify(rollupService, never()).topActors(anyInt());
+    }
+
+    @Test
+    void topPerformersFallBackToAnExactBoundedRankingOverTheCursor() {
+        when(mongoTemplate.aggregateStream(any(TypedAggregation.class), eq(Document.class))).thenReturn(Stream.of(
+                new Document("_id", "actor-1").append("averageScore", 0.4),
+                new Document("_id", "actor-2").append("averageScore", 0.9),
+                new Document("_id", "actor-3").append("averageScore", 0.7),
+                new Document("_id", "actor-4").append("averageScore", 0.2)));
+
+        List<ActorReport> top = reportService.getTopPerformers(2);
+
+        assertThat(top).extracting(ActorReport::getActorId).containsExactly("actor-2", "actor-3");
+        verify(mongoTemplate, never()).aggregate(any(TypedAggregation.class), eq(Document.class));
+    }
+
+    /**
+     * Answers each comprehensive report section by the shape of its pipeline; the top
+     * performers section takes the given time
+     */
+    private void stubSections(Duration topPerformersDelay) {
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Document.class))).thenAnswer(invocation -> {
+            String pipeline = invocation.getArgument(0).toString();
+            List<Document> results;
+            if (pipeline.contains("dailyTrends")) {
+                results = List.of(new Document("dailyTrends", List.of())
+                        .append("dailyActors", List.of())
+                        .append("dailyActivities", List.of()));
+            } else if (pipeline.contains("activitiesAttempted")) {
+                Thread.sleep(topPerformersDelay.toMillis());
+                results = List.of(new Document("_id", ACTOR_ID).append("averageScore", 0.8));
+            } else if (pipeline.contains("definition")) {
+                results = List.of(new Document("_id", ACTIVITY_ID).append("totalStatements", 12L));
+            } else if (pipeline.contains("verb")) {
+                results = List.of(new Document("_id", "completed").append("count", 3L));
+            } else {
+                results = List.of(new Document("totalStatements", 12L));
+            }
+            return new AggregationResults<>(results, new Document());
+        });
+    }
+
+    private void assertNoFullCollectionScan() {
+        verify(statementRepository, never()).findAll();
+        verify(statementRepository, never()).findAll(any(Sort.class));
+        verify(statementRepository, never()).findAll(any(Pageable.class));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private Statement statement(float scaled, boolean completed, LocalDateTime timestamp) {
+        return Statement.builder()
+                .actor(Actor.builder().id(ACTOR_ID).name("Ada").mbox("mailto:ada@example.com").build())
+                .verb(Verb.builder().id("http://adlnet.gov/expapi/verbs/completed").build())
+                .object(StatementObject.builder()
+                        .id(ACTIVITY_ID)
+                        .definition(Definition.builder().name(Map.of("en-US", "Quiz 1")).build())
+                        .build())
+                .result(Result.builder()
+                        .completion(completed)
+                        .score(Score.builder().scaled(scaled).build())
+                        .build())
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,170 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.model.Actor;
+import africa.enumverse.lrs.model.ActorType;
+import africa.enumverse.lrs.model.Definition;
+import africa.enumverse.lrs.model.DictionaryEntry;
+import africa.enumverse.lrs.model.ObjectType;
+import africa.enumverse.lrs.model.Statement;
+import africa.enumverse.lrs.model.StatementObject;
+import africa.enumverse.lrs.model.Verb;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.DefaultMongoTypeMapper;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StatementDictionaryTest {
+
+    private final MappingMongoConverter converter = converter();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final TreeMap<Integer, DictionaryEntry> entries = new TreeMap<>();
+
+    @BeforeEach
+    void storeEntriesInMemory() {
+        when(mongoTemplate.insert(any(DictionaryEntry.class))).thenAnswer(invocation -> {
+            // Kept as read back from its stored form, like entries loaded from MongoDB
+            DictionaryEntry entry = invocation.getArgument(0);
+            Document stored = new Document();
+            converter.write(entry, stored);
+            entries.put(entry.getId(), converter.read(DictionaryEntry.class, stored));
+            return entry;
+        });
+        when(mongoTemplate.findOne(any(Query.class), eq(DictionaryEntry.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            Object fingerprint = query.getQueryObject().get("fingerprint");
+            if (fingerprint == null) {
+                return entries.isEmpty() ? null : entries.lastEntry().getValue();
+            }
+            return entries.values().stream()
+                    .filter(entry -> entry.getFingerprint().equals(fingerprint))
+                    .findFirst()
+                    .orElse(null);
+        });
+        when(mongoTemplate.findById(any(), eq(DictionaryEntry.class)))
+                .thenAnswer(invocation -> entries.get((Integer) invocation.getArgument(0)));
+    }
+
+    @Test
+    void compactedStatementsShareEntriesAndReadBackInFull() {
+        StatementDictionary dictionary = dictionary();
+        Statement first = statement("s-1", "learner-1@example.com");
+        Statement second = statement("s-2", "learner-2@example.com");
+
+        Document firstDocument = write(first);
+        Document secondDocument = write(second);
+        dictionary.compact(firstDocument);
+        dictionary.compact(secondDocument);
+
+        // One verb and one activity shared by both statements, one entry per learner
+        assertThat(entries).hasSize(4);
+        Document verb = secondDocument.get("verb", Document.class);
+        assertThat(verb).containsOnlyKeys("_id", "ref");
+        assertThat(secondDocument.get("object", Document.class)).containsOnlyKeys("_id", "objectType", "ref");
+        assertThat(secondDocument.get("actor", Document.class)).containsOnlyKeys("_id", "name", "ref");
+        assertThat(verb.get("ref")).isEqualTo(firstDocument.get("verb", Document.class).get("ref"));
+
+        // A fresh instance reads the entries through from the store
+        StatementDictionary reader = dictionary();
+        reader.expand(firstDocument);
+        reader.expand(secondDocument);
+
+        assertThat(converter.read(Statement.class, firstDocument)).isEqualTo(first);
+        assertThat(converter.read(Statement.class, secondDocument)).isEqualTo(second);
+        verify(mongoTemplate, times(4)).findById(any(), eq(DictionaryEntry.class));
+    }
+
+    @Test
+    void sameContentInAnotherKeyOrderMapsToTheSameEntry() {
+        Map<String, String> display = new TreeMap<>(Map.of("en-US", "completed", "fr-FR", "terminé"));
+        Document forward = new Document("display", new Document(display));
+        Document reversed = new Document("display", new Document(new TreeMap<>(display).descendingMap()));
+
+        assertThat(StatementDictionary.fingerprint(DictionaryEntry.Kind.VERB, forward))
+                .isEqualTo(StatementDictionary.fingerprint(DictionaryEntry.Kind.VERB, reversed))
+                .isNotEqualTo(StatementDictionary.fingerprint(DictionaryEntry.Kind.ACTIVITY, forward));
+    }
+
+    @Test
+    void statementsWrittenInFullAreLeftUnchanged() {
+        Statement statement = statement("s-1", "learner-1@example.com");
+        Document document = write(statement);
+
+        dictionary().expand(document);
+
+        assertThat(document).isEqualTo(write(statement));
+        assertThat(entries).isEmpty();
+    }
+
+    private StatementDictionary dictionary() {
+        return new StatementDictionary(mongoTemplate, new LrsProperties(), new SimpleMeterRegistry());
+    }
+
+    private Document write(Statement statement) {
+        Document document = new Document();
+        converter.write(statement, document);
+        return document;
+    }
+
+    private static Statement statement(String id, String mbox) {
+        LocalDateTime now = LocalDateTime.of(2025, 10, 1, 9, 30);
+        return Statement.builder()
+                .id(id)
+                .actor(Actor.builder()
+                        .id(mbox)
+                        .name("Learner")
+                        .mbox("mailto:" + mbox)
+                        .objectType(ActorType.Agent)
+                        .build())
+                .verb(Verb.builder()
+                        .id("http://adlnet.gov/expapi/verbs/completed")
+                        .display(Map.of("en-US", "completed"))
+                        .build())
+                .object(StatementObject.builder()
+                        .id("http://example.com/activities/quiz-1")
+                        .objectType(ObjectType.Activity)
+                        .definition(Definition.builder()
+                                .name(Map.of("en-US", "Quiz 1"))
+                                .type("http://adlnet.gov/expapi/activities/assessment")
+                                .extensions(Map.of("http://example.com/ext/attempts", 3))
+                                .build())
+                        .build())
+                .timestamp(now)
+                .stored(now)
+                .build();
+    }
+
+    private static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.setTypeMapper(new DefaultMongoTypeMapper(null));
+        converter.setMapKeyDotReplacement("_DOT_");
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
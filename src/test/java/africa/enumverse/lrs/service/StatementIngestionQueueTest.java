@@ -0,0 +1,111 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.exception.IngestionBatchTooLargeException;
+import africa.enumverse.lrs.model.Statement;
+import africa.enumverse.lrs.repository.StatementRepository;
+import com.mongodb.MongoTimeoutException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StatementIngestionQueueTest {
+
+    @Mock
+    private StatementRepository statementRepository;
+
+    @Mock
+    private StatementWriteAheadLog writeAheadLog;
+
+    @Mock
+    private StatementDeduplicator deduplicator;
+
+    @Test
+    void staysRecoveringWhenTheLogCannotBeRead() throws IOException {
+        when(writeAheadLog.read(1L)).thenThrow(new IOException("Corrupt segment header"));
+
+        assertThat(replay()).isTrue();
+    }
+
+    @Test
+    void unexpectedReplayFailureDoesNotLeaveHealthRecovering() throws IOException {
+        when(writeAheadLog.read(1L)).thenThrow(new IllegalStateException("Unexpected record"));
+
+        assertThat(replay()).isFalse();
+    }
+
+    @Test
+    void batchTheStoreRejectsIsDroppedInsteadOfRetried() throws IOException {
+        StatementWriteAheadLog.SegmentReader reader = mock(StatementWriteAheadLog.SegmentReader.class);
+        when(reader.next(anyInt())).thenReturn(List.of(Statement.builder().id("1").build()), List.of());
+        when(writeAheadLog.read(1L)).thenReturn(reader);
+        when(statementRepository.insertUnordered(anyList())).thenThrow(new IllegalArgumentException("Document too large"));
+        when(writeAheadLog.isEnabled()).thenReturn(true);
+        when(writeAheadLog.segments()).thenReturn(List.of(1L));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        StatementIngestionQueue queue = new StatementIngestionQueue(statementRepository, writeAheadLog,
+                deduplicator, new LrsProperties(), meterRegistry);
+
+        queue.start();
+        verify(writeAheadLog, timeout(5_000)).delete(1L);
+        queue.stop();
+
+        verify(statementRepository, times(1)).insertUnordered(anyList());
+        assertThat(meterRegistry.counter("lrs.ingestion.dropped").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void batchLargerThanTheQueueIsRejectedOutright() {
+        LrsProperties properties = new LrsProperties();
+        properties.getIngestion().setQueueCapacity(2);
+        StatementIngestionQueue queue = new StatementIngestionQueue(statementRepository, writeAheadLog,
+                deduplicator, properties, new SimpleMeterRegistry());
+        List<Statement> statements = List.of(Statement.builder().id("1").build(),
+                Statement.builder().id("2").build(), Statement.builder().id("3").build());
+
+        assertThatThrownBy(() -> queue.enqueue(statements)).isInstanceOf(IngestionBatchTooLargeException.class);
+        assertThat(queue.depth()).isZero();
+    }
+
+    @Test
+    void onlyFailuresToReachTheStoreAreRetried() {
+        assertThat(StatementIngestionQueue.isTransient(new DataAccessResourceFailureException("Timed out",
+                new MongoTimeoutException("No server available")))).isTrue();
+        assertThat(StatementIngestionQueue.isTransient(new UncheckedIOException(new SocketTimeoutException()))).isTrue();
+        assertThat(StatementIngestionQueue.isTransient(new IllegalArgumentException("Document too large"))).isFalse();
+    }
+
+    /**
+     * Replays one segment and returns whether the queue still reports recovering afterwards
+     */
+    private boolean replay() throws IOException {
+        when(writeAheadLog.isEnabled()).thenReturn(true);
+        when(writeAheadLog.segments()).thenReturn(List.of(1L));
+        StatementIngestionQueue queue = new StatementIngestionQueue(statementRepository, writeAheadLog,
+                deduplicator, new LrsProperties(), new SimpleMeterRegistry());
+
+        queue.start();
+        // Joins the replay thread, which fails before it looks at the running flag
+        queue.stop();
+        return queue.isRecovering();
+    }
+}
@@ -0,0 +1,37 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.repository.StatementRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class StatementRollupMaterializerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private StatementRepository statementRepository;
+
+    @Test
+    void rangesLongerThanTheCapAreRejectedBeforeAnyWork() {
+        LrsProperties properties = new LrsProperties();
+        properties.getRollups().setMaterializeMaxDays(7);
+        StatementRollupMaterializer materializer = new StatementRollupMaterializer(mongoTemplate, statementRepository, properties);
+
+        assertThatThrownBy(() -> materializer.materialize(
+                LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2025, 1, 9, 0, 0)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("7 days");
+        verifyNoInteractions(mongoTemplate);
+    }
+}
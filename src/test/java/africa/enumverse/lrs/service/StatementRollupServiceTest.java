@@ -0,0 +1,166 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.dto.ActorResponse;
+import africa.enumverse.lrs.dto.StatementObjectResponse;
+import africa.enumverse.lrs.dto.StatementResponse;
+import africa.enumverse.lrs.dto.VerbResponse;
+import africa.enumverse.lrs.model.ActivityRollup;
+import africa.enumverse.lrs.model.ActorRollup;
+import africa.enumverse.lrs.model.DailyRollup;
+import africa.enumverse.lrs.model.RollupMarker;
+import africa.enumverse.lrs.model.RollupState;
+import africa.enumverse.lrs.model.Statement;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StatementRollupServiceTest {
+
+    private static final LocalDateTime SINCE = LocalDateTime.of(2025, 10, 10, 0, 0);
+    private static final LocalDateTime LIVE_FROM = LocalDateTime.of(2025, 10, 10, 9, 0);
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Test
+    void backDatedStatementsAreCountedAsTheyArrive() {
+        StatementRollupService service = service();
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), any(Class.class))).thenReturn(bulkOperations);
+
+        service.record(List.of(statement(SINCE.minusDays(3))));
+
+        verify(mongoTemplate).bulkOps(BulkOperations.BulkMode.UNORDERED, DailyRollup.class);
+        verify(mongoTemplate).bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityRollup.class);
+        verify(mongoTemplate).bulkOps(BulkOperations.BulkMode.UNORDERED, ActorRollup.class);
+        verify(bulkOperations, times(4)).upsert(any(Query.class), any(Update.class));
+    }
+
+    @Test
+    void distinctCountersAreWrittenBeforeTheirMarkers() {
+        StatementRollupService service = service();
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), any(Class.class))).thenReturn(bulkOperations);
+
+        service.record(List.of(statement(SINCE.plusHours(2))));
+
+        InOrder order = inOrder(mongoTemplate);
+        order.verify(mongoTemplate).bulkOps(BulkOperations.BulkMode.UNORDERED, DailyRollup.class);
+        order.verify(mongoTemplate).bulkOps(BulkOperations.BulkMode.UNORDERED, RollupMarker.class);
+        ArgumentCaptor<Object> markers = ArgumentCaptor.forClass(Object.class);
+        verify(bulkOperations, times(3)).insert(markers.capture());
+        assertThat(markers.getAllValues()).map(marker -> ((RollupMarker) marker).getExpiresAt())
+                .containsOnlyOnce((LocalDateTime) null)
+                .filteredOn(Objects::nonNull)
+                .allSatisfy(expiresAt -> assertThat(expiresAt).isAfter(SINCE.plusDays(1)));
+    }
+
+    @Test
+    void backfillSkipsStatementsCountedAsTheyArrived() {
+        StatementRollupService service = service();
+
+        service.backfill();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findOne(query.capture(), eq(Statement.class));
+        Document criteria = query.getValue().getQueryObject();
+        assertThat(criteria.get("timestamp", Document.class)).containsEntry("$lt", SINCE);
+        assertThat(criteria.get("stored", Document.class)).containsEntry("$lt", LIVE_FROM);
+    }
+
+    @Test
+    void deletedStatementIsTakenBackOutOfTheRollups() {
+        StatementRollupService service = liveService();
+        when(mongoTemplate.remove(any(Query.class), eq(RollupMarker.class))).thenReturn(DeleteResult.acknowledged(1));
+
+        service.remove(statement(SINCE.plusHours(2)));
+
+        ArgumentCaptor<UpdateDefinition> daily = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), daily.capture(), eq(DailyRollup.class));
+        assertThat(daily.getValue().getUpdateObject().get("$inc", Document.class))
+                .containsEntry("count", -1)
+                .containsEntry("uniqueActors", -1)
+                .containsEntry("uniqueActivities", -1);
+        // Nothing else is stored for the actor or the activity, so their rollups go
+        verify(mongoTemplate).remove(any(Query.class), eq(ActivityRollup.class));
+        verify(mongoTemplate).remove(any(Query.class), eq(ActorRollup.class));
+    }
+
+    @Test
+    void deletingAnUncountedStatementLeavesTheRollups() {
+        StatementRollupService service = liveService();
+        StatementResponse uncounted = statement(SINCE.minusDays(3));
+        uncounted.setStored(LIVE_FROM.minusDays(1));
+
+        service.remove(uncounted);
+
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(UpdateDefinition.class), any(Class.class));
+        verify(mongoTemplate, never()).remove(any(Query.class), any(Class.class));
+    }
+
+    @Test
+    void rollupsAreOffWithTheOffHeapStore() {
+        LrsProperties properties = new LrsProperties();
+        properties.getStore().setEngine(LrsProperties.Store.Engine.OFF_HEAP);
+        StatementRollupService service = new StatementRollupService(mongoTemplate, properties);
+
+        service.record(List.of(statement(SINCE)));
+        service.backfill();
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private StatementRollupService service() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(RollupState.class)))
+                .thenReturn(new RollupState(RollupState.LIVE, SINCE, null, LIVE_FROM));
+        return new StatementRollupService(mongoTemplate, new LrsProperties());
+    }
+
+    /**
+     * A service that reads the covered range back from the live state, as after a restart
+     */
+    private StatementRollupService liveService() {
+        when(mongoTemplate.findById(RollupState.LIVE, RollupState.class))
+                .thenReturn(new RollupState(RollupState.LIVE, SINCE, null, LIVE_FROM));
+        return new StatementRollupService(mongoTemplate, new LrsProperties());
+    }
+
+    private static StatementResponse statement(LocalDateTime timestamp) {
+        return StatementResponse.builder()
+                .actor(ActorResponse.builder().id("learner-1@example.com").name("Learner").build())
+                .verb(VerbResponse.builder().id("http://adlnet.gov/expapi/verbs/completed").build())
+                .object(StatementObjectResponse.builder().id("http://example.com/activities/quiz-1").build())
+                .timestamp(timestamp)
+                .stored(LIVE_FROM.plusDays(1))
+                .build();
+    }
+}
@@ -0,0 +1,179 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.dto.ActorDto;
+import africa.enumverse.lrs.dto.StatementRequest;
+import africa.enumverse.lrs.dto.VerbDto;
+import africa.enumverse.lrs.exception.StatementConflictException;
+import africa.enumverse.lrs.model.Statement;
+import africa.enumverse.lrs.repository.BulkInsertResult;
+import africa.enumverse.lrs.repository.StatementRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StatementServiceTest {
+
+    @Mock
+    private StatementRepository statementRepository;
+
+    @Mock
+    private StatementIngestionQueue ingestionQueue;
+
+    @Mock
+    private EventPublisherService eventPublisherService;
+
+    @Mock
+    private ReportCache reportCache;
+
+    private StatementDeduplicator deduplicator;
+    private StatementService statementService;
+
+    @BeforeEach
+    void setUp() {
+        LrsProperties properties = new LrsProperties();
+        deduplicator = new StatementDeduplicator(new ObjectMapper().findAndRegisterModules(), properties);
+        statementService = new StatementService(statementRepository, ingestionQueue, deduplicator, eventPublisherService, properties,
+                reportCache, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void batchIsStoredWithOneBulkWriteAndFailuresKeepTheirPosition() {
+        // the bulk write rejects the second statement it receives, which is request #2
+        when(statementRepository.insertUnordered(anyList()))
+                .thenReturn(new BulkInsertResult(2, Map.of(1, "E11000 duplicate key")));
+
+        StatementService.BatchResult result = statementService.createStatements(Arrays.asList(
+                request("Ada"), null, request("Grace"), request("Linus")));
+
+        ArgumentCaptor<List<Statement>> written = ArgumentCaptor.forClass(List.class);
+        verify(statementRepository, times(1)).insertUnordered(written.capture());
+        verify(statementRepository, never()).save(any());
+        assertThat(written.getValue()).hasSize(3).allSatisfy(s -> assertThat(s.getId()).isNotBlank());
+
+        assertThat(result.getResponses()).hasSize(4);
+        assertThat(result.getResponses().get(0).getActor().getName()).isEqualTo("Ada");
+        assertThat(result.getResponses().get(1)).isNull();
+        assertThat(result.getResponses().get(2)).isNull();
+        assertThat(result.getResponses().get(3).getActor().getName()).isEqualTo("Linus");
+        assertThat(result.getFailures()).containsOnlyKeys(1, 2);
+        assertThat(result.getFailures().get(2)).contains("duplicate key");
+    }
+
+    @Test
+    void writeBehindQueuesTheBatchInsteadOfWritingIt() {
+        when(ingestionQueue.isEnabled()).thenReturn(true);
+
+        StatementService.BatchResult result = statementService.createStatements(List.of(request("Ada"), request("Grace")));
+
+        verify(ingestionQueue).enqueue(argThat(statements -> statements.size() == 2));
+        verifyNoInteractions(statementRepository);
+        assertThat(result.getFailures()).isEmpty();
+        assertThat(result.getResponses()).allSatisfy(response -> assertThat(response.getId()).isNotBlank());
+    }
+
+    @Test
+    void retriedStatementIdIsANoOpAndConflictingContentIsRejected() {
+        String id = "5c1a4d1e-8f0b-4c4e-9d55-2f3b8f1e7a10";
+        when(statementRepository.insert(any(Statement.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        StatementRequest first = request("Ada");
+        first.setId(id);
+        assertThat(statementService.createStatement(first).getId()).isEqualTo(id);
+
+        StatementRequest retry = request("Ada");
+        retry.setId(id.toUpperCase());
+        assertThat(statementService.createStatement(retry).getId()).isEqualTo(id);
+        verify(statementRepository, times(1)).insert(any(Statement.class));
+
+        StatementRequest conflicting = request("Grace");
+        conflicting.setId(id);
+        assertThatThrownBy(() -> statementService.createStatement(conflicting))
+                .isInstanceOf(StatementConflictException.class);
+    }
+
+    @Test
+    void idIsOnlyRememberedOnceTheStatementIsStored() {
+        StatementRequest request = request("Ada");
+        request.setId("5c1a4d1e-8f0b-4c4e-9d55-2f3b8f1e7a10");
+        when(statementRepository.insert(any(Statement.class)))
+                .thenThrow(new IllegalStateException("store unavailable"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertThatThrownBy(() -> statementService.createStatement(request)).isInstanceOf(IllegalStateException.class);
+        assertThat(deduplicator.known(request.getId())).isNull();
+
+        statementService.createStatement(request);
+        verify(statementRepository, times(2)).insert(any(Statement.class));
+        verify(eventPublisherService, times(1)).publishStatementCreated(any());
+        assertThat(deduplicator.known(request.getId())).isNotNull();
+    }
+
+    @Test
+    void retryOfAQueuedStatementIsNotQueuedAgain() {
+        String id = "5c1a4d1e-8f0b-4c4e-9d55-2f3b8f1e7a10";
+        when(ingestionQueue.isEnabled()).thenReturn(true);
+        when(statementRepository.findById(id)).thenReturn(Optional.empty());
+
+        StatementRequest first = request("Ada");
+        first.setId(id);
+        statementService.createStatement(first);
+
+        // the queued write has not landed yet
+        StatementRequest retry = request("Ada");
+        retry.setId(id);
+        assertThat(statementService.createStatement(retry).getId()).isEqualTo(id);
+        StatementRequest conflicting = request("Grace");
+        conflicting.setId(id);
+        assertThatThrownBy(() -> statementService.createStatement(conflicting))
+                .isInstanceOf(StatementConflictException.class);
+
+        verify(ingestionQueue, times(1)).enqueue(anyList());
+        verify(eventPublisherService, times(1)).publishStatementCreated(any());
+    }
+
+    @Test
+    void duplicateKeysFromTheStoreAreResolvedAgainstTheStoredContent() {
+        StatementRequest retried = request("Ada");
+        retried.setId("5c1a4d1e-8f0b-4c4e-9d55-2f3b8f1e7a10");
+        StatementRequest conflicting = request("Grace");
+        conflicting.setId("0d6f2c52-3a8e-4c61-b1f7-91e0c4b2d7aa");
+
+        // both ids were stored before this process started, so only the unique index knows them
+        when(statementRepository.insertUnordered(anyList()))
+                .thenReturn(new BulkInsertResult(0, Map.of(0, "E11000 duplicate key", 1, "E11000 duplicate key")));
+        when(statementRepository.findAllById(anyList())).thenReturn(List.of(
+                Statement.builder().id(retried.getId()).contentHash(deduplicator.fingerprint(retried)).build(),
+                Statement.builder().id(conflicting.getId()).contentHash(deduplicator.fingerprint(request("Linus"))).build()));
+
+        StatementService.BatchResult result = statementService.createStatements(List.of(retried, conflicting));
+
+        assertThat(result.getResponses().get(0).getId()).isEqualTo(retried.getId());
+        assertThat(result.getFailures()).containsOnlyKeys(1);
+        assertThat(result.getFailures().get(1)).contains("different content");
+    }
+
+    private StatementRequest request(String name) {
+        return StatementRequest.builder()
+                .actor(ActorDto.builder().id(name.toLowerCase()).name(name).build())
+                .verb(VerbDto.builder().id("http://adlnet.gov/expapi/verbs/completed").build())
+                .build();
+    }
+}
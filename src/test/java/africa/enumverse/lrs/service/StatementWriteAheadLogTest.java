@@ -0,0 +1,106 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.model.Actor;
+import africa.enumverse.lrs.model.Statement;
+import africa.enumverse.lrs.model.Verb;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatementWriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    private LrsProperties properties;
+    private MappingMongoConverter converter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new LrsProperties();
+        properties.getIngestion().getWal().setDirectory(directory.toString());
+        properties.getIngestion().getWal().setFsync(LrsProperties.Wal.Fsync.NONE);
+
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+    }
+
+    @Test
+    void unacknowledgedStatementsAreReadBackAfterRestartAndTornTailIsDiscarded() throws IOException {
+        StatementWriteAheadLog log = new StatementWriteAheadLog(converter, properties);
+        log.open();
+        long segment = log.append(List.of(statement("Ada"), statement("Grace")));
+        log.close();
+
+        // simulate a crash halfway through the next append
+        try (FileChannel channel = FileChannel.open(segmentFile(), StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 42}));
+        }
+
+        StatementWriteAheadLog restarted = new StatementWriteAheadLog(converter, properties);
+        assertThat(restarted.segments()).containsExactly(segment);
+        try (StatementWriteAheadLog.SegmentReader reader = restarted.read(segment)) {
+            List<Statement> recovered = reader.next(10);
+            assertThat(recovered).extracting(s -> s.getActor().getName()).containsExactly("Ada", "Grace");
+            assertThat(recovered.get(0).getTimestamp()).isEqualTo(LocalDateTime.of(2024, 5, 1, 9, 30));
+            assertThat(reader.next(10)).isEmpty();
+        }
+    }
+
+    @Test
+    void rolledSegmentIsDeletedOnceEveryRecordIsAcknowledged() throws IOException {
+        properties.getIngestion().getWal().setSegmentSize(DataSize.ofBytes(1));
+        StatementWriteAheadLog log = new StatementWriteAheadLog(converter, properties);
+        log.open();
+
+        long first = log.append(List.of(statement("Ada"), statement("Grace")));
+        long second = log.append(List.of(statement("Linus")));
+        assertThat(second).isGreaterThan(first);
+
+        log.acknowledge(first, 1);
+        assertThat(log.segments()).containsExactly(first, second);
+        log.acknowledge(first, 1);
+        assertThat(log.segments()).containsExactly(second);
+
+        log.acknowledge(second, 1);
+        log.close();
+        assertThat(log.segments()).isEmpty();
+    }
+
+    private Path segmentFile() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.findFirst().orElseThrow();
+        }
+    }
+
+    private Statement statement(String name) {
+        return Statement.builder()
+                .id(name.toLowerCase())
+                .actor(Actor.builder().id(name.toLowerCase()).name(name).build())
+                .verb(Verb.builder().id("http://adlnet.gov/expapi/verbs/completed").build())
+                .timestamp(LocalDateTime.of(2024, 5, 1, 9, 30))
+                .build();
+    }
+}
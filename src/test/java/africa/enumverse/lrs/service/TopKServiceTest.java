@@ -0,0 +1,71 @@
+package africa.enumverse.lrs.service;
+
+import africa.enumverse.lrs.config.LrsProperties;
+import africa.enumverse.lrs.dto.StatementObjectResponse;
+import africa.enumverse.lrs.dto.StatementResponse;
+import africa.enumverse.lrs.model.ActivityRollup;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TopKServiceTest {
+
+    @Mock
+    private StatementRollupService rollupService;
+
+    @Test
+    void statementRecordedWhileReseedingIsNotLost() {
+        TopKService topKService = new TopKService(rollupService, new LrsProperties());
+        when(rollupService.isEnabled()).thenReturn(true);
+        when(rollupService.isComplete()).thenReturn(true);
+        when(rollupService.topActors(anyInt())).thenReturn(List.of());
+        when(rollupService.activities(Set.of("quiz-2"))).thenReturn(List.of(activity("quiz-2", 7)));
+        // The reseed reads the rollups before quiz-2 was counted; the statement is recorded meanwhile
+        when(rollupService.topActivities(anyInt())).thenAnswer(invocation -> {
+            topKService.record(List.of(StatementResponse.builder()
+                    .object(StatementObjectResponse.builder().id("quiz-2").build())
+                    .build()));
+            return List.of(activity("quiz-1", 5));
+        });
+
+        Optional<List<ActivityRollup>> top = topKService.topActivities(2);
+
+        assertThat(top).hasValueSatisfying(activities -> assertThat(activities)
+                .extracting(ActivityRollup::getActivityId)
+                .containsExactly("quiz-2", "quiz-1"));
+        verify(rollupService, times(1)).topActivities(anyInt());
+    }
+
+    @Test
+    void invalidatedRankingsAreReseededOnTheNextLookup() {
+        TopKService topKService = new TopKService(rollupService, new LrsProperties());
+        when(rollupService.isEnabled()).thenReturn(true);
+        when(rollupService.isComplete()).thenReturn(true);
+        when(rollupService.topActors(anyInt())).thenReturn(List.of());
+        when(rollupService.topActivities(anyInt()))
+                .thenReturn(List.of(activity("quiz-1", 5)))
+                .thenReturn(List.of(activity("quiz-1", 4)));
+
+        topKService.topActivities(1);
+        topKService.invalidate();
+
+        assertThat(topKService.topActivities(1)).hasValueSatisfying(activities ->
+                assertThat(activities.get(0).getCount()).isEqualTo(4));
+    }
+
+    private static ActivityRollup activity(String id, long count) {
+        return ActivityRollup.builder().activityId(id).count(count).build();
+    }
+}
@@ -0,0 +1,64 @@
+package africa.enumverse.lrs.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesStayWithinThreeStandardErrors() {
+        for (int cardinality : new int[]{10, 1_000, 50_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < cardinality; i++) {
+                sketch.add("mailto:learner-" + i + "@example.com");
+                sketch.add("mailto:learner-" + i + "@example.com");
+            }
+
+            double error = 3 * HyperLogLog.RELATIVE_STANDARD_ERROR * cardinality;
+            assertThat((double) sketch.estimate()).isCloseTo(cardinality, within(Math.max(error, 1.0)));
+        }
+    }
+
+    @Test
+    void mergedSketchesCountTheUnionOfBuckets() {
+        HyperLogLog monday = new HyperLogLog();
+        HyperLogLog tuesday = new HyperLogLog();
+        HyperLogLog week = new HyperLogLog();
+        for (int i = 0; i < 30_000; i++) {
+            monday.add("actor-" + i);
+            week.add("actor-" + i);
+        }
+        for (int i = 20_000; i < 50_000; i++) {
+            tuesday.add("actor-" + i);
+            week.add("actor-" + i);
+        }
+
+        monday.merge(tuesday);
+
+        assertThat(monday.toBytes()).isEqualTo(week.toBytes());
+        assertThat((double) monday.estimate()).isCloseTo(50_000, within(50_000 * 3 * HyperLogLog.RELATIVE_STANDARD_ERROR));
+    }
+
+    @Test
+    void sparseAndDenseEncodingsRoundTrip() {
+        HyperLogLog small = new HyperLogLog();
+        for (int i = 0; i < 20; i++) {
+            small.add("activity-" + i);
+        }
+        HyperLogLog large = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            large.add("activity-" + i);
+        }
+
+        byte[] sparse = small.toBytes();
+        byte[] dense = large.toBytes();
+
+        assertThat(sparse).hasSize(1 + 20 * 3);
+        assertThat(dense).hasSize(1 + 4096 * 6 / 8);
+        assertThat(HyperLogLog.fromBytes(sparse).estimate()).isEqualTo(small.estimate()).isEqualTo(20);
+        assertThat(HyperLogLog.fromBytes(dense).toBytes()).isEqualTo(dense);
+        assertThat(HyperLogLog.fromBytes(null).isEmpty()).isTrue();
+    }
+}
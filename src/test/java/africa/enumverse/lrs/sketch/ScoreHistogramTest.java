@@ -0,0 +1,65 @@
+package africa.enumverse.lrs.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ScoreHistogramTest {
+
+    @Test
+    void quantilesStayWithinHalfTheResolution() {
+        Random random = new Random(7);
+        double[] scores = new double[100_000];
+        ScoreHistogram histogram = new ScoreHistogram();
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextDouble() * 2 - 1;
+            histogram.add(scores[i]);
+        }
+        Arrays.sort(scores);
+
+        for (double q : new double[]{0.01, 0.5, 0.9, 0.99}) {
+            double exact = scores[(int) Math.ceil(q * scores.length) - 1];
+            assertThat(histogram.quantile(q)).isCloseTo(exact, within(ScoreHistogram.RESOLUTION / 2 + 1e-9));
+        }
+    }
+
+    @Test
+    void mergedHistogramsEqualOneHistogramOfAllScores() {
+        ScoreHistogram morning = new ScoreHistogram();
+        ScoreHistogram evening = new ScoreHistogram();
+        ScoreHistogram day = new ScoreHistogram();
+        for (int i = 0; i <= 100; i++) {
+            double score = i / 100.0;
+            (i % 3 == 0 ? morning : evening).add(score);
+            day.add(score);
+        }
+
+        morning.merge(evening);
+
+        assertThat(morning.toBytes()).isEqualTo(day.toBytes());
+        assertThat(morning.quantile(0.5)).isEqualTo(0.5);
+        assertThat(morning.quantile(1)).isEqualTo(1.0);
+    }
+
+    @Test
+    void encodingsRoundTripAndRangesCoverEveryScore() {
+        ScoreHistogram histogram = new ScoreHistogram();
+        histogram.add(-1.0);
+        histogram.add(0.3f, 5);
+        histogram.add(1.0, 2);
+
+        assertThat(histogram.toBytes()).hasSize(3 * 9);
+        assertThat(ScoreHistogram.fromBytes(histogram.toBytes()).toBins()).isEqualTo(histogram.toBins());
+        assertThat(ScoreHistogram.fromBins(histogram.toBins()).toBytes()).isEqualTo(histogram.toBytes());
+        assertThat(ScoreHistogram.fromBytes(null).isEmpty()).isTrue();
+        assertThat(histogram.ranges(4)).containsExactly(
+                new ScoreHistogram.Range(-1.0, -0.5, 1),
+                new ScoreHistogram.Range(-0.5, 0.0, 0),
+                new ScoreHistogram.Range(0.0, 0.5, 5),
+                new ScoreHistogram.Range(0.5, 1.0, 2));
+    }
+}
@@ -0,0 +1,62 @@
+package africa.enumverse.lrs.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKTest {
+
+    private record Score(String actor, double average) {
+    }
+
+    private static final Comparator<Score> HIGHEST_FIRST = Comparator
+            .comparingDouble(Score::average).reversed()
+            .thenComparing(Score::actor);
+
+    @Test
+    void spaceSavingGuaranteesTheHeavyHittersOfASkewedStream() {
+        SpaceSaving<String> summary = new SpaceSaving<>(50);
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // Three dominant activities over a long tail of rare ones
+            int roll = random.nextInt(100);
+            String activity = roll < 30 ? "quiz-1" : roll < 50 ? "quiz-2" : roll < 60 ? "quiz-3"
+                    : "tail-" + random.nextInt(5_000);
+            summary.offer(activity, 1);
+        }
+
+        assertThat(summary.isGuaranteed(3)).isTrue();
+        assertThat(summary.top(3)).extracting(SpaceSaving.Counter::key)
+                .containsExactly("quiz-1", "quiz-2", "quiz-3");
+        assertThat(summary.isGuaranteed(20)).isFalse();
+    }
+
+    @Test
+    void boundedRankingFollowsScoresThatRiseAndFall() {
+        BoundedRanking<String, Score> ranking = new BoundedRanking<>(3, Score::actor, HIGHEST_FIRST);
+        ranking.seed(List.of(new Score("a", 0.9), new Score("b", 0.8), new Score("c", 0.7)));
+
+        ranking.offer(new Score("d", 0.85));
+        ranking.offer(new Score("a", 0.5));
+
+        assertThat(ranking.top(2)).extracting(Score::actor).containsExactly("d", "b");
+        // "a" dropped to the bottom, so whoever was evicted for "d" might now rank above it
+        assertThat(ranking.top(3)).isNull();
+    }
+
+    @Test
+    void exactTopKeepsOnlyTheBestOfAStream() {
+        List<Score> scores = IntStream.range(0, 10_000)
+                .mapToObj(i -> new Score("actor-" + i, (i * 7919 % 10_000) / 10_000.0))
+                .toList();
+
+        List<Score> top = BoundedRanking.top(scores.stream(), 5, HIGHEST_FIRST);
+
+        assertThat(top).isEqualTo(scores.stream().sorted(HIGHEST_FIRST).limit(5).toList());
+    }
+}